@@ -0,0 +1,86 @@
+package com.onlyweather.OnlyWeather.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.onlyweather.OnlyWeather.cache.CachedWeather;
+import com.onlyweather.OnlyWeather.cache.DiskWeatherStore;
+import com.onlyweather.OnlyWeather.dto.MainInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+
+// Startup cost of the disk cache tier: opening a log of `entries` cities (each written twice, so half of
+// the records are overwritten ones the scan has to step over), and reading one entry back.
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DiskWeatherStoreBenchmark {
+
+    @Param({"10000", "100000"})
+    public int entries;
+
+    private Path directory;
+    private Path log;
+    private DiskWeatherStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException{
+        directory = Files.createTempDirectory("disk-weather-store");
+        log = directory.resolve("weather-cache.log");
+        // compact-min-bytes is set out of reach so opening never compacts the log away.
+        DiskWeatherStore writer = new DiskWeatherStore(log, Duration.ofDays(1), false, Long.MAX_VALUE, Clock.systemUTC());
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < entries; i++) {
+                WeatherResponseDto weather = new WeatherResponseDto(new MainInfoDto(round + i % 30),
+                    List.of(new WeatherInfoDto("scattered clouds", "03d")), "City " + i, "03d.png", 1709294400L, i);
+                writer.write("city " + i, new CachedWeather(weather, Clock.systemUTC().instant()));
+            }
+        }
+        writer.close();
+        store = new DiskWeatherStore(log, Duration.ofDays(1), false, Long.MAX_VALUE, Clock.systemUTC());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException{
+        store.close();
+        Files.deleteIfExists(log);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public int open() throws IOException{
+        DiskWeatherStore opened = new DiskWeatherStore(log, Duration.ofDays(1), false, Long.MAX_VALUE, Clock.systemUTC());
+        int size = opened.size();
+        opened.close();
+        return size;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public CachedWeather read(){
+        return store.read("city 4242");
+    }
+}
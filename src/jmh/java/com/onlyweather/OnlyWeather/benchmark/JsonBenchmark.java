@@ -0,0 +1,62 @@
+package com.onlyweather.OnlyWeather.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.loadtest.FakeOpenWeatherMapServer;
+import com.onlyweather.OnlyWeather.upstream.OpenWeatherMapJsonReader;
+
+// Jackson work done per request: reading the OpenWeatherMap payload and writing our response.
+// Run with -Djmh.args="-prof gc" to compare bytes allocated per call (gc.alloc.rate.norm) of the
+// databind path and the streaming OpenWeatherMapJsonReader.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private OpenWeatherMapJsonReader streamingReader;
+    private byte[] upstreamPayload;
+    private WeatherResponseDto response;
+
+    @Setup
+    public void setUp() throws Exception{
+        // Configured the same way as the ObjectMapper behind RestTemplate's JSON converter.
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        streamingReader = new OpenWeatherMapJsonReader();
+        upstreamPayload = FakeOpenWeatherMapServer.weatherJson("London").getBytes();
+        response = objectMapper.readValue(upstreamPayload, WeatherResponseDto.class);
+        response.setIconFileName("01d@2x.png");
+    }
+
+    @Benchmark
+    public WeatherResponseDto deserializeUpstreamPayload() throws Exception{
+        return objectMapper.readValue(upstreamPayload, WeatherResponseDto.class);
+    }
+
+    @Benchmark
+    public WeatherResponseDto streamUpstreamPayload() throws Exception{
+        return streamingReader.read(upstreamPayload);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() throws Exception{
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
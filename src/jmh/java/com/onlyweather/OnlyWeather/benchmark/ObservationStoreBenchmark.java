@@ -0,0 +1,60 @@
+package com.onlyweather.OnlyWeather.benchmark;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.onlyweather.OnlyWeather.dto.MainInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherHistoryDto;
+import com.onlyweather.OnlyWeather.dto.WeatherInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.history.ObservationStore;
+
+// GET /{city}/history over a full city: 288 raw points and 336 downsampled hours. With -prof gc the bytes per
+// call stay the same whatever the number of points, since only the per-step result is allocated.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ObservationStoreBenchmark {
+
+    private static final long START = 1709294400L;
+
+    private final ObservationStore store = new ObservationStore(100, 288, 336, Duration.ofHours(1), Clock.systemUTC());
+    private long end;
+
+    @Setup
+    public void setUp(){
+        // Every 10 minutes for 16 days: the last two days stay raw, the rest is downsampled.
+        long time = START;
+        for (int i = 0; i < 16 * 144; i++, time += 600) {
+            store.record("london", new WeatherResponseDto(new MainInfoDto(i % 30),
+                List.of(new WeatherInfoDto("scattered clouds", "03d")), "London", null, time, null));
+        }
+        end = time;
+    }
+
+    @Benchmark
+    public WeatherHistoryDto lastDayHourly(){
+        return store.history("london", end - 24 * 3600, end, 3600);
+    }
+
+    @Benchmark
+    public WeatherHistoryDto lastTwoWeeksDaily(){
+        return store.history("london", end - 14 * 24 * 3600, end, 24 * 3600);
+    }
+}
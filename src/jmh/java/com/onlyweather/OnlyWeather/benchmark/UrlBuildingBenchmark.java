@@ -0,0 +1,40 @@
+package com.onlyweather.OnlyWeather.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.util.UriComponentsBuilder;
+
+// Cost of building the OpenWeatherMap request URL, which WeatherService does on every upstream call.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlBuildingBenchmark {
+
+    private static final String API_URL = "https://api.openweathermap.org/data/2.5/weather";
+    private static final String API_KEY = "0123456789abcdef0123456789abcdef";
+
+    @Param({"London", "Rio de Janeiro"})
+    public String city;
+
+    @Benchmark
+    public String fromHttpUrlPerCall(){
+        return UriComponentsBuilder.fromHttpUrl(API_URL)
+            .queryParam("q", city)
+            .queryParam("appid", API_KEY)
+            .queryParam("units", "metric")
+            .toUriString();
+    }
+}
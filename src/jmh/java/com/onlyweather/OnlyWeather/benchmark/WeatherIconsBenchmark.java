@@ -0,0 +1,34 @@
+package com.onlyweather.OnlyWeather.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.onlyweather.OnlyWeather.enums.WeatherIcons;
+
+// Icon lookup runs once per upstream response; the parameters cover a best, worst and unknown case.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherIconsBenchmark {
+
+    @Param({"01d", "50n", "99x"})
+    public String iconCode;
+
+    @Benchmark
+    public WeatherIcons findByApiIconCode(){
+        return WeatherIcons.findByApiIconCode(iconCode);
+    }
+}
@@ -0,0 +1,84 @@
+package com.onlyweather.OnlyWeather.benchmark;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.RestTemplate;
+
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+
+import com.onlyweather.OnlyWeather.cache.WeatherCache;
+import com.onlyweather.OnlyWeather.config.HttpClientConfig;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.loadtest.FakeOpenWeatherMapServer;
+import com.onlyweather.OnlyWeather.metrics.WeatherMetrics;
+import com.onlyweather.OnlyWeather.service.WeatherService;
+import com.onlyweather.OnlyWeather.upstream.OpenWeatherMapMessageConverter;
+import com.onlyweather.OnlyWeather.upstream.UpstreamLimiter;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// The whole WeatherService.getWeather path against an in-process OpenWeatherMap stand-in:
+// a cache miss (URL building, pooled HTTP call, JSON parsing, icon lookup) and a cache hit.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherServiceBenchmark {
+
+    private FakeOpenWeatherMapServer upstream;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private WeatherService uncachedService;
+    private WeatherService cachedService;
+
+    @Setup
+    public void setUp() throws Exception{
+        upstream = new FakeOpenWeatherMapServer();
+        HttpClientConfig httpClientConfig = new HttpClientConfig();
+        connectionManager = httpClientConfig.upstreamConnectionManager(16, 16,
+            Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(30));
+        RestTemplate restTemplate = new RestTemplate(httpClientConfig.pooledRequestFactory(connectionManager,
+            Duration.ofSeconds(5), Duration.ofSeconds(1), Duration.ofSeconds(30)));
+        restTemplate.getMessageConverters().add(0, new OpenWeatherMapMessageConverter());
+
+        UpstreamLimiter upstreamLimiter = new UpstreamLimiter(16, Duration.ofSeconds(1));
+        WeatherMetrics weatherMetrics = new WeatherMetrics(new SimpleMeterRegistry());
+        CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("benchmark");
+        // A one-nanosecond TTL turns every call into a miss.
+        uncachedService = new WeatherService("benchmark", upstream.weatherUrl(), restTemplate,
+            new WeatherCache(Duration.ofNanos(1), 100, Clock.systemUTC()), upstreamLimiter, weatherMetrics, circuitBreaker);
+        cachedService = new WeatherService("benchmark", upstream.weatherUrl(), restTemplate,
+            new WeatherCache(Duration.ofHours(1), 100, Clock.systemUTC()), upstreamLimiter, weatherMetrics, circuitBreaker);
+    }
+
+    @TearDown
+    public void tearDown(){
+        connectionManager.close();
+        upstream.close();
+    }
+
+    @Benchmark
+    public WeatherResponseDto cacheMiss(){
+        return uncachedService.getWeather("London");
+    }
+
+    @Benchmark
+    public WeatherResponseDto cacheHit(){
+        return cachedService.getWeather("London");
+    }
+}
@@ -0,0 +1,87 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// A lock-free Bloom filter of strings: mightContain never misses a key that was put, and wrongly says
+// yes for about `falsePositiveRate` of other keys as long as no more than `expectedInsertions` were put.
+// Keys can't be removed; build a new filter instead.
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+    private final LongAdder bitsSet = new LongAdder();
+
+    public BloomFilter(int expectedInsertions, double falsePositiveRate){
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Bloom filter needs expected-insertions >= 1 and 0 < fpp < 1");
+        }
+        // The textbook sizes: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hash functions.
+        long bitsNeeded = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray((int) Math.max(1, (bitsNeeded + 63) / 64));
+        this.bitCount = bits.length() * 64L;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    public void put(String key){
+        long hash = hash(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = index(first + i * second);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+            if ((current & mask) == 0) {
+                bitsSet.increment();
+            }
+        }
+    }
+
+    public boolean mightContain(String key){
+        long hash = hash(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = index(first + i * second);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The false positive rate right now, from how many bits are set; grows past the configured rate
+    // once more than expectedInsertions keys were put.
+    public double estimatedFalsePositiveRate(){
+        return Math.pow((double) bitsSet.sum() / bitCount, hashFunctions);
+    }
+
+    private long index(int combinedHash){
+        // Flip negative hashes, like Guava does, rather than take abs() of Integer.MIN_VALUE.
+        return (combinedHash < 0 ? ~combinedHash : combinedHash) % bitCount;
+    }
+
+    // 64-bit FNV-1a over the chars, finished with the murmur3 mixer so both halves are well spread;
+    // the two halves drive the k hash functions (Kirsch-Mitzenmacher double hashing).
+    private static long hash(String key){
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
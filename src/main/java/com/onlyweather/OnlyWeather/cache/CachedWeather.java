@@ -0,0 +1,57 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Function;
+
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+// A single cache entry: the upstream response together with the moment we fetched it,
+// and how long the cache treats it as fresh and, after that, as usable-but-stale.
+@Getter
+public class CachedWeather {
+    private final WeatherResponseDto weather;
+    private final Instant fetchedAt;
+    private final Duration freshFor;
+    private final Duration staleFor;
+
+    // The response as sent to clients, encoded once per entry. Two threads may race to encode it;
+    // both produce the same bytes, so the loser's copy is simply dropped.
+    @Getter(AccessLevel.NONE)
+    private volatile EncodedWeather encoded;
+
+    public CachedWeather(WeatherResponseDto weather, Instant fetchedAt, Duration freshFor, Duration staleFor){
+        this.weather = weather;
+        this.fetchedAt = fetchedAt;
+        this.freshFor = freshFor;
+        this.staleFor = staleFor;
+    }
+
+    // An entry without a known lifetime, e.g. in tests; clients are told to revalidate it every time.
+    public CachedWeather(WeatherResponseDto weather, Instant fetchedAt){
+        this(weather, fetchedAt, Duration.ZERO, Duration.ZERO);
+    }
+
+    public Duration ageAt(Instant now){
+        Duration age = Duration.between(fetchedAt, now);
+        return age.isNegative() ? Duration.ZERO : age;
+    }
+
+    // When OpenWeatherMap observed the data (its "dt" field), or when we fetched it if that is missing.
+    public Instant getLastModified(){
+        Long observedAt = weather.getObservedAt();
+        return observedAt == null ? fetchedAt : Instant.ofEpochSecond(observedAt);
+    }
+
+    public EncodedWeather encoded(Function<WeatherResponseDto, EncodedWeather> encoder){
+        EncodedWeather result = encoded;
+        if (result == null) {
+            result = encoder.apply(weather);
+            encoded = result;
+        }
+        return result;
+    }
+}
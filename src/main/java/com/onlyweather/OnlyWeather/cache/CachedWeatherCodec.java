@@ -0,0 +1,92 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.onlyweather.OnlyWeather.dto.MainInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+
+// Compact binary form of a cache entry and its key, for the tiers that store entries outside the heap.
+// Much smaller and faster than JSON, and independent of the DTOs' Jackson annotations, which hide
+// `dt` and `id` from our own responses.
+final class CachedWeatherCodec {
+
+    private CachedWeatherCodec(){
+    }
+
+    // Key and fetch time first, so DiskWeatherStore's startup scan only has to read those, then the weather.
+    static byte[] encode(String key, CachedWeather cachedWeather){
+        WeatherResponseDto weather = cachedWeather.getWeather();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(key);
+            out.writeLong(cachedWeather.getFetchedAt().toEpochMilli());
+            writeNullable(out, weather.getName());
+            writeNullable(out, weather.getIconFileName());
+            out.writeBoolean(weather.getMain() != null);
+            if (weather.getMain() != null) {
+                out.writeDouble(weather.getMain().getTemp());
+            }
+            out.writeBoolean(weather.getWeather() != null);
+            if (weather.getWeather() != null) {
+                out.writeShort(weather.getWeather().size());
+                for (WeatherInfoDto weatherInfo : weather.getWeather()) {
+                    writeNullable(out, weatherInfo.getDescription());
+                    writeNullable(out, weatherInfo.getIcon());
+                }
+            }
+            out.writeLong(weather.getObservedAt() == null ? Long.MIN_VALUE : weather.getObservedAt());
+            out.writeInt(weather.getCityId() == null ? Integer.MIN_VALUE : weather.getCityId());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Record decode(byte[] payload) throws IOException{
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String key = in.readUTF();
+        Instant fetchedAt = Instant.ofEpochMilli(in.readLong());
+        WeatherResponseDto weather = new WeatherResponseDto();
+        weather.setName(readNullable(in));
+        weather.setIconFileName(readNullable(in));
+        if (in.readBoolean()) {
+            weather.setMain(new MainInfoDto(in.readDouble()));
+        }
+        if (in.readBoolean()) {
+            int count = in.readShort();
+            List<WeatherInfoDto> weatherInfos = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                weatherInfos.add(new WeatherInfoDto(readNullable(in), readNullable(in)));
+            }
+            weather.setWeather(weatherInfos);
+        }
+        long observedAt = in.readLong();
+        weather.setObservedAt(observedAt == Long.MIN_VALUE ? null : observedAt);
+        int cityId = in.readInt();
+        weather.setCityId(cityId == Integer.MIN_VALUE ? null : cityId);
+        return new Record(key, new CachedWeather(weather, fetchedAt));
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException{
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException{
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    record Record(String key, CachedWeather cachedWeather) {
+    }
+}
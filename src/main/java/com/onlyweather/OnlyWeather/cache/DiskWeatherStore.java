@@ -0,0 +1,318 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import jakarta.annotation.PreDestroy;
+
+// Local disk tier behind the in-memory cache, so a restarted instance starts with the weather it had
+// instead of sending every first request to OpenWeatherMap.
+//
+// The store is an append-only log: every loaded entry is appended as one record
+// [payload length][CRC32C of payload][key, fetch time, weather], and a map from key to the offset of its
+// latest record is kept in memory. Reading an entry is one positional read. On startup the log is
+// memory-mapped and scanned once to rebuild that map; a record cut short by a crash, or one whose checksum
+// doesn't match, ends the scan and the log is truncated there, so later appends start on a clean record.
+//
+// Entries older than max-age are skipped on read and dropped by compaction, which rewrites the live records
+// into a new file and swaps it in with an atomic rename once more than half the log is garbage.
+@Component
+@Order(1)
+@ConditionalOnProperty(name = "weather.cache.disk.enabled", havingValue = "true")
+public class DiskWeatherStore implements WeatherCacheTier {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskWeatherStore.class);
+    private static final int MAGIC = 0x4F574453; // "OWDS"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER = 8;
+    private static final int RECORD_HEADER = 8;
+    // A record can't be bigger than this; a larger length means the header itself is garbage.
+    private static final int MAX_PAYLOAD = 64 * 1024;
+
+    private final Path path;
+    private final Duration maxAge;
+    private final boolean fsync;
+    private final long compactMinBytes;
+    private final Clock clock;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    // Appends and compaction swap or grow the file, reads only need it to stay open.
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    private long size;
+    private long liveBytes;
+
+    @Autowired
+    public DiskWeatherStore(@Value("${weather.cache.disk.path:weather-cache.log}") Path path,
+    @Value("${weather.cache.disk.max-age:1h}") Duration maxAge,
+    @Value("${weather.cache.disk.fsync:false}") boolean fsync,
+    @Value("${weather.cache.disk.compact-min-size:1MB}") DataSize compactMinSize) throws IOException{
+        this(path, maxAge, fsync, compactMinSize.toBytes(), Clock.systemUTC());
+    }
+
+    public DiskWeatherStore(Path path, Duration maxAge, boolean fsync, long compactMinBytes, Clock clock) throws IOException{
+        this.path = path;
+        this.maxAge = maxAge;
+        this.fsync = fsync;
+        this.compactMinBytes = compactMinBytes;
+        this.clock = clock;
+        open();
+        // Don't carry a log that is mostly overwritten or expired records into this run.
+        compactIfNeeded();
+    }
+
+    @Override
+    public CachedWeather read(String key){
+        Location location = index.get(key);
+        if (location == null || isExpired(location.fetchedAtMillis())) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            // Compaction may have moved the record since we looked it up.
+            location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(location.length());
+            while (payload.hasRemaining()) {
+                if (channel.read(payload, location.offset() + RECORD_HEADER + payload.position()) < 0) {
+                    return null;
+                }
+            }
+            return CachedWeatherCodec.decode(payload.array()).cachedWeather();
+        } catch (IOException e) {
+            log.warn("Reading '{}' from the disk cache failed: {}", key, e.getMessage());
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void write(String key, CachedWeather cachedWeather){
+        byte[] payload = CachedWeatherCodec.encode(key, cachedWeather);
+        lock.writeLock().lock();
+        try {
+            long offset = size;
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + payload.length)
+                .putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+            while (record.hasRemaining()) {
+                channel.write(record, offset + record.position());
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            size += RECORD_HEADER + payload.length;
+            Location previous = index.put(key, new Location(offset, payload.length, cachedWeather.getFetchedAt().toEpochMilli()));
+            liveBytes += RECORD_HEADER + payload.length - (previous == null ? 0 : RECORD_HEADER + previous.length());
+        } catch (IOException e) {
+            // The entry is still in memory; it just won't survive a restart.
+            log.warn("Writing '{}' to the disk cache failed: {}", key, e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size(){
+        return index.size();
+    }
+
+    public long fileSize(){
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${weather.cache.disk.compact-interval:PT5M}", fixedDelayString = "${weather.cache.disk.compact-interval:PT5M}")
+    public void compactIfNeeded(){
+        boolean needed;
+        lock.writeLock().lock();
+        try {
+            dropExpired();
+            needed = size > compactMinBytes && liveBytes * 2 < size;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (needed) {
+            compact();
+        }
+    }
+
+    // Rewrites the live, unexpired records into a new log and swaps it in. The new file is complete and
+    // flushed before the rename, so a crash at any point leaves either the old log or the new one.
+    public void compact(){
+        lock.writeLock().lock();
+        try {
+            dropExpired();
+            Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+            Map<String, Location> moved = new ConcurrentHashMap<>();
+            long position = FILE_HEADER;
+            try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(target, fileHeader(), 0);
+                for (Map.Entry<String, Location> entry : index.entrySet()) {
+                    Location location = entry.getValue();
+                    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + location.length());
+                    while (record.hasRemaining()) {
+                        if (channel.read(record, location.offset() + record.position()) < 0) {
+                            throw new IOException("Disk cache ended inside a record");
+                        }
+                    }
+                    writeFully(target, record.flip(), position);
+                    moved.put(entry.getKey(), new Location(position, location.length(), location.fetchedAtMillis()));
+                    position += RECORD_HEADER + location.length();
+                }
+                target.force(true);
+            }
+            long before = size;
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel.close();
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            index.clear();
+            index.putAll(moved);
+            size = position;
+            liveBytes = position - FILE_HEADER;
+            log.info("Compacted the disk cache from {} to {} bytes ({} entries)", before, size, index.size());
+        } catch (IOException e) {
+            log.warn("Compacting the disk cache failed, keeping the old log: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException{
+        lock.writeLock().lock();
+        try {
+            channel.force(true);
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void open() throws IOException{
+        long start = System.nanoTime();
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileSize = channel.size();
+        if (fileSize < FILE_HEADER) {
+            channel.truncate(0);
+            writeFully(channel, fileHeader(), 0);
+            size = FILE_HEADER;
+            return;
+        }
+
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+            throw new IllegalStateException(path + " is not a disk cache written by this version; move or delete it");
+        }
+        long position = FILE_HEADER;
+        int records = 0;
+        while (position + RECORD_HEADER <= fileSize) {
+            int length = mapped.getInt((int) position);
+            int checksum = mapped.getInt((int) position + 4);
+            if (length <= 0 || length > MAX_PAYLOAD || position + RECORD_HEADER + length > fileSize) {
+                break;
+            }
+            // Checked and decoded in place: the scan only copies the keys out of the mapping.
+            ByteBuffer payload = mapped.slice((int) position + RECORD_HEADER, length);
+            if (checksum(payload) != checksum) {
+                break;
+            }
+            Header header = decodeHeader(payload);
+            Location previous = index.put(header.key(), new Location(position, length, header.fetchedAtMillis()));
+            liveBytes += RECORD_HEADER + length - (previous == null ? 0 : RECORD_HEADER + previous.length());
+            position += RECORD_HEADER + length;
+            records++;
+        }
+        if (position < fileSize) {
+            log.warn("Disk cache {} has a damaged record at byte {}, dropping the {} bytes from there",
+                path, position, fileSize - position);
+            channel.truncate(position);
+        }
+        size = position;
+        dropExpired();
+        log.info("Loaded {} entries ({} records, {} bytes) from disk cache {} in {} ms",
+            index.size(), records, size, path, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void dropExpired(){
+        index.entrySet().removeIf(entry -> {
+            if (isExpired(entry.getValue().fetchedAtMillis())) {
+                liveBytes -= RECORD_HEADER + entry.getValue().length();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private boolean isExpired(long fetchedAtMillis){
+        return clock.millis() - fetchedAtMillis >= maxAge.toMillis();
+    }
+
+    private static ByteBuffer fileHeader(){
+        return ByteBuffer.allocate(FILE_HEADER).putInt(MAGIC).putInt(VERSION).flip();
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException{
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            target.write(buffer, start + buffer.position());
+        }
+    }
+
+    private static int checksum(byte[] payload){
+        return checksum(ByteBuffer.wrap(payload));
+    }
+
+    private static int checksum(ByteBuffer payload){
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    // Just the key and fetch time that CachedWeatherCodec writes first.
+    private static Header decodeHeader(ByteBuffer payload) throws IOException{
+        // writeUTF's format: an unsigned short byte count, then the (modified) UTF-8 bytes.
+        byte[] key = new byte[2 + Short.toUnsignedInt(payload.getShort(0))];
+        payload.get(0, key);
+        return new Header(new DataInputStream(new ByteArrayInputStream(key)).readUTF(), payload.getLong(key.length));
+    }
+
+    private record Header(String key, long fetchedAtMillis) {
+    }
+
+    private record Location(long offset, int length, long fetchedAtMillis) {
+    }
+}
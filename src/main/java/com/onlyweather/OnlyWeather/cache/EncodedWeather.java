@@ -0,0 +1,16 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Ready-to-send bytes of one WeatherResponseDto: the JSON body, optionally a gzipped copy, and a strong
+// ETag for each. The gzipped copy is a different representation, so it gets its own ETag.
+@Getter
+@AllArgsConstructor
+public class EncodedWeather {
+    private final byte[] json;
+    private final String etag;
+    // Null when gzip is off or wouldn't make the body smaller.
+    private final byte[] gzip;
+    private final String gzipEtag;
+}
@@ -0,0 +1,56 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// A SharedCacheBackend in this JVM's memory: a stand-in for Redis when running a single instance or in
+// tests, where several WeatherCaches sharing one of these behave like instances sharing a Redis server.
+public class InMemorySharedCacheBackend implements SharedCacheBackend {
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Clock clock;
+
+    public InMemorySharedCacheBackend(Clock clock){
+        this.clock = clock;
+    }
+
+    @Override
+    public byte[] get(String key){
+        Entry entry = entries.get(key);
+        if (entry == null || entry.isExpiredAt(clock.millis())) {
+            return null;
+        }
+        return entry.value();
+    }
+
+    @Override
+    public void set(String key, byte[] value, Duration ttl){
+        entries.put(key, new Entry(value, clock.millis() + ttl.toMillis()));
+    }
+
+    @Override
+    public boolean tryLock(String key, String token, Duration ttl){
+        byte[] value = token.getBytes(StandardCharsets.UTF_8);
+        long now = clock.millis();
+        Entry entry = entries.compute(key,
+            (k, current) -> current == null || current.isExpiredAt(now) ? new Entry(value, now + ttl.toMillis()) : current);
+        return entry.value() == value;
+    }
+
+    @Override
+    public void unlock(String key, String token){
+        byte[] value = token.getBytes(StandardCharsets.UTF_8);
+        entries.computeIfPresent(key, (k, current) -> Arrays.equals(current.value(), value) ? null : current);
+    }
+
+    private record Entry(byte[] value, long expiresAtMillis) {
+
+        boolean isExpiredAt(long nowMillis){
+            return nowMillis >= expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Remembers city names OpenWeatherMap answered with 404, so asking again doesn't cost another upstream call.
+// Kept apart from WeatherCache, with its own size and a shorter TTL: bots and typos can produce any number
+// of unknown names, and they must not push real weather out of the main cache.
+//
+// A Bloom filter of the remembered names sits in front of it. Known cities, which are nearly all of the
+// traffic, are turned away by the filter without touching the cache; only its false positives (about `fpp`
+// of the lookups, plus names that have expired since) reach the cache to be checked. The filter can't forget
+// names, so it is rebuilt from the live entries every `expected-insertions` puts.
+@Component
+public class NegativeCache implements MeterBinder {
+
+    private final boolean enabled;
+    private final Cache<String, Instant> entries;
+    private final Duration ttl;
+    private final Clock clock;
+    private final boolean bloomEnabled;
+    private final int bloomExpectedInsertions;
+    private final double bloomFalsePositiveRate;
+    private volatile BloomFilter bloomFilter;
+    private final AtomicLong putsSinceRebuild = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bloomRejections = new LongAdder();
+    private final LongAdder bloomFalsePositives = new LongAdder();
+
+    @Autowired
+    public NegativeCache(@Value("${weather.negative-cache.enabled:true}") boolean enabled,
+    @Value("${weather.negative-cache.ttl:5m}") Duration ttl,
+    @Value("${weather.negative-cache.max-size:10000}") long maxSize,
+    @Value("${weather.negative-cache.bloom.enabled:true}") boolean bloomEnabled,
+    @Value("${weather.negative-cache.bloom.expected-insertions:100000}") int bloomExpectedInsertions,
+    @Value("${weather.negative-cache.bloom.fpp:0.01}") double bloomFalsePositiveRate){
+        this(enabled, ttl, maxSize, bloomEnabled, bloomExpectedInsertions, bloomFalsePositiveRate, Clock.systemUTC());
+    }
+
+    public NegativeCache(boolean enabled, Duration ttl, long maxSize, boolean bloomEnabled, int bloomExpectedInsertions,
+    double bloomFalsePositiveRate, Clock clock){
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Negative cache ttl must be positive");
+        }
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.entries = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(ttl)
+            .build();
+        this.bloomEnabled = bloomEnabled;
+        this.bloomExpectedInsertions = bloomExpectedInsertions;
+        this.bloomFalsePositiveRate = bloomFalsePositiveRate;
+        this.bloomFilter = bloomEnabled ? new BloomFilter(bloomExpectedInsertions, bloomFalsePositiveRate) : null;
+    }
+
+    public static NegativeCache disabled(){
+        return new NegativeCache(false, Duration.ofMinutes(1), 0, false, 1, 0.5, Clock.systemUTC());
+    }
+
+    // True if the upstream said the key doesn't exist less than ttl ago.
+    public boolean isKnownMissing(String key){
+        if (!enabled) {
+            return false;
+        }
+        BloomFilter filter = bloomFilter;
+        if (filter != null && !filter.mightContain(key)) {
+            bloomRejections.increment();
+            misses.increment();
+            return false;
+        }
+        Instant missingSince = entries.getIfPresent(key);
+        if (missingSince != null && Duration.between(missingSince, clock.instant()).compareTo(ttl) < 0) {
+            hits.increment();
+            return true;
+        }
+        if (filter != null) {
+            bloomFalsePositives.increment();
+        }
+        misses.increment();
+        return false;
+    }
+
+    public void put(String key){
+        if (!enabled) {
+            return;
+        }
+        entries.put(key, clock.instant());
+        BloomFilter filter = bloomFilter;
+        if (filter == null) {
+            return;
+        }
+        filter.put(key);
+        if (putsSinceRebuild.incrementAndGet() == bloomExpectedInsertions) {
+            rebuildBloomFilter();
+        }
+    }
+
+    public long size(){
+        return entries.estimatedSize();
+    }
+
+    // A put racing with the rebuild may be missing from the new filter. That only costs one more upstream
+    // call for that name, which puts it back; the filter never hides a name the upstream does know.
+    private void rebuildBloomFilter(){
+        putsSinceRebuild.set(0);
+        entries.cleanUp();
+        BloomFilter rebuilt = new BloomFilter(bloomExpectedInsertions, bloomFalsePositiveRate);
+        entries.asMap().keySet().forEach(rebuilt::put);
+        bloomFilter = rebuilt;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry){
+        if (!enabled) {
+            return;
+        }
+        FunctionCounter.builder("weather.negative-cache.requests", hits, LongAdder::sum)
+            .description("Lookups of the unknown city cache")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        FunctionCounter.builder("weather.negative-cache.requests", misses, LongAdder::sum)
+            .description("Lookups of the unknown city cache")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        Gauge.builder("weather.negative-cache.size", this, NegativeCache::size)
+            .description("Unknown city names currently remembered")
+            .register(meterRegistry);
+        if (!bloomEnabled) {
+            return;
+        }
+        FunctionCounter.builder("weather.negative-cache.bloom.rejections", bloomRejections, LongAdder::sum)
+            .description("Lookups the Bloom filter answered without checking the cache")
+            .register(meterRegistry);
+        FunctionCounter.builder("weather.negative-cache.bloom.false-positives", bloomFalsePositives, LongAdder::sum)
+            .description("Lookups the Bloom filter let through that weren't in the cache")
+            .register(meterRegistry);
+        Gauge.builder("weather.negative-cache.bloom.fpp", this, cache -> cache.bloomFalsePositiveRate)
+            .description("False positive rate of the Bloom filter, configured and estimated from the bits set")
+            .tag("value", "configured")
+            .register(meterRegistry);
+        Gauge.builder("weather.negative-cache.bloom.fpp", this, cache -> cache.bloomFilter.estimatedFalsePositiveRate())
+            .description("False positive rate of the Bloom filter, configured and estimated from the bits set")
+            .tag("value", "estimated")
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,88 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import jakarta.annotation.PreDestroy;
+
+// SharedCacheBackend on Redis (or anything speaking its protocol, e.g. Valkey or KeyDB), over one
+// multiplexed Lettuce connection. The connection is opened on first use rather than at startup, so
+// the application starts, and serves from its own cache, while Redis is down; after a failed attempt
+// the next one waits `reconnectDelay`, so an unreachable Redis doesn't add a connect timeout to every request.
+public class RedisSharedCacheBackend implements SharedCacheBackend {
+
+    // Deletes the lock only if it still holds our token, in one step.
+    private static final String UNLOCK_SCRIPT =
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
+    private final RedisClient redisClient;
+    private final long reconnectDelayNanos;
+    private volatile StatefulRedisConnection<String, byte[]> connection;
+    private long nextConnectAttempt;
+
+    public RedisSharedCacheBackend(RedisClient redisClient, Duration reconnectDelay){
+        this.redisClient = redisClient;
+        this.reconnectDelayNanos = reconnectDelay.toNanos();
+        this.nextConnectAttempt = System.nanoTime();
+    }
+
+    @Override
+    public byte[] get(String key){
+        return commands().get(key);
+    }
+
+    @Override
+    public void set(String key, byte[] value, Duration ttl){
+        commands().set(key, value, SetArgs.Builder.px(ttl.toMillis()));
+    }
+
+    @Override
+    public boolean tryLock(String key, String token, Duration ttl){
+        return "OK".equals(commands().set(key, token.getBytes(StandardCharsets.UTF_8), SetArgs.Builder.nx().px(ttl.toMillis())));
+    }
+
+    @Override
+    public void unlock(String key, String token){
+        commands().eval(UNLOCK_SCRIPT, ScriptOutputType.INTEGER, new String[] {key}, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @PreDestroy
+    public synchronized void close(){
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    private RedisCommands<String, byte[]> commands(){
+        StatefulRedisConnection<String, byte[]> current = connection;
+        if (current == null) {
+            current = connect();
+        }
+        return current.sync();
+    }
+
+    // Once connected, Lettuce reconnects by itself; commands sent meanwhile fail after the command timeout.
+    private synchronized StatefulRedisConnection<String, byte[]> connect(){
+        if (connection != null) {
+            return connection;
+        }
+        if (System.nanoTime() - nextConnectAttempt < 0) {
+            throw new IllegalStateException("Redis unreachable, next connection attempt in a moment");
+        }
+        try {
+            connection = redisClient.connect(RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE));
+            return connection;
+        } catch (RuntimeException e) {
+            nextConnectAttempt = System.nanoTime() + reconnectDelayNanos;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import java.time.Duration;
+
+// Key-value store that several OnlyWeather instances share, with expiring values and a simple lock.
+// Redis in production (RedisSharedCacheBackend), a map in tests and single-instance setups.
+// Implementations may throw when the store is unreachable; SharedWeatherCache handles that.
+public interface SharedCacheBackend {
+
+    byte[] get(String key);
+
+    void set(String key, byte[] value, Duration ttl);
+
+    // Takes the lock if nobody holds it, or the holder's ttl ran out. Like Redis' SET key token NX PX ttl.
+    boolean tryLock(String key, String token, Duration ttl);
+
+    // Releases the lock only if it is still held with this token, so an expired holder can't release
+    // the lock of whoever took it over.
+    void unlock(String key, String token);
+}
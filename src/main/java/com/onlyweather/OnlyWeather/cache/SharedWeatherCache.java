@@ -0,0 +1,165 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Cache tier shared by all OnlyWeather instances (through Redis), so a city loaded by one instance is served
+// by all of them and the OpenWeatherMap quota isn't spent once per instance. Each instance's WeatherCache
+// stays in front of it as a near cache: hot cities never leave the JVM, and only misses cost a network hop.
+// Entries keep the fetch time of the instance that loaded them, so every near cache expires a city at the same
+// moment instead of one instance serving it for another full ttl.
+//
+// Loads are single-flight across instances: the instance that misses takes a short per-city lock before calling
+// the upstream, and the others poll for the lock and then find the entry it wrote. The lock expires by itself
+// after lock-ttl, in case its holder dies. When the shared store is unreachable every instance simply loads for
+// itself, as it would without this tier.
+@Component
+@Order(2)
+@ConditionalOnProperty(name = "weather.cache.shared.enabled", havingValue = "true")
+public class SharedWeatherCache implements WeatherCacheTier, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedWeatherCache.class);
+
+    private final SharedCacheBackend backend;
+    private final String keyPrefix;
+    private final Duration ttl;
+    private final Duration lockTtl;
+    private final long lockPollNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder locksAcquired = new LongAdder();
+    private final LongAdder lockWaits = new LongAdder();
+    private final LongAdder lockTimeouts = new LongAdder();
+
+    @Autowired
+    public SharedWeatherCache(SharedCacheBackend backend,
+    @Value("${weather.cache.shared.key-prefix:onlyweather:}") String keyPrefix,
+    @Value("${weather.cache.shared.ttl:${weather.cache.stale-ttl:1h}}") Duration ttl,
+    @Value("${weather.cache.shared.lock-ttl:5s}") Duration lockTtl,
+    @Value("${weather.cache.shared.lock-poll:25ms}") Duration lockPoll){
+        this.backend = backend;
+        this.keyPrefix = keyPrefix;
+        this.ttl = ttl;
+        this.lockTtl = lockTtl;
+        this.lockPollNanos = lockPoll.toNanos();
+    }
+
+    @Override
+    public CachedWeather read(String key){
+        try {
+            byte[] stored = backend.get(keyPrefix + "weather:" + key);
+            if (stored == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return CachedWeatherCodec.decode(stored).cachedWeather();
+        } catch (RuntimeException | IOException e) {
+            failed("Reading '" + key + "' from", e);
+            return null;
+        }
+    }
+
+    @Override
+    public void write(String key, CachedWeather cachedWeather){
+        try {
+            backend.set(keyPrefix + "weather:" + key, CachedWeatherCodec.encode(key, cachedWeather), ttl);
+        } catch (RuntimeException e) {
+            failed("Writing '" + key + "' to", e);
+        }
+    }
+
+    @Override
+    public CachedWeather loadExclusively(String key, Supplier<CachedWeather> load){
+        String lockKey = keyPrefix + "lock:" + key;
+        String token = UUID.randomUUID().toString();
+        long deadline = System.nanoTime() + lockTtl.toNanos();
+        boolean waited = false;
+        while (true) {
+            boolean locked;
+            try {
+                locked = backend.tryLock(lockKey, token, lockTtl);
+            } catch (RuntimeException e) {
+                failed("Locking '" + key + "' in", e);
+                return load.get();
+            }
+            if (locked) {
+                locksAcquired.increment();
+                try {
+                    return load.get();
+                } finally {
+                    unlock(lockKey, token);
+                }
+            }
+            if (!waited) {
+                lockWaits.increment();
+                waited = true;
+            }
+            // The holder should have finished long before its lock expires; if not, stop waiting for it.
+            if (System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()) {
+                lockTimeouts.increment();
+                return load.get();
+            }
+            LockSupport.parkNanos(lockPollNanos);
+        }
+    }
+
+    private void unlock(String lockKey, String token){
+        try {
+            backend.unlock(lockKey, token);
+        } catch (RuntimeException e) {
+            // It expires after lock-ttl anyway.
+            failed("Unlocking '" + lockKey + "' in", e);
+        }
+    }
+
+    private void failed(String action, Exception e){
+        errors.increment();
+        log.debug("{} the shared cache failed: {}", action, e.getMessage());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry){
+        FunctionCounter.builder("weather.cache.shared.requests", hits, LongAdder::sum)
+            .description("Lookups of the cache shared between instances")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        FunctionCounter.builder("weather.cache.shared.requests", misses, LongAdder::sum)
+            .description("Lookups of the cache shared between instances")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        FunctionCounter.builder("weather.cache.shared.errors", errors, LongAdder::sum)
+            .description("Shared cache operations that failed, e.g. because Redis was unreachable")
+            .register(meterRegistry);
+        FunctionCounter.builder("weather.cache.shared.locks", locksAcquired, LongAdder::sum)
+            .description("Upstream loads by lock outcome: taken, waited for another instance, gave up waiting")
+            .tag("result", "acquired")
+            .register(meterRegistry);
+        FunctionCounter.builder("weather.cache.shared.locks", lockWaits, LongAdder::sum)
+            .description("Upstream loads by lock outcome: taken, waited for another instance, gave up waiting")
+            .tag("result", "waited")
+            .register(meterRegistry);
+        FunctionCounter.builder("weather.cache.shared.locks", lockTimeouts, LongAdder::sum)
+            .description("Upstream loads by lock outcome: taken, waited for another instance, gave up waiting")
+            .tag("result", "timeout")
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,383 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.onlyweather.OnlyWeather.dto.CacheStatsDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+
+// Bounded in-memory cache of upstream responses keyed on the normalized city name.
+// Concurrent misses for the same key share a single upstream load.
+//
+// With serve-stale enabled an entry is fresh for `ttl` and then stays usable until `staleTtl`:
+// stale entries are returned right away while a background refresh runs, and are also
+// used as a fallback when the upstream is unavailable.
+//
+// Misses are looked up in the WeatherCacheTier beans (e.g. the disk store) before going upstream, and
+// everything loaded from the upstream is written through to them.
+@Component
+public class WeatherCache {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherCache.class);
+
+    private final Cache<String, CachedWeather> entries;
+    private final ConcurrentMap<String, CompletableFuture<CachedWeather>> inFlight = new ConcurrentHashMap<>();
+    // How often each key was asked for, so popular cities can be kept warm. Bounded, and Caffeine's
+    // eviction keeps the frequently used keys when one-off city names push it over the limit.
+    private final Cache<String, AtomicLong> requestCounts = Caffeine.newBuilder().maximumSize(10_000).build();
+    private final Duration ttl;
+    private final Duration staleTtl;
+    private final boolean serveStale;
+    private final Executor refreshExecutor;
+    private final Clock clock;
+    private final List<WeatherCacheTier> tiers;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder staleOnErrorHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder tierHits = new LongAdder();
+    private final LongAdder coalescedLoads = new LongAdder();
+    private final LongAdder backgroundRefreshes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public WeatherCache(@Value("${weather.cache.ttl:10m}") Duration ttl,
+    @Value("${weather.cache.max-size:1000}") long maxSize,
+    @Value("${weather.cache.serve-stale:false}") boolean serveStale,
+    @Value("${weather.cache.stale-ttl:1h}") Duration staleTtl,
+    @Qualifier("upstreamExecutor") Executor refreshExecutor,
+    ObjectProvider<WeatherCacheTier> tiers){
+        this(ttl, maxSize, serveStale, staleTtl, refreshExecutor, Clock.systemUTC(), tiers.orderedStream().toList());
+    }
+
+    public WeatherCache(Duration ttl, long maxSize, Clock clock){
+        this(ttl, maxSize, false, ttl, Runnable::run, clock);
+    }
+
+    public WeatherCache(Duration ttl, long maxSize, boolean serveStale, Duration staleTtl, Executor refreshExecutor, Clock clock){
+        this(ttl, maxSize, serveStale, staleTtl, refreshExecutor, clock, List.of());
+    }
+
+    public WeatherCache(Duration ttl, long maxSize, boolean serveStale, Duration staleTtl, Executor refreshExecutor, Clock clock,
+    List<WeatherCacheTier> tiers){
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Cache ttl must be positive");
+        }
+        if (serveStale && staleTtl.compareTo(ttl) < 0) {
+            throw new IllegalArgumentException("Cache stale-ttl must not be shorter than ttl");
+        }
+        this.ttl = ttl;
+        this.staleTtl = serveStale ? staleTtl : ttl;
+        this.serveStale = serveStale;
+        this.refreshExecutor = refreshExecutor;
+        this.clock = clock;
+        this.tiers = List.copyOf(tiers);
+        this.entries = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(this.staleTtl)
+            .<String, CachedWeather>evictionListener((key, value, cause) -> evictions.increment())
+            .build();
+    }
+
+    public static String normalize(String city){
+        return city.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // Returns the cached entry for the key, or loads it once no matter how many threads ask at the same time.
+    // A null response from the loader is passed through and never cached.
+    public CachedWeather get(String key, Function<String, WeatherResponseDto> loader){
+        return get(key, loader, loader);
+    }
+
+    // Same, with a separate loader for the background refresh of a stale entry, which nobody waits on.
+    public CachedWeather get(String key, Function<String, WeatherResponseDto> loader,
+    Function<String, WeatherResponseDto> backgroundLoader){
+        countRequest(key);
+        CachedWeather cached = entries.getIfPresent(key);
+        if (cached != null && isFresh(cached)) {
+            hits.increment();
+            return cached;
+        }
+        if (cached != null && isUsable(cached)) {
+            staleHits.increment();
+            refreshInBackground(key, backgroundLoader);
+            return cached;
+        }
+        misses.increment();
+
+        try {
+            return load(key, loader, false);
+        } catch (WeatherServiceUnavailableException e) {
+            CachedWeather fallback = getStaleOnError(key);
+            if (fallback != null) {
+                return fallback;
+            }
+            throw e;
+        }
+    }
+
+    // get() for callers that load misses on their own, like the reactive stack: a fresh entry is returned, a stale
+    // one still within stale-ttl too while backgroundLoader refreshes it, and null (counted as a miss) means load it.
+    public CachedWeather getIfUsable(String key, Function<String, WeatherResponseDto> backgroundLoader){
+        countRequest(key);
+        CachedWeather cached = entries.getIfPresent(key);
+        if (cached != null && isFresh(cached)) {
+            hits.increment();
+            return cached;
+        }
+        if (cached != null && isUsable(cached)) {
+            staleHits.increment();
+            refreshInBackground(key, backgroundLoader);
+            return cached;
+        }
+        misses.increment();
+        return null;
+    }
+
+    // Loads a key that getIfUsable just missed, the way get() loads a miss: tiers first, the upstream under every
+    // tier's loadExclusively, and the result written through. Blocks on tier I/O, so never call it on an event loop.
+    public CachedWeather load(String key, Function<String, WeatherResponseDto> loader){
+        return load(key, loader, false);
+    }
+
+    // True if there are tiers behind the in-memory entries, i.e. a miss may need blocking I/O before the upstream.
+    public boolean hasTiers(){
+        return !tiers.isEmpty();
+    }
+
+    // The upstream is failing: an expired-but-still-usable entry beats an error page. Null if there is none.
+    public CachedWeather getStaleOnError(String key){
+        CachedWeather fallback = entries.getIfPresent(key);
+        if (fallback != null && isUsable(fallback)) {
+            staleOnErrorHits.increment();
+            return fallback;
+        }
+        return null;
+    }
+
+    // Returns the entry only if it is still fresh, never triggering a load.
+    public CachedWeather getIfFresh(String key){
+        countRequest(key);
+        CachedWeather cached = entries.getIfPresent(key);
+        if (cached != null && isFresh(cached)) {
+            hits.increment();
+            return cached;
+        }
+        return null;
+    }
+
+    // Stores a response that was loaded outside of get(), e.g. by the reactive stack.
+    public CachedWeather put(String key, WeatherResponseDto weather){
+        CachedWeather cached = newEntry(weather);
+        entries.put(key, cached);
+        writeThrough(key, cached);
+        return cached;
+    }
+
+    // Returns the entry as it is, fresh or not, without counting a request or touching the statistics.
+    public CachedWeather peek(String key){
+        return entries.getIfPresent(key);
+    }
+
+    // Loads the key again even if the cached entry is still fresh, e.g. to refresh it ahead of expiry.
+    // Shares the load with concurrent misses for the same key like get() does.
+    public CachedWeather refresh(String key, Function<String, WeatherResponseDto> loader){
+        return load(key, loader, true);
+    }
+
+    // The most requested keys, most popular first.
+    public List<String> mostRequested(int limit){
+        return requestCounts.asMap().entrySet().stream()
+            .filter(entry -> entry.getValue().get() > 0)
+            .sorted(Comparator.comparingLong(entry -> -entry.getValue().get()))
+            .limit(limit)
+            .map(entry -> entry.getKey())
+            .toList();
+    }
+
+    // Halves all request counts, so popularity reflects recent traffic rather than all-time totals.
+    // Keys no longer requested at all are dropped instead of being kept (and warmed) with a count of 0.
+    public void decayRequestCounts(){
+        for (String key : requestCounts.asMap().keySet()) {
+            requestCounts.asMap().computeIfPresent(key, (k, count) -> count.updateAndGet(value -> value / 2) == 0 ? null : count);
+        }
+    }
+
+    public Duration getTtl(){
+        return ttl;
+    }
+
+    public CacheStatsDto getStats(){
+        return new CacheStatsDto(hits.sum(), staleHits.sum(), staleOnErrorHits.sum(), misses.sum(),
+            tierHits.sum(), coalescedLoads.sum(), backgroundRefreshes.sum(), evictions.sum(), entries.estimatedSize());
+    }
+
+    // Runs pending size/expiry maintenance right away instead of on Caffeine's next write.
+    void cleanUp(){
+        entries.cleanUp();
+    }
+
+    private CachedWeather load(String key, Function<String, WeatherResponseDto> loader, boolean force){
+        CompletableFuture<CachedWeather> flight = new CompletableFuture<>();
+        CompletableFuture<CachedWeather> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalescedLoads.increment();
+            return await(existing);
+        }
+        try {
+            // Another thread may have finished loading between our lookup and claiming the flight.
+            CachedWeather cached = force ? null : entries.getIfPresent(key);
+            if ((cached == null || !isFresh(cached)) && !force) {
+                CachedWeather stored = readTiers(key, null);
+                if (stored != null && (cached == null || stored.getFetchedAt().isAfter(cached.getFetchedAt()))) {
+                    cached = stored;
+                    entries.put(key, cached);
+                }
+            }
+            if (cached == null || !isFresh(cached)) {
+                cached = loadThroughTiers(key, loader, force);
+                if (cached != null) {
+                    entries.put(key, cached);
+                }
+            }
+            flight.complete(cached);
+            return cached;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    // Calls the loader inside every tier's loadExclusively, first tier outermost, and writes the result through.
+    private CachedWeather loadThroughTiers(String key, Function<String, WeatherResponseDto> loader, boolean force){
+        Instant loadStarted = clock.instant();
+        Supplier<CachedWeather> load = () -> {
+            // Another instance may have loaded the key while a tier made us wait; a forced load only takes
+            // an entry fetched after it started.
+            CachedWeather stored = tiers.isEmpty() ? null : readTiers(key, force ? loadStarted : null);
+            if (stored != null && isFresh(stored)) {
+                return stored;
+            }
+            WeatherResponseDto loaded = loader.apply(key);
+            CachedWeather cached = loaded == null ? null : newEntry(loaded);
+            if (cached != null) {
+                writeThrough(key, cached);
+            }
+            return cached;
+        };
+        for (WeatherCacheTier tier : tiers.reversed()) {
+            Supplier<CachedWeather> inner = load;
+            load = () -> tier.loadExclusively(key, inner);
+        }
+        return load.get();
+    }
+
+    // The first entry the tiers have that is still fresh, or else still usable as a stale fallback, re-wrapped
+    // with this cache's lifetimes but its original fetch time. A stale one doesn't save the upstream call, but
+    // it is there to fall back on if that call fails, e.g. right after a restart.
+    private CachedWeather readTiers(String key, Instant notBefore){
+        CachedWeather usable = null;
+        for (WeatherCacheTier tier : tiers) {
+            CachedWeather stored = tier.read(key);
+            if (stored == null || (notBefore != null && stored.getFetchedAt().isBefore(notBefore))) {
+                continue;
+            }
+            CachedWeather cached = newEntry(stored.getWeather(), stored.getFetchedAt());
+            if (isFresh(cached)) {
+                tierHits.increment();
+                return cached;
+            }
+            if (usable == null && isUsable(cached)) {
+                usable = cached;
+            }
+        }
+        return usable;
+    }
+
+    private void writeThrough(String key, CachedWeather cached){
+        for (WeatherCacheTier tier : tiers) {
+            tier.write(key, cached);
+        }
+    }
+
+    private void countRequest(String key){
+        requestCounts.get(key, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private CachedWeather newEntry(WeatherResponseDto weather){
+        return newEntry(weather, clock.instant());
+    }
+
+    private CachedWeather newEntry(WeatherResponseDto weather, Instant fetchedAt){
+        return new CachedWeather(weather, fetchedAt, ttl, staleTtl.minus(ttl));
+    }
+
+    private void refreshInBackground(String key, Function<String, WeatherResponseDto> loader){
+        if (inFlight.containsKey(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    backgroundRefreshes.increment();
+                    load(key, loader, false);
+                } catch (RuntimeException e) {
+                    // The stale entry stays in place until staleTtl, so callers keep getting data.
+                    log.warn("Background refresh of '{}' failed: {}", key, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Background refresh of '{}' rejected, serving stale entry", key);
+        }
+    }
+
+    private boolean isFresh(CachedWeather cached){
+        return cached.ageAt(clock.instant()).compareTo(ttl) < 0;
+    }
+
+    private boolean isUsable(CachedWeather cached){
+        return serveStale && cached.ageAt(clock.instant()).compareTo(staleTtl) < 0;
+    }
+
+    private static CachedWeather await(CompletableFuture<CachedWeather> flight){
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
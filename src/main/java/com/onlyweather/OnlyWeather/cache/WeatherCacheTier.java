@@ -0,0 +1,23 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import java.util.function.Supplier;
+
+// A slower cache level behind WeatherCache's in-memory entries. WeatherCache asks its tiers, in order,
+// before calling the upstream, and writes every freshly loaded entry through to all of them.
+//
+// Tiers keep the original fetch time, so an entry's age (and with it the TTL) carries over between tiers.
+// They may return expired entries; WeatherCache only uses the ones that are still fresh.
+public interface WeatherCacheTier {
+
+    // The stored entry for the key, or null. Must not throw for a missing or unreadable entry.
+    CachedWeather read(String key);
+
+    void write(String key, CachedWeather cachedWeather);
+
+    // Runs WeatherCache's upstream load of the key. A tier shared between instances can hold a lock around it,
+    // so only one instance loads a key at a time: the load looks at the tiers again first, so an instance
+    // that waited for the lock picks up what the other one just wrote instead of calling the upstream.
+    default CachedWeather loadExclusively(String key, Supplier<CachedWeather> load){
+        return load.get();
+    }
+}
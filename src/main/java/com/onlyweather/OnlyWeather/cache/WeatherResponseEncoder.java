@@ -0,0 +1,58 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+
+// Turns a cached response into the bytes GET /{city} sends, once per cache entry instead of once per request.
+@Component
+public class WeatherResponseEncoder {
+
+    private final ObjectMapper objectMapper;
+    private final boolean gzipEnabled;
+
+    public WeatherResponseEncoder(ObjectMapper objectMapper, @Value("${weather.response.gzip:true}") boolean gzipEnabled){
+        this.objectMapper = objectMapper;
+        this.gzipEnabled = gzipEnabled;
+    }
+
+    public EncodedWeather encode(CachedWeather cachedWeather){
+        return cachedWeather.encoded(this::encode);
+    }
+
+    private EncodedWeather encode(WeatherResponseDto weather){
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(weather);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize weather response", e);
+        }
+        String hash = DigestUtils.md5DigestAsHex(json);
+        byte[] gzip = gzipEnabled ? gzip(json) : null;
+        // Small bodies tend to grow when gzipped; then there is no point in sending the compressed copy.
+        if (gzip != null && gzip.length >= json.length) {
+            gzip = null;
+        }
+        return new EncodedWeather(json, "\"" + hash + "\"", gzip, gzip == null ? null : "\"" + hash + "-gzip\"");
+    }
+
+    // Also used for the rendered pages of the view cache.
+    public static byte[] gzip(byte[] body){
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+            gzipOutputStream.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -1,14 +1,43 @@
 package com.onlyweather.OnlyWeather.config;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.web.client.RestTemplate;
 
+import com.onlyweather.OnlyWeather.upstream.OpenWeatherMapMessageConverter;
+
 @Configuration
+@EnableScheduling
+@ImportRuntimeHints(NativeHints.class)
 public class AppConfig {
     
     @Bean
-    public RestTemplate restTemplate(){
-        return new RestTemplate();
+    public RestTemplate restTemplate(ClientHttpRequestFactory upstreamRequestFactory){
+        RestTemplate restTemplate = new RestTemplate(upstreamRequestFactory);
+        // Ahead of the Jackson converter, so OpenWeatherMap responses are streamed straight into WeatherResponseDto.
+        restTemplate.getMessageConverters().add(0, new OpenWeatherMapMessageConverter());
+        return restTemplate;
+    }
+
+    // Runs upstream calls that happen off the request thread, e.g. background cache refreshes and batch fan-out.
+    // With spring.threads.virtual.enabled every task gets its own virtual thread; UpstreamLimiter keeps the
+    // number of concurrent OpenWeatherMap calls bounded either way.
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService upstreamExecutor(@Value("${weather.upstream.threads:8}") int threads,
+    @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads){
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("upstream-", 0).factory());
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("upstream-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(threads, threadFactory);
     }
 }
@@ -0,0 +1,115 @@
+package com.onlyweather.OnlyWeather.config;
+
+import java.time.Duration;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+// Outbound HTTP clients used for OpenWeatherMap calls.
+// By default the blocking stack uses Apache HttpClient with a keep-alive connection pool;
+// weather.http.client=jdk switches to the JDK HttpClient (which can speak HTTP/2 but has no pool statistics).
+// The reactive stack gets a WebClient on Reactor Netty with the same pool size and timeouts.
+// Pooled connections are closed after weather.http.time-to-live even when busy (so DNS changes are picked up),
+// and after weather.http.idle-timeout without use (before the server drops them on its side).
+@Configuration
+public class HttpClientConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "weather.http.client", havingValue = "apache", matchIfMissing = true)
+    public PoolingHttpClientConnectionManager upstreamConnectionManager(
+    @Value("${weather.http.max-connections:50}") int maxConnections,
+    @Value("${weather.http.max-connections-per-route:50}") int maxConnectionsPerRoute,
+    @Value("${weather.http.connect-timeout:2s}") Duration connectTimeout,
+    @Value("${weather.http.read-timeout:5s}") Duration readTimeout,
+    @Value("${weather.http.time-to-live:5m}") Duration timeToLive){
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout.toMillis()))
+            .setSocketTimeout(Timeout.ofMilliseconds(readTimeout.toMillis()))
+            .setTimeToLive(TimeValue.ofMilliseconds(timeToLive.toMillis()))
+            // Re-check connections that sat idle for a while, the server may have closed them.
+            .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+            .build();
+
+        return PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(maxConnectionsPerRoute)
+            .setDefaultConnectionConfig(connectionConfig)
+            .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "weather.http.client", havingValue = "apache", matchIfMissing = true)
+    public ClientHttpRequestFactory pooledRequestFactory(PoolingHttpClientConnectionManager upstreamConnectionManager,
+    @Value("${weather.http.read-timeout:5s}") Duration readTimeout,
+    @Value("${weather.http.pool-acquire-timeout:1s}") Duration poolAcquireTimeout,
+    @Value("${weather.http.idle-timeout:30s}") Duration idleTimeout){
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeout.toMillis()))
+            .setResponseTimeout(Timeout.ofMilliseconds(readTimeout.toMillis()))
+            .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+            .setConnectionManager(upstreamConnectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofMilliseconds(idleTimeout.toMillis()))
+            .build();
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "weather.http.client", havingValue = "jdk")
+    public ClientHttpRequestFactory jdkRequestFactory(
+    @Value("${weather.http.connect-timeout:2s}") Duration connectTimeout,
+    @Value("${weather.http.read-timeout:5s}") Duration readTimeout,
+    @Value("${weather.http.http2:true}") boolean http2){
+        java.net.http.HttpClient httpClient = java.net.http.HttpClient.newBuilder()
+            .version(http2 ? java.net.http.HttpClient.Version.HTTP_2 : java.net.http.HttpClient.Version.HTTP_1_1)
+            .connectTimeout(connectTimeout)
+            .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return requestFactory;
+    }
+
+    @Bean
+    public WebClient upstreamWebClient(WebClient.Builder webClientBuilder,
+    @Value("${weather.http.max-connections:50}") int maxConnections,
+    @Value("${weather.http.connect-timeout:2s}") Duration connectTimeout,
+    @Value("${weather.http.read-timeout:5s}") Duration readTimeout,
+    @Value("${weather.http.pool-acquire-timeout:1s}") Duration poolAcquireTimeout,
+    @Value("${weather.http.time-to-live:5m}") Duration timeToLive,
+    @Value("${weather.http.idle-timeout:30s}") Duration idleTimeout){
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("openweathermap")
+            .maxConnections(maxConnections)
+            .pendingAcquireTimeout(poolAcquireTimeout)
+            .maxLifeTime(timeToLive)
+            .maxIdleTime(idleTimeout)
+            .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+            .responseTimeout(readTimeout);
+        return webClientBuilder
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .build();
+    }
+}
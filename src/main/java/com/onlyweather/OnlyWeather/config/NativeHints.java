@@ -0,0 +1,46 @@
+package com.onlyweather.OnlyWeather.config;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import com.onlyweather.OnlyWeather.dto.BatchWeatherEntryDto;
+import com.onlyweather.OnlyWeather.dto.CacheStatsDto;
+import com.onlyweather.OnlyWeather.dto.HistoryBucketDto;
+import com.onlyweather.OnlyWeather.dto.HttpPoolStatsDto;
+import com.onlyweather.OnlyWeather.dto.MainInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherHistoryDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.enums.WeatherIcons;
+import com.onlyweather.OnlyWeather.exception.ErrorDetails;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.info.Contact;
+import io.swagger.v3.oas.models.info.Info;
+import io.swagger.v3.oas.models.info.License;
+import io.swagger.v3.oas.models.servers.Server;
+
+// Reflection a native image can't discover on its own. The DTOs are read and written by Jackson and read by the
+// Thymeleaf templates through their Lombok getters, none of which is reachable from code the AOT engine analyses.
+// The swagger models are the ones OpenApiConfig builds, which springdoc serializes to /v3/api-docs.
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    private static final Class<?>[] BOUND_TYPES = {
+        WeatherResponseDto.class, MainInfoDto.class, WeatherInfoDto.class, BatchWeatherEntryDto.class,
+        CacheStatsDto.class, HttpPoolStatsDto.class, WeatherHistoryDto.class, HistoryBucketDto.class, ErrorDetails.class,
+        OpenAPI.class, Info.class, Contact.class, License.class, Server.class
+    };
+
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader){
+        bindingRegistrar.registerReflectionHints(hints.reflection(), BOUND_TYPES);
+        hints.reflection().registerType(WeatherIcons.class, MemberCategory.PUBLIC_FIELDS, MemberCategory.DECLARED_FIELDS,
+            MemberCategory.INVOKE_PUBLIC_METHODS);
+        // Read by InlineIcons and hashed by the resource chain for the fingerprinted URLs.
+        hints.resources().registerPattern("static/images/*.png");
+    }
+}
@@ -0,0 +1,53 @@
+package com.onlyweather.OnlyWeather.config;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.onlyweather.OnlyWeather.cache.InMemorySharedCacheBackend;
+import com.onlyweather.OnlyWeather.cache.RedisSharedCacheBackend;
+import com.onlyweather.OnlyWeather.cache.SharedCacheBackend;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.SocketOptions;
+
+// Store behind SharedWeatherCache. weather.cache.shared.backend=redis (the default) talks to the Redis server at
+// redis-uri; in-memory keeps the entries in this JVM, for a single instance or trying the feature out locally.
+// Redis calls are given a short timeout: a slow shared cache must not be slower than the upstream it saves.
+@Configuration
+@ConditionalOnProperty(name = "weather.cache.shared.enabled", havingValue = "true")
+public class SharedCacheConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "weather.cache.shared.backend", havingValue = "redis", matchIfMissing = true)
+    public RedisClient sharedCacheRedisClient(@Value("${weather.cache.shared.redis-uri:redis://localhost:6379}") String redisUri,
+    @Value("${weather.cache.shared.timeout:250ms}") Duration timeout){
+        RedisURI uri = RedisURI.create(redisUri);
+        uri.setTimeout(timeout);
+        RedisClient redisClient = RedisClient.create(uri);
+        redisClient.setOptions(ClientOptions.builder()
+            .socketOptions(SocketOptions.builder().connectTimeout(timeout).keepAlive(true).build())
+            // Fail commands right away while disconnected instead of queueing them until the timeout.
+            .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+            .build());
+        return redisClient;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "weather.cache.shared.backend", havingValue = "redis", matchIfMissing = true)
+    public SharedCacheBackend redisSharedCacheBackend(RedisClient sharedCacheRedisClient){
+        return new RedisSharedCacheBackend(sharedCacheRedisClient, Duration.ofSeconds(5));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "weather.cache.shared.backend", havingValue = "in-memory")
+    public SharedCacheBackend inMemorySharedCacheBackend(){
+        return new InMemorySharedCacheBackend(Clock.systemUTC());
+    }
+}
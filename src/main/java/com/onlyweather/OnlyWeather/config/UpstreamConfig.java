@@ -0,0 +1,70 @@
+package com.onlyweather.OnlyWeather.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.onlyweather.OnlyWeather.exception.UpstreamBudgetExceededException;
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+import com.onlyweather.OnlyWeather.upstream.UpstreamLimiter;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+@Configuration
+public class UpstreamConfig {
+
+    // Opens when too many of the last `window` OpenWeatherMap calls failed or were slow, then rejects calls
+    // for `open-duration` before letting a few probe calls through. Only WeatherServiceUnavailableException
+    // (5xx, 429, timeouts, connection errors) counts as a failure; 404 and 401 are normal answers, and calls
+    // UpstreamBudget didn't let through never reached the upstream.
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry(@Value("${weather.circuit-breaker.window:20}") int window,
+    @Value("${weather.circuit-breaker.minimum-calls:10}") int minimumCalls,
+    @Value("${weather.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+    @Value("${weather.circuit-breaker.slow-call-rate-threshold:80}") float slowCallRateThreshold,
+    @Value("${weather.circuit-breaker.slow-call-duration:2s}") Duration slowCallDuration,
+    @Value("${weather.circuit-breaker.open-duration:30s}") Duration openDuration,
+    @Value("${weather.circuit-breaker.half-open-calls:3}") int halfOpenCalls){
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+            .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+            .slidingWindowSize(window)
+            .minimumNumberOfCalls(minimumCalls)
+            .failureRateThreshold(failureRateThreshold)
+            .slowCallRateThreshold(slowCallRateThreshold)
+            .slowCallDurationThreshold(slowCallDuration)
+            .waitDurationInOpenState(openDuration)
+            .permittedNumberOfCallsInHalfOpenState(halfOpenCalls)
+            .automaticTransitionFromOpenToHalfOpenEnabled(false)
+            .recordException(e -> e instanceof WeatherServiceUnavailableException)
+            .ignoreExceptions(UpstreamBudgetExceededException.class)
+            .build();
+        return CircuitBreakerRegistry.of(config);
+    }
+
+    @Bean
+    public CircuitBreaker upstreamCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry){
+        return circuitBreakerRegistry.circuitBreaker("openweathermap");
+    }
+
+    // resilience4j.circuitbreaker.* meters (state, calls by kind, failure and slow-call rates)
+    // plus the current limit of the adaptive upstream limiter.
+    @Bean
+    public MeterBinder upstreamMeters(CircuitBreakerRegistry circuitBreakerRegistry, UpstreamLimiter upstreamLimiter){
+        return meterRegistry -> {
+            TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+            Gauge.builder("weather.upstream.limit", upstreamLimiter, UpstreamLimiter::getLimit)
+                .description("Current adaptive limit of concurrent OpenWeatherMap calls")
+                .register(meterRegistry);
+            Gauge.builder("weather.upstream.in-flight", upstreamLimiter, UpstreamLimiter::getInFlight)
+                .description("OpenWeatherMap calls currently in flight")
+                .register(meterRegistry);
+        };
+    }
+}
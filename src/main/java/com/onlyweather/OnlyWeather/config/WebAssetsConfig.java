@@ -0,0 +1,75 @@
+package com.onlyweather.OnlyWeather.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+import org.thymeleaf.spring6.view.ThymeleafViewResolver;
+
+import com.onlyweather.OnlyWeather.view.InlineIcons;
+import com.onlyweather.OnlyWeather.view.RenderedViewCache;
+
+// Delivery of the HTML view and its icons.
+//
+// Icons are fingerprinted: the resource chain serves /images/01d@2x-<md5 of the file>.png, and
+// ResourceUrlEncodingFilter rewrites the links Thymeleaf writes (@{/images/...}) to those URLs. A fingerprinted
+// URL never changes content, so it is sent as immutable with a long max-age and browsers stop revalidating it.
+// The plain URL (/images/01d@2x.png) still works, but its content changes with the file, so it only gets a short max-age.
+// The PNGs are already deflate-compressed, so they get no gzip variants; the rendered pages get one in the view cache.
+@Configuration
+public class WebAssetsConfig implements WebMvcConfigurer {
+
+    // A file name ending in the 32 hex digits of an MD5, as VersionResourceResolver's content strategy writes it.
+    private static final String FINGERPRINTED = "/images/{file:.+-[0-9a-f]{32}\\.[a-z]+}";
+
+    private final Duration iconMaxAge;
+    private final Duration unversionedIconMaxAge;
+
+    public WebAssetsConfig(@Value("${weather.static.max-age:365d}") Duration iconMaxAge,
+    @Value("${weather.static.unversioned-max-age:1h}") Duration unversionedIconMaxAge){
+        this.iconMaxAge = iconMaxAge;
+        this.unversionedIconMaxAge = unversionedIconMaxAge;
+    }
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry){
+        // The more specific pattern wins, so fingerprinted URLs are never answered by the second handler.
+        addIcons(registry, FINGERPRINTED, CacheControl.maxAge(iconMaxAge).cachePublic().immutable());
+        addIcons(registry, "/images/**", CacheControl.maxAge(unversionedIconMaxAge).cachePublic());
+    }
+
+    // Both handlers resolve versions: ResourceUrlEncodingFilter asks the one matching the plain URL for the fingerprint.
+    private static void addIcons(ResourceHandlerRegistry registry, String pattern, CacheControl cacheControl){
+        registry.addResourceHandler(pattern)
+            .addResourceLocations("classpath:/static/images/")
+            .setCacheControl(cacheControl)
+            // Caches resolved resources and their hashes, so files are only read and hashed once.
+            .resourceChain(true)
+            .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+    }
+
+    @Bean
+    public FilterRegistrationBean<ResourceUrlEncodingFilter> resourceUrlEncodingFilter(){
+        return new FilterRegistrationBean<>(new ResourceUrlEncodingFilter());
+    }
+
+    @Bean
+    public InlineIcons inlineIcons(@Value("${weather.view.inline-icons:false}") boolean inlineIcons){
+        return new InlineIcons(inlineIcons);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "weather.view.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public RenderedViewCache renderedViewCache(ThymeleafViewResolver thymeleafViewResolver,
+    @Value("${weather.view.cache.max-size:1000}") long maxSize){
+        return new RenderedViewCache(thymeleafViewResolver, maxSize);
+    }
+}
@@ -0,0 +1,53 @@
+package com.onlyweather.OnlyWeather.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.service.ReactiveWeatherService;
+
+import java.time.Instant;
+
+import reactor.core.publisher.Mono;
+
+// Same JSON contract as WeatherController.getWeather, served without blocking a request thread
+// while OpenWeatherMap answers.
+@Controller
+@RequestMapping("/reactive")
+@Tag(name = "Weather (reactive)", description = "Non-blocking API for retrieving weather data")
+public class ReactiveWeatherController {
+    private final ReactiveWeatherService reactiveWeatherService;
+
+    public ReactiveWeatherController(ReactiveWeatherService reactiveWeatherService){
+        this.reactiveWeatherService = reactiveWeatherService;
+    }
+
+    @Operation(summary = "Get weather data for a city", description = "Returns weather data in JSON format for the specific city, using a non-blocking upstream call")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved weather data",
+                        content = @Content(mediaType = "application/json",
+                        schema = @Schema(implementation = WeatherResponseDto.class))),
+            @ApiResponse(responseCode = "404", description = "City not found"),
+            @ApiResponse(responseCode = "500", description = "Weather service unavailable")
+    })
+
+    @GetMapping("/{city}")
+    @ResponseBody
+    public Mono<ResponseEntity<WeatherResponseDto>> getWeather(@Parameter(description = "City name") @PathVariable String city){
+        return reactiveWeatherService.getCachedWeather(city)
+            .map(cachedWeather -> ResponseEntity.ok()
+                .header(HttpHeaders.AGE, String.valueOf(cachedWeather.ageAt(Instant.now()).getSeconds()))
+                .body(cachedWeather.getWeather()));
+    }
+}
@@ -0,0 +1,47 @@
+package com.onlyweather.OnlyWeather.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import com.onlyweather.OnlyWeather.cache.WeatherCache;
+import com.onlyweather.OnlyWeather.dto.CacheStatsDto;
+import com.onlyweather.OnlyWeather.dto.HttpPoolStatsDto;
+
+@Controller
+@RequestMapping("/stats")
+@Tag(name = "Stats", description = "Runtime statistics of the weather service")
+public class StatsController {
+    private final WeatherCache weatherCache;
+    private final ObjectProvider<PoolingHttpClientConnectionManager> connectionManager;
+
+    public StatsController(WeatherCache weatherCache, ObjectProvider<PoolingHttpClientConnectionManager> connectionManager){
+        this.weatherCache = weatherCache;
+        this.connectionManager = connectionManager;
+    }
+
+    @Operation(summary = "Get weather cache statistics", description = "Returns hit, miss, coalesced load and eviction counters of the weather cache")
+    @GetMapping("/cache")
+    @ResponseBody
+    public CacheStatsDto getCacheStats(){
+        return weatherCache.getStats();
+    }
+
+    @Operation(summary = "Get upstream connection pool statistics", description = "Returns leased, available and pending connections of the OpenWeatherMap connection pool, or 404 when the pooled client is not in use")
+    @GetMapping("/http-pool")
+    @ResponseBody
+    public ResponseEntity<HttpPoolStatsDto> getHttpPoolStats(){
+        PoolingHttpClientConnectionManager manager = connectionManager.getIfAvailable();
+        if (manager == null) {
+            return ResponseEntity.notFound().build();
+        }
+        PoolStats stats = manager.getTotalStats();
+        return ResponseEntity.ok(new HttpPoolStatsDto(stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax()));
+    }
+}
@@ -7,23 +7,50 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
+import com.onlyweather.OnlyWeather.cache.CachedWeather;
+import com.onlyweather.OnlyWeather.cache.EncodedWeather;
+import com.onlyweather.OnlyWeather.cache.WeatherResponseEncoder;
+import com.onlyweather.OnlyWeather.dto.BatchWeatherEntryDto;
+import com.onlyweather.OnlyWeather.service.BatchWeatherService;
 import com.onlyweather.OnlyWeather.service.WeatherService;
 import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.view.InlineIcons;
+import com.onlyweather.OnlyWeather.view.RenderedViewCache;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import java.time.Instant;
+import java.util.List;
+
 @Controller
 @RequestMapping
 @Tag(name = "Weather", description = "API for retrieving weather data")
 public class WeatherController {
     private final WeatherService weatherService;
+    private final BatchWeatherService batchWeatherService;
+    private final WeatherResponseEncoder weatherResponseEncoder;
+    private final InlineIcons inlineIcons;
 
-    public WeatherController(WeatherService weatherService){
+    public WeatherController(WeatherService weatherService, BatchWeatherService batchWeatherService, WeatherResponseEncoder weatherResponseEncoder,
+    InlineIcons inlineIcons){
         this.weatherService = weatherService;
+        this.batchWeatherService = batchWeatherService;
+        this.weatherResponseEncoder = weatherResponseEncoder;
+        this.inlineIcons = inlineIcons;
     }
 
     @Operation(summary = "Get weather data for a city", description = "Returns weather data in JSON format for the specific city")
@@ -31,30 +58,129 @@ public class WeatherController {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved weather data",
                         content = @Content(mediaType = "application/json",
                         schema = @Schema(implementation = WeatherResponseDto.class))),
+            @ApiResponse(responseCode = "304", description = "Data matching If-None-Match or If-Modified-Since hasn't changed"),
             @ApiResponse(responseCode = "404", description = "City not found"),
             @ApiResponse(responseCode = "500", description = "Weather service unavailable")
     })
 
+    // Sends the bytes encoded once per cache entry, so Jackson doesn't run again for every request.
+    // A matching If-None-Match or If-Modified-Since is answered with 304 by Spring, since the response
+    // carries an ETag and Last-Modified.
     @GetMapping("/{city}")
     @ResponseBody
-    public WeatherResponseDto getWeather(@Parameter(description = "City name") @PathVariable String city){
-        return weatherService.getWeather(city);
+    public ResponseEntity<byte[]> getWeather(@Parameter(description = "City name") @PathVariable String city,
+    @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        CachedWeather cachedWeather = weatherService.getCachedWeather(city);
+        if (cachedWeather == null) {
+            return ResponseEntity.ok().build();
+        }
+        EncodedWeather encodedWeather = weatherResponseEncoder.encode(cachedWeather);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .cacheControl(cacheControlFor(cachedWeather))
+                .lastModified(cachedWeather.getLastModified())
+                .header(HttpHeaders.AGE, ageInSeconds(cachedWeather));
+        if (encodedWeather.getGzip() != null && acceptsGzip(acceptEncoding)) {
+            return response
+                    .eTag(encodedWeather.getGzipEtag())
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(encodedWeather.getGzip());
+        }
+        return response
+                .eTag(encodedWeather.getEtag())
+                .body(encodedWeather.getJson());
+    }
+
+    @Operation(summary = "Get weather data for many cities", description = "Returns one entry per requested city with either its weather data or an error; cities are fetched concurrently")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, check the status of every entry"),
+            @ApiResponse(responseCode = "400", description = "No cities or too many cities requested")
+    })
+
+    @GetMapping("/batch")
+    @ResponseBody
+    public List<BatchWeatherEntryDto> getWeatherBatch(@Parameter(description = "Comma separated city names") @RequestParam List<String> cities){
+        return batchWeatherService.getWeather(cities);
+    }
+
+    @Operation(summary = "Get weather data for many cities", description = "Same as GET /batch, with the city names sent as a JSON array")
+    @PostMapping("/batch")
+    @ResponseBody
+    public List<BatchWeatherEntryDto> postWeatherBatch(@RequestBody List<String> cities){
+        return batchWeatherService.getWeather(cities);
+    }
+
+    @Operation(summary = "Suggest city names", description = "Returns known city names starting with the prefix, spelled the way /{city} accepts them; empty when no city list is configured")
+    @GetMapping("/cities/suggest")
+    @ResponseBody
+    public List<String> suggestCities(@Parameter(description = "Start of a city name") @RequestParam String prefix,
+    @Parameter(description = "Maximum number of names, at most 50") @RequestParam(defaultValue = "10") int limit){
+        return weatherService.suggestCities(prefix, Math.max(0, Math.min(limit, 50)));
     }
 
     @Operation(summary = "Display HTML view with weather data", description = "Returns an HTML page with weather data for the specified city")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved weather data and generated HTML view"),
+            @ApiResponse(responseCode = "304", description = "Data matching If-None-Match or If-Modified-Since hasn't changed"),
             @ApiResponse(responseCode = "404", description = "City not found"),
             @ApiResponse(responseCode = "500", description = "Weather service unavailable")
     })
 
     @GetMapping("/view/{city}")
-    public String showWeatherView(@Parameter(description = "City name") @PathVariable String city, Model model){
-        WeatherResponseDto weatherData = weatherService.getWeather(city);
+    public String showWeatherView(@Parameter(description = "City name") @PathVariable String city, Model model,
+    WebRequest webRequest, HttpServletResponse response){
+        CachedWeather cachedWeather = weatherService.getCachedWeather(city);
+        response.setHeader(HttpHeaders.AGE, ageInSeconds(cachedWeather));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControlFor(cachedWeather).getHeaderValue());
+        // The page is rendered from the same data as the JSON, so the JSON's ETag identifies it too.
+        // It's weak because the HTML also depends on the template.
+        String dataEtag = weatherResponseEncoder.encode(cachedWeather).getEtag();
+        String etag = "W/" + dataEtag;
+        if (webRequest.checkNotModified(etag, cachedWeather.getLastModified().toEpochMilli())) {
+            return null;
+        }
+        // Everything the page shows comes from the JSON, so its ETag is also the version of the rendered page.
+        model.addAttribute(RenderedViewCache.VERSION_ATTRIBUTE, dataEtag);
+        WeatherResponseDto weatherData = cachedWeather.getWeather();
         model.addAttribute("city", weatherData.getName());
         model.addAttribute("temperature", weatherData.getMain().getTemp() + " °С");
         model.addAttribute("icon", weatherData.getIconFileName());
+        model.addAttribute("iconDataUri", inlineIcons.dataUri(weatherData.getIconFileName()));
         model.addAttribute("description", weatherData.getWeather().get(0).getDescription());
         return "weather-view";
     }
+
+    // True for "gzip" or "*" in Accept-Encoding, unless it comes with q=0.
+    public static boolean acceptsGzip(String acceptEncoding){
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+                boolean refused = parts.length > 1 && parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+                if (!refused) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // max-age is the entry's whole freshness lifetime rather than what's left of it: caches subtract the
+    // Age header themselves. While the cache serves stale entries, so may the browser or CDN.
+    private static CacheControl cacheControlFor(CachedWeather cachedWeather){
+        CacheControl cacheControl = CacheControl.maxAge(cachedWeather.getFreshFor()).cachePublic();
+        if (!cachedWeather.getStaleFor().isZero()) {
+            cacheControl = cacheControl.staleWhileRevalidate(cachedWeather.getStaleFor());
+        }
+        return cacheControl;
+    }
+
+    // Age tells clients (and caches in between) how long ago the data was fetched from OpenWeatherMap.
+    private static String ageInSeconds(CachedWeather cachedWeather){
+        return String.valueOf(cachedWeather.ageAt(Instant.now()).getSeconds());
+    }
 }
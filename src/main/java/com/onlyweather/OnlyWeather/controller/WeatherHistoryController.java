@@ -0,0 +1,69 @@
+package com.onlyweather.OnlyWeather.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import com.onlyweather.OnlyWeather.dto.WeatherHistoryDto;
+import com.onlyweather.OnlyWeather.history.ObservationStore;
+import com.onlyweather.OnlyWeather.service.WeatherService;
+
+import java.time.Instant;
+
+// Trends from the observations this instance has fetched; never calls OpenWeatherMap.
+@Controller
+@Tag(name = "Weather history", description = "Temperature trends from recorded observations")
+public class WeatherHistoryController {
+    private static final int MAX_HOURS = 24 * 31;
+    private static final int MAX_STEPS = 1000;
+
+    private final WeatherService weatherService;
+    private final ObservationStore observationStore;
+
+    public WeatherHistoryController(WeatherService weatherService, ObservationStore observationStore){
+        this.weatherService = weatherService;
+        this.observationStore = observationStore;
+    }
+
+    @Operation(summary = "Get the temperature history of a city",
+            description = "Returns min, max and average temperature per step over the last hours, from the observations fetched "
+                + "for the city so far. Steps are aligned to multiples of the step length and the last one holds the current time; "
+                + "older observations are downsampled and count towards the step their downsampled bucket starts in")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "History computed; steps without observations have a count of 0",
+                        content = @Content(mediaType = "application/json",
+                        schema = @Schema(implementation = WeatherHistoryDto.class))),
+            @ApiResponse(responseCode = "400", description = "Window or step out of range"),
+            @ApiResponse(responseCode = "404", description = "City not found")
+    })
+
+    @GetMapping("/{city}/history")
+    @ResponseBody
+    public WeatherHistoryDto getHistory(@Parameter(description = "City name") @PathVariable String city,
+    @Parameter(description = "Length of the window in hours, at most 744") @RequestParam(defaultValue = "24") int hours,
+    @Parameter(description = "Length of each step in minutes") @RequestParam(defaultValue = "60") int stepMinutes){
+        if (hours < 1 || hours > MAX_HOURS) {
+            throw new IllegalArgumentException("hours must be between 1 and " + MAX_HOURS);
+        }
+        if (stepMinutes < 1 || ((long) hours * 60 + stepMinutes - 1) / stepMinutes > MAX_STEPS) {
+            throw new IllegalArgumentException("stepMinutes must be at least 1 and leave at most " + MAX_STEPS + " steps");
+        }
+        String key = weatherService.cacheKey(city);
+        long step = stepMinutes * 60L;
+        long steps = (hours * 3600L + step - 1) / step;
+        long to = (Instant.now().getEpochSecond() / step + 1) * step;
+        WeatherHistoryDto history = observationStore.history(key, to - steps * step, to, step);
+        if (history.getCity() == null) {
+            history.setCity(city.trim());
+        }
+        return history;
+    }
+}
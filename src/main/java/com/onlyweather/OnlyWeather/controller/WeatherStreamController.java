@@ -0,0 +1,46 @@
+package com.onlyweather.OnlyWeather.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import com.onlyweather.OnlyWeather.service.WeatherStreamHub;
+
+// Pushes a city's weather to clients as it changes, instead of clients polling GET /{city}.
+@Controller
+@RequestMapping("/stream")
+@Tag(name = "Weather (streaming)", description = "Server-Sent Events with weather updates")
+public class WeatherStreamController {
+    private final WeatherStreamHub weatherStreamHub;
+
+    public WeatherStreamController(WeatherStreamHub weatherStreamHub){
+        this.weatherStreamHub = weatherStreamHub;
+    }
+
+    @Operation(summary = "Stream weather data for a city",
+            description = "Opens a Server-Sent Events stream: a `weather` event with the current weather in the same JSON as GET /{city}, "
+                + "then one more whenever it changes. Event IDs are the response's ETag; reconnect with Last-Event-ID to skip an unchanged first event")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream opened",
+                        content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE)),
+            @ApiResponse(responseCode = "404", description = "City not found"),
+            @ApiResponse(responseCode = "503", description = "Weather service unavailable or too many open streams")
+    })
+
+    @GetMapping(value = "/{city}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter streamWeather(@Parameter(description = "City name") @PathVariable String city,
+    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId){
+        return weatherStreamHub.subscribe(city, lastEventId);
+    }
+}
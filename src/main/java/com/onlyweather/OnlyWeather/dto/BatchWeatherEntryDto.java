@@ -0,0 +1,29 @@
+package com.onlyweather.OnlyWeather.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Result for one city of a batch request: either weather data or an error, never both.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchWeatherEntryDto {
+    private String city;
+    private int status;
+    private WeatherResponseDto weather;
+    private String error;
+
+    public static BatchWeatherEntryDto success(String city, WeatherResponseDto weather){
+        return new BatchWeatherEntryDto(city, 200, weather, null);
+    }
+
+    public static BatchWeatherEntryDto failure(String city, int status, String error){
+        return new BatchWeatherEntryDto(city, status, null, error);
+    }
+}
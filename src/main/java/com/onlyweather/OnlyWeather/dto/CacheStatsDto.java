@@ -0,0 +1,23 @@
+package com.onlyweather.OnlyWeather.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsDto {
+    private long hits;
+    private long staleHits;
+    private long staleOnErrorHits;
+    private long misses;
+    // Misses answered by a slower cache tier (e.g. the disk store) instead of the upstream.
+    private long tierHits;
+    private long coalescedLoads;
+    private long backgroundRefreshes;
+    private long evictions;
+    private long size;
+}
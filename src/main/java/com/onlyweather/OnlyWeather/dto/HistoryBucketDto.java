@@ -0,0 +1,22 @@
+package com.onlyweather.OnlyWeather.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// One step of GET /{city}/history; the temperatures are null when nothing was observed in it.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryBucketDto {
+    // Unix time the step starts at.
+    private long from;
+    private Double min;
+    private Double max;
+    private Double avg;
+    private long count;
+    // Icon code of the latest observation in the step.
+    private String icon;
+}
@@ -0,0 +1,17 @@
+package com.onlyweather.OnlyWeather.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class HttpPoolStatsDto {
+    private int leased;
+    private int available;
+    private int pending;
+    private int max;
+}
@@ -0,0 +1,26 @@
+package com.onlyweather.OnlyWeather.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class WeatherHistoryDto {
+    private String city;
+    // Unix times of the window, and the length of each step in seconds.
+    private long from;
+    private long to;
+    private long step;
+    // Over the whole window; null when nothing was observed in it.
+    private Double min;
+    private Double max;
+    private Double avg;
+    private long count;
+    private List<HistoryBucketDto> buckets;
+}
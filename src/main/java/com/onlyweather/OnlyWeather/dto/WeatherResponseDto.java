@@ -2,6 +2,8 @@ package com.onlyweather.OnlyWeather.dto;
 
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -16,4 +18,12 @@ public class WeatherResponseDto {
     private List<WeatherInfoDto> weather;
     private String name;
     private String iconFileName;
+
+    // Unix time of the upstream observation; read from OpenWeatherMap but not part of our own JSON.
+    @JsonProperty(value = "dt", access = JsonProperty.Access.WRITE_ONLY)
+    private Long observedAt;
+
+    // OpenWeatherMap city ID; used to match entries of a group call to the cities that asked for them.
+    @JsonProperty(value = "id", access = JsonProperty.Access.WRITE_ONLY)
+    private Integer cityId;
 }
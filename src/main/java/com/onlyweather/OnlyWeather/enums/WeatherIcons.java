@@ -21,7 +21,7 @@ public enum WeatherIcons {
     SHOWER_RAIN("09d", "09d@2x.png"),
     SHOWER_RAIN_NIGHT("09n", "09n@2x.png"),
 
-    RAIN("01d", "10d@2x.png"),
+    RAIN("10d", "10d@2x.png"),
     RAIN_NIGHT("10n", "10n@2x.png"),
 
     THUNDERSTORM("11d", "11d@2x.png"),
@@ -33,15 +33,63 @@ public enum WeatherIcons {
     MIST("50d", "50d@2x.png"),
     MIST_NIGHT("50n", "50n@2x.png");
 
-    private String apiIconCode;
-    private String iconFileName;
+    private final String apiIconCode;
+    private final String iconFileName;
+
+    // Icon for codes we don't know (OpenWeatherMap may add some); clouds are the least misleading guess.
+    public static final WeatherIcons DEFAULT = SCATTERED_CLOUDS;
+
+    // Every code in the OpenWeatherMap docs: these two digits, each with a "d" (day) and "n" (night) variant.
+    private static final int[] DOCUMENTED_CODES = {1, 2, 3, 4, 9, 10, 11, 13, 50};
+
+    // Indexed by numeric code * 2 + (0 for day, 1 for night), so a lookup is two char checks and an array read.
+    private static final WeatherIcons[] BY_CODE = buildLookupTable();
 
     public static WeatherIcons findByApiIconCode(String codeToFind){
-        for (WeatherIcons icon: values()){
-            if (icon.getApiIconCode().equalsIgnoreCase(codeToFind)){
-                return icon;
+        int index = indexOf(codeToFind);
+        if (index < 0 || BY_CODE[index] == null) {
+            return DEFAULT;
+        }
+        return BY_CODE[index];
+    }
+
+    // Returns -1 for anything that isn't two digits followed by d or n (in either case).
+    private static int indexOf(String code){
+        if (code == null || code.length() != 3) {
+            return -1;
+        }
+        int tens = code.charAt(0) - '0';
+        int ones = code.charAt(1) - '0';
+        if (tens < 0 || tens > 9 || ones < 0 || ones > 9) {
+            return -1;
+        }
+        int suffix = switch (code.charAt(2)) {
+            case 'd', 'D' -> 0;
+            case 'n', 'N' -> 1;
+            default -> -1;
+        };
+        return suffix < 0 ? -1 : (tens * 10 + ones) * 2 + suffix;
+    }
+
+    // Runs when the enum is first loaded (WeatherService's constructor makes sure that is at startup), so a mistake in the
+    // table above stops the application instead of showing the wrong icon.
+    private static WeatherIcons[] buildLookupTable(){
+        WeatherIcons[] table = new WeatherIcons[200];
+        for (WeatherIcons icon : values()) {
+            int index = indexOf(icon.apiIconCode);
+            if (index < 0) {
+                throw new IllegalStateException("Malformed icon code " + icon.apiIconCode + " for " + icon);
+            }
+            if (table[index] != null) {
+                throw new IllegalStateException("Icon code " + icon.apiIconCode + " is used by both " + table[index] + " and " + icon);
+            }
+            table[index] = icon;
+        }
+        for (int code : DOCUMENTED_CODES) {
+            if (table[code * 2] == null || table[code * 2 + 1] == null) {
+                throw new IllegalStateException("Missing day or night icon for code " + code);
             }
         }
-        return null;
+        return table;
     }
 }
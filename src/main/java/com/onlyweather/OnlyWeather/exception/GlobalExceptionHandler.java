@@ -8,30 +8,49 @@ import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
 
+import com.onlyweather.OnlyWeather.metrics.WeatherMetrics;
+
 // Marks this class as a global exception handler for controllers.
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    private final WeatherMetrics weatherMetrics;
+
+    public GlobalExceptionHandler(WeatherMetrics weatherMetrics){
+        this.weatherMetrics = weatherMetrics;
+    }
+
     @ExceptionHandler(CityNotFoundException.class)
     public ResponseEntity<ErrorDetails> handleCityNotFoundException(CityNotFoundException ex, WebRequest request){
+        weatherMetrics.countException(ex);
         ErrorDetails errorDetails = new ErrorDetails(LocalDateTime.now(), ex.getMessage(), request.getDescription(false));
         return new ResponseEntity<>(errorDetails, HttpStatus.NOT_FOUND);
     }
 
     @ExceptionHandler(InvalidApiKeyException.class)
     public ResponseEntity<ErrorDetails> handleInvalidApiKeyException(InvalidApiKeyException ex, WebRequest request){
+        weatherMetrics.countException(ex);
         ErrorDetails errorDetails = new ErrorDetails(LocalDateTime.now(), ex.getMessage(), request.getDescription(false));
         return new ResponseEntity<>(errorDetails, HttpStatus.UNAUTHORIZED);
     }
     
     @ExceptionHandler(WeatherServiceUnavailableException.class)
     public ResponseEntity<ErrorDetails> handleWeatherServiceUnavailableException(WeatherServiceUnavailableException ex, WebRequest request){
+        weatherMetrics.countException(ex);
         ErrorDetails errorDetails = new ErrorDetails(LocalDateTime.now(), ex.getMessage(), request.getDescription(false));
         return new ResponseEntity<>(errorDetails, HttpStatus.SERVICE_UNAVAILABLE);
     }
 
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorDetails> handleIllegalArgumentException(IllegalArgumentException ex, WebRequest request){
+        weatherMetrics.countException(ex);
+        ErrorDetails errorDetails = new ErrorDetails(LocalDateTime.now(), ex.getMessage(), request.getDescription(false));
+        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorDetails> handleException(Exception ex, WebRequest request){
+        weatherMetrics.countException(ex);
         ErrorDetails errorDetails = new ErrorDetails(LocalDateTime.now(), "An unexpected internal server error occurred", request.getDescription(false));
         return new ResponseEntity<>(errorDetails, HttpStatus.INTERNAL_SERVER_ERROR);
     }
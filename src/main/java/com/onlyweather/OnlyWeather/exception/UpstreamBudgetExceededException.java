@@ -0,0 +1,9 @@
+package com.onlyweather.OnlyWeather.exception;
+
+// No OpenWeatherMap call was made because the call budget is used up. A WeatherServiceUnavailableException,
+// so the cache falls back to stale entries and clients get a 503, but the circuit breaker ignores it.
+public class UpstreamBudgetExceededException extends WeatherServiceUnavailableException{
+    public UpstreamBudgetExceededException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,344 @@
+package com.onlyweather.OnlyWeather.history;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.onlyweather.OnlyWeather.dto.HistoryBucketDto;
+import com.onlyweather.OnlyWeather.dto.WeatherHistoryDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.enums.WeatherIcons;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Every observation fetched from OpenWeatherMap (time, temperature, icon) per city, so GET /{city}/history can
+// show a trend without a history API plan.
+//
+// The points live in flat primitive arrays allocated once at startup: each city owns a fixed slot of raw-points
+// entries in every column, used as a ring. A point pushed out of the ring isn't lost but folded into a second ring
+// of downsampled buckets (min, max, sum, count per downsample-interval), so old data gets coarser instead of going
+// away. Memory is therefore fixed by max-cities, raw-points and downsampled-points (see getMemoryBytes); when all
+// slots are taken, the city that went longest without an observation gives up its slot.
+//
+// Observations arrive at most as often as upstream calls are made, so one lock for the whole store is plenty.
+@Component
+public class ObservationStore implements MeterBinder {
+
+    private static final byte NO_ICON = -1;
+    private static final WeatherIcons[] ICONS = WeatherIcons.values();
+    // Bytes per raw point (int time, float temp, byte icon) and per downsampled bucket (int start, float min/max/sum,
+    // int count, byte icon).
+    private static final int RAW_POINT_BYTES = 4 + 4 + 1;
+    private static final int BUCKET_BYTES = 4 + 4 + 4 + 4 + 4 + 1;
+    // Per city: last observation time, four ring positions, key and name references (compressed oops).
+    private static final long SLOT_BYTES = 8 + 4 * 4 + 2 * 4;
+
+    private final int maxCities;
+    private final int rawCapacity;
+    private final int bucketCapacity;
+    private final long bucketSeconds;
+    private final Clock clock;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder cityEvictions = new LongAdder();
+
+    // Guarded by lock. Slot of each city, by cache key.
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final String[] slotKeys;
+    private final String[] slotNames;
+    private final long[] lastObserved;
+
+    // Raw points; the ring of slot s is [s * rawCapacity, (s + 1) * rawCapacity). Times are unsigned epoch seconds.
+    private final int[] rawHead;
+    private final int[] rawSize;
+    private final int[] rawTime;
+    private final float[] rawTemp;
+    private final byte[] rawIcon;
+
+    // Downsampled buckets, laid out the same way; the icon is the one of the bucket's latest point.
+    private final int[] bucketHead;
+    private final int[] bucketSize;
+    private final int[] bucketStart;
+    private final float[] bucketMin;
+    private final float[] bucketMax;
+    private final float[] bucketSum;
+    private final int[] bucketCount;
+    private final byte[] bucketIcon;
+
+    @Autowired
+    public ObservationStore(@Value("${weather.history.max-cities:1000}") int maxCities,
+    @Value("${weather.history.raw-points:288}") int rawPoints,
+    @Value("${weather.history.downsampled-points:336}") int downsampledPoints,
+    @Value("${weather.history.downsample-interval:1h}") Duration downsampleInterval){
+        this(maxCities, rawPoints, downsampledPoints, downsampleInterval, Clock.systemUTC());
+    }
+
+    public ObservationStore(int maxCities, int rawPoints, int downsampledPoints, Duration downsampleInterval, Clock clock){
+        if (maxCities < 0 || rawPoints < 1 || downsampledPoints < 0) {
+            throw new IllegalArgumentException("History max-cities and downsampled-points must not be negative, raw-points must be at least 1");
+        }
+        if (downsampleInterval.getSeconds() < 1) {
+            throw new IllegalArgumentException("History downsample-interval must be at least one second");
+        }
+        this.maxCities = maxCities;
+        this.rawCapacity = rawPoints;
+        this.bucketCapacity = downsampledPoints;
+        this.bucketSeconds = downsampleInterval.getSeconds();
+        this.clock = clock;
+        this.slotKeys = new String[maxCities];
+        this.slotNames = new String[maxCities];
+        this.lastObserved = new long[maxCities];
+        this.rawHead = new int[maxCities];
+        this.rawSize = new int[maxCities];
+        this.rawTime = new int[Math.multiplyExact(maxCities, rawPoints)];
+        this.rawTemp = new float[rawTime.length];
+        this.rawIcon = new byte[rawTime.length];
+        this.bucketHead = new int[maxCities];
+        this.bucketSize = new int[maxCities];
+        this.bucketStart = new int[Math.multiplyExact(maxCities, downsampledPoints)];
+        this.bucketMin = new float[bucketStart.length];
+        this.bucketMax = new float[bucketStart.length];
+        this.bucketSum = new float[bucketStart.length];
+        this.bucketCount = new int[bucketStart.length];
+        this.bucketIcon = new byte[bucketStart.length];
+    }
+
+    // Records nothing, for callers that don't keep history.
+    public static ObservationStore disabled(){
+        return new ObservationStore(0, 1, 0, Duration.ofHours(1), Clock.systemUTC());
+    }
+
+    // Adds the observation in the response to the city's history. The same observation fetched again (same
+    // upstream time) or an older one is ignored.
+    public void record(String key, WeatherResponseDto weather){
+        if (maxCities == 0 || weather == null || weather.getMain() == null) {
+            return;
+        }
+        long time = weather.getObservedAt() != null ? weather.getObservedAt() : clock.instant().getEpochSecond();
+        byte icon = NO_ICON;
+        if (weather.getWeather() != null && !weather.getWeather().isEmpty()) {
+            icon = (byte) WeatherIcons.findByApiIconCode(weather.getWeather().get(0).getIcon()).ordinal();
+        }
+        lock.writeLock().lock();
+        try {
+            int slot = slotFor(key);
+            if (rawSize[slot] > 0 && time <= lastObserved[slot]) {
+                return;
+            }
+            slotNames[slot] = weather.getName();
+            lastObserved[slot] = time;
+            append(slot, time, (float) weather.getMain().getTemp(), icon);
+            recorded.increment();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Min, max and average temperature of the city per step over [from, to), in epoch seconds, with to - from
+    // a multiple of step. Downsampled data counts towards the step its bucket starts in. Only the result is
+    // allocated, nothing per point.
+    public WeatherHistoryDto history(String key, long from, long to, long step){
+        int steps = (int) ((to - from) / step);
+        float[] min = new float[steps];
+        float[] max = new float[steps];
+        double[] sum = new double[steps];
+        int[] count = new int[steps];
+        byte[] icon = new byte[steps];
+        long[] iconTime = new long[steps];
+        Arrays.fill(iconTime, Long.MIN_VALUE);
+        String name = null;
+
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(key);
+            if (slot != null) {
+                name = slotNames[slot];
+                int base = slot * bucketCapacity;
+                for (int i = 0; i < bucketSize[slot]; i++) {
+                    int index = base + (bucketHead[slot] + i) % bucketCapacity;
+                    long time = Integer.toUnsignedLong(bucketStart[index]);
+                    if (time >= from && time < to) {
+                        add((int) ((time - from) / step), min, max, sum, count, icon, iconTime,
+                            bucketMin[index], bucketMax[index], bucketSum[index], bucketCount[index], bucketIcon[index], time);
+                    }
+                }
+                base = slot * rawCapacity;
+                for (int i = 0; i < rawSize[slot]; i++) {
+                    int index = base + (rawHead[slot] + i) % rawCapacity;
+                    long time = Integer.toUnsignedLong(rawTime[index]);
+                    if (time >= from && time < to) {
+                        float temp = rawTemp[index];
+                        add((int) ((time - from) / step), min, max, sum, count, icon, iconTime,
+                            temp, temp, temp, 1, rawIcon[index], time);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<HistoryBucketDto> buckets = new ArrayList<>(steps);
+        float totalMin = Float.POSITIVE_INFINITY;
+        float totalMax = Float.NEGATIVE_INFINITY;
+        double totalSum = 0;
+        long totalCount = 0;
+        for (int i = 0; i < steps; i++) {
+            if (count[i] == 0) {
+                buckets.add(new HistoryBucketDto(from + i * step, null, null, null, 0, null));
+                continue;
+            }
+            buckets.add(new HistoryBucketDto(from + i * step, (double) min[i], (double) max[i], sum[i] / count[i], count[i],
+                icon[i] == NO_ICON ? null : ICONS[icon[i]].getApiIconCode()));
+            totalMin = Math.min(totalMin, min[i]);
+            totalMax = Math.max(totalMax, max[i]);
+            totalSum += sum[i];
+            totalCount += count[i];
+        }
+        return new WeatherHistoryDto(name, from, to, step,
+            totalCount == 0 ? null : (double) totalMin, totalCount == 0 ? null : (double) totalMax,
+            totalCount == 0 ? null : totalSum / totalCount, totalCount, buckets);
+    }
+
+    public int getCities(){
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // What the columns and the per-city ring positions take on the heap, all of it allocated up front.
+    public long getMemoryBytes(){
+        return (long) rawTime.length * RAW_POINT_BYTES + (long) bucketStart.length * BUCKET_BYTES + maxCities * SLOT_BYTES;
+    }
+
+    // Called with the write lock held.
+    private int slotFor(String key){
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            return slot;
+        }
+        int free;
+        if (slots.size() < maxCities) {
+            free = slots.size();
+        } else {
+            // Full: the city that went longest without an observation makes room.
+            free = 0;
+            for (int i = 1; i < maxCities; i++) {
+                if (lastObserved[i] < lastObserved[free]) {
+                    free = i;
+                }
+            }
+            slots.remove(slotKeys[free]);
+            cityEvictions.increment();
+        }
+        slots.put(key, free);
+        slotKeys[free] = key;
+        rawHead[free] = 0;
+        rawSize[free] = 0;
+        bucketHead[free] = 0;
+        bucketSize[free] = 0;
+        return free;
+    }
+
+    // Called with the write lock held.
+    private void append(int slot, long time, float temp, byte icon){
+        int base = slot * rawCapacity;
+        int index;
+        if (rawSize[slot] < rawCapacity) {
+            index = base + (rawHead[slot] + rawSize[slot]) % rawCapacity;
+            rawSize[slot]++;
+        } else {
+            // Full: the oldest point moves into the downsampled ring and its place takes the new one.
+            index = base + rawHead[slot];
+            downsample(slot, Integer.toUnsignedLong(rawTime[index]), rawTemp[index], rawIcon[index]);
+            rawHead[slot] = (rawHead[slot] + 1) % rawCapacity;
+        }
+        rawTime[index] = (int) time;
+        rawTemp[index] = temp;
+        rawIcon[index] = icon;
+    }
+
+    // Called with the write lock held. Points leave the raw ring oldest first, so a point either belongs to the
+    // newest bucket or starts a new one.
+    private void downsample(int slot, long time, float temp, byte icon){
+        if (bucketCapacity == 0) {
+            return;
+        }
+        int start = (int) (time - Math.floorMod(time, bucketSeconds));
+        int base = slot * bucketCapacity;
+        if (bucketSize[slot] > 0) {
+            int newest = base + (bucketHead[slot] + bucketSize[slot] - 1) % bucketCapacity;
+            if (bucketStart[newest] == start) {
+                bucketMin[newest] = Math.min(bucketMin[newest], temp);
+                bucketMax[newest] = Math.max(bucketMax[newest], temp);
+                bucketSum[newest] += temp;
+                bucketCount[newest]++;
+                bucketIcon[newest] = icon;
+                return;
+            }
+        }
+        int index;
+        if (bucketSize[slot] < bucketCapacity) {
+            index = base + (bucketHead[slot] + bucketSize[slot]) % bucketCapacity;
+            bucketSize[slot]++;
+        } else {
+            index = base + bucketHead[slot];
+            bucketHead[slot] = (bucketHead[slot] + 1) % bucketCapacity;
+        }
+        bucketStart[index] = start;
+        bucketMin[index] = temp;
+        bucketMax[index] = temp;
+        bucketSum[index] = temp;
+        bucketCount[index] = 1;
+        bucketIcon[index] = icon;
+    }
+
+    private static void add(int step, float[] min, float[] max, double[] sum, int[] count, byte[] icon, long[] iconTime,
+    float valueMin, float valueMax, float valueSum, int valueCount, byte valueIcon, long time){
+        if (count[step] == 0) {
+            min[step] = valueMin;
+            max[step] = valueMax;
+        } else {
+            min[step] = Math.min(min[step], valueMin);
+            max[step] = Math.max(max[step], valueMax);
+        }
+        sum[step] += valueSum;
+        count[step] += valueCount;
+        if (time >= iconTime[step]) {
+            iconTime[step] = time;
+            icon[step] = valueIcon;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry){
+        Gauge.builder("weather.history.cities", this, ObservationStore::getCities)
+            .description("Cities with recorded observations")
+            .register(meterRegistry);
+        Gauge.builder("weather.history.memory", this, ObservationStore::getMemoryBytes)
+            .description("Heap allocated for recorded observations")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        FunctionCounter.builder("weather.history.observations", recorded, LongAdder::sum)
+            .description("Observations recorded")
+            .register(meterRegistry);
+        FunctionCounter.builder("weather.history.evictions", cityEvictions, LongAdder::sum)
+            .description("Cities whose history was dropped to make room for another city")
+            .register(meterRegistry);
+    }
+}
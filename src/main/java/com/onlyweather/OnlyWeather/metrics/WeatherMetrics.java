@@ -0,0 +1,108 @@
+package com.onlyweather.OnlyWeather.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.onlyweather.OnlyWeather.exception.CityNotFoundException;
+import com.onlyweather.OnlyWeather.exception.InvalidApiKeyException;
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+// Application specific meters, exposed through /actuator/prometheus next to the built-in ones.
+//
+//   weather.upstream.requests  timer, tags: client (rest, group, webclient), outcome (success, not_found,
+//                              unauthorized, unavailable, other). One sample per OpenWeatherMap call,
+//                              with p50/p95/p99 and a histogram so p99 can be aggregated across instances.
+//   weather.upstream.group.size  distribution summary. Cities asked for in each group call, so the
+//                              upstream calls saved by batching can be read off its mean.
+//   weather.exceptions         counter, tag: exception (simple class name). One per exception that
+//                              reached GlobalExceptionHandler.
+//
+// Per-endpoint latency of our own controllers is Spring's http.server.requests timer (tagged with uri,
+// method, status and outcome), configured with percentiles in application.properties.
+@Component
+public class WeatherMetrics {
+
+    public static final String UPSTREAM_REQUESTS = "weather.upstream.requests";
+    public static final String GROUP_SIZE = "weather.upstream.group.size";
+    public static final String EXCEPTIONS = "weather.exceptions";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Timer> upstreamTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, Counter> exceptionCounters = new ConcurrentHashMap<>();
+    private final DistributionSummary groupSize;
+
+    public WeatherMetrics(MeterRegistry meterRegistry){
+        this.meterRegistry = meterRegistry;
+        this.groupSize = DistributionSummary.builder(GROUP_SIZE)
+            .description("Cities requested per OpenWeatherMap group call")
+            .baseUnit("cities")
+            .register(meterRegistry);
+    }
+
+    // Times a blocking upstream call; the outcome comes from the exception it throws, if any.
+    public <T> T timeUpstreamCall(String client, Supplier<T> upstreamCall){
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            T result = upstreamCall.get();
+            sample.stop(upstreamTimer(client, "success"));
+            return result;
+        } catch (RuntimeException e) {
+            sample.stop(upstreamTimer(client, outcome(e)));
+            throw e;
+        }
+    }
+
+    // Same as above for a Mono; the timer starts on subscription.
+    public <T> Mono<T> timeUpstreamCall(String client, Mono<T> upstreamCall){
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return upstreamCall
+                .doOnSuccess(result -> sample.stop(upstreamTimer(client, "success")))
+                .doOnError(e -> sample.stop(upstreamTimer(client, outcome(e))));
+        });
+    }
+
+    public void recordGroupSize(int cities){
+        groupSize.record(cities);
+    }
+
+    public void countException(Throwable exception){
+        exceptionCounters.computeIfAbsent(exception.getClass(), type -> Counter.builder(EXCEPTIONS)
+            .description("Exceptions handled by GlobalExceptionHandler")
+            .tag("exception", type.getSimpleName())
+            .register(meterRegistry))
+            .increment();
+    }
+
+    static String outcome(Throwable exception){
+        if (exception instanceof CityNotFoundException) {
+            return "not_found";
+        }
+        if (exception instanceof InvalidApiKeyException) {
+            return "unauthorized";
+        }
+        if (exception instanceof WeatherServiceUnavailableException) {
+            return "unavailable";
+        }
+        return "other";
+    }
+
+    private Timer upstreamTimer(String client, String outcome){
+        return upstreamTimers.computeIfAbsent(client + ':' + outcome, key -> Timer.builder(UPSTREAM_REQUESTS)
+            .description("Latency of OpenWeatherMap calls")
+            .tag("client", client)
+            .tag("outcome", outcome)
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+    }
+}
@@ -0,0 +1,106 @@
+package com.onlyweather.OnlyWeather.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import com.onlyweather.OnlyWeather.cache.CachedWeather;
+import com.onlyweather.OnlyWeather.dto.BatchWeatherEntryDto;
+import com.onlyweather.OnlyWeather.exception.CityNotFoundException;
+import com.onlyweather.OnlyWeather.exception.InvalidApiKeyException;
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+import com.onlyweather.OnlyWeather.upstream.UpstreamPriority;
+
+// Looks up many cities at once. Cache hits are answered on the calling thread,
+// misses are fetched concurrently on the bounded upstream executor, in the batch lane of the upstream budget.
+@Service
+public class BatchWeatherService {
+
+    private final WeatherService weatherService;
+    private final Executor upstreamExecutor;
+    private final int maxCities;
+
+    public BatchWeatherService(WeatherService weatherService,
+    @Qualifier("upstreamExecutor") Executor upstreamExecutor,
+    @Value("${weather.batch.max-cities:50}") int maxCities){
+        this.weatherService = weatherService;
+        this.upstreamExecutor = upstreamExecutor;
+        this.maxCities = maxCities;
+    }
+
+    // Returns one entry per requested city, in request order. A failing city never fails the whole batch.
+    public List<BatchWeatherEntryDto> getWeather(List<String> cities){
+        if (cities == null || cities.isEmpty()) {
+            throw new IllegalArgumentException("At least one city is required");
+        }
+        if (cities.size() > maxCities) {
+            throw new IllegalArgumentException("Too many cities in one batch, the limit is " + maxCities);
+        }
+
+        // The same city asked twice (in any spelling the city list maps to it) is only looked up once.
+        Map<String, CompletableFuture<CachedWeather>> lookups = new HashMap<>();
+        List<CompletableFuture<BatchWeatherEntryDto>> entries = new ArrayList<>(cities.size());
+        for (String city : cities) {
+            if (city == null || city.trim().isEmpty()) {
+                entries.add(CompletableFuture.completedFuture(
+                    BatchWeatherEntryDto.failure(city, HttpStatus.BAD_REQUEST.value(), "City is empty or null, this is illegal")));
+                continue;
+            }
+            String key;
+            try {
+                key = weatherService.cacheKey(city);
+            } catch (RuntimeException e) {
+                entries.add(CompletableFuture.completedFuture(toEntry(city, null, e)));
+                continue;
+            }
+            CompletableFuture<CachedWeather> lookup = lookups.computeIfAbsent(key, this::lookup);
+            entries.add(lookup.handle((cachedWeather, throwable) -> toEntry(city, cachedWeather, throwable)));
+        }
+        return entries.stream().map(CompletableFuture::join).toList();
+    }
+
+    // The city is resolved once, into its key, and looked up by that key from here on.
+    private CompletableFuture<CachedWeather> lookup(String key){
+        CachedWeather cachedWeather;
+        try {
+            cachedWeather = weatherService.getCachedWeatherIfPresentForKey(key);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (cachedWeather != null) {
+            return CompletableFuture.completedFuture(cachedWeather);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> weatherService.getCachedWeatherForKey(key, UpstreamPriority.BATCH), upstreamExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new WeatherServiceUnavailableException("Service unavailable, try again later"));
+        }
+    }
+
+    private static BatchWeatherEntryDto toEntry(String city, CachedWeather cachedWeather, Throwable throwable){
+        if (throwable == null) {
+            return BatchWeatherEntryDto.success(city, cachedWeather == null ? null : cachedWeather.getWeather());
+        }
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        if (cause instanceof CityNotFoundException) {
+            return BatchWeatherEntryDto.failure(city, HttpStatus.NOT_FOUND.value(), cause.getMessage());
+        }
+        if (cause instanceof InvalidApiKeyException) {
+            return BatchWeatherEntryDto.failure(city, HttpStatus.UNAUTHORIZED.value(), cause.getMessage());
+        }
+        if (cause instanceof WeatherServiceUnavailableException) {
+            return BatchWeatherEntryDto.failure(city, HttpStatus.SERVICE_UNAVAILABLE.value(), cause.getMessage());
+        }
+        return BatchWeatherEntryDto.failure(city, HttpStatus.INTERNAL_SERVER_ERROR.value(), "An unexpected internal server error occurred");
+    }
+}
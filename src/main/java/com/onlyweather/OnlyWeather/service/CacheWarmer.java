@@ -0,0 +1,200 @@
+package com.onlyweather.OnlyWeather.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.onlyweather.OnlyWeather.cache.CachedWeather;
+import com.onlyweather.OnlyWeather.cache.WeatherCache;
+import com.onlyweather.OnlyWeather.upstream.UpstreamPriority;
+
+// Keeps popular cities in the cache so their requests never wait on OpenWeatherMap.
+//
+// Hot cities are the configured list plus, optionally, the most requested cities seen by the cache;
+// names known not to exist (negative cache, or rejected by the city list) are left out.
+// Every check refreshes the ones that are missing or close to expiry (the last `refreshAhead` share of
+// the TTL, shortened by a random `jitter` so entries fetched together don't all expire together).
+// Refreshes draw from a budget of max-calls-per-minute, so warming can't eat the OpenWeatherMap quota.
+//
+// The startup warm-up runs as an ApplicationRunner, which Spring Boot finishes before it reports the
+// application ready, so the readiness probe only turns green once the configured cities are cached.
+// It is a normal lookup, so entries still fresh on disk or in the shared tier are used as they are.
+@Component
+@ConditionalOnProperty(name = "weather.warmup.enabled", havingValue = "true")
+public class CacheWarmer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private final WeatherService weatherService;
+    private final WeatherCache weatherCache;
+    private final List<String> configuredCities;
+    private final int autoTop;
+    private final double refreshAhead;
+    private final double jitter;
+    private final Duration startupTimeout;
+    private final Executor executor;
+    private final Clock clock;
+
+    // Token bucket for upstream calls: holds up to one minute's worth of calls.
+    private final double maxCallsPerMinute;
+    private double tokens;
+    private Instant lastRefill;
+
+    @Autowired
+    public CacheWarmer(WeatherService weatherService, WeatherCache weatherCache,
+    @Value("${weather.warmup.cities:}") List<String> configuredCities,
+    @Value("${weather.warmup.auto-top:0}") int autoTop,
+    @Value("${weather.warmup.refresh-ahead:0.2}") double refreshAhead,
+    @Value("${weather.warmup.jitter:0.5}") double jitter,
+    @Value("${weather.warmup.max-calls-per-minute:30}") int maxCallsPerMinute,
+    @Value("${weather.warmup.startup-timeout:30s}") Duration startupTimeout,
+    @Qualifier("upstreamExecutor") Executor executor){
+        this(weatherService, weatherCache, configuredCities, autoTop, refreshAhead, jitter, maxCallsPerMinute,
+            startupTimeout, executor, Clock.systemUTC());
+    }
+
+    public CacheWarmer(WeatherService weatherService, WeatherCache weatherCache, List<String> configuredCities, int autoTop,
+    double refreshAhead, double jitter, int maxCallsPerMinute, Duration startupTimeout, Executor executor, Clock clock){
+        if (refreshAhead <= 0 || refreshAhead >= 1 || jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("Warm-up refresh-ahead must be in (0, 1) and jitter in [0, 1)");
+        }
+        if (maxCallsPerMinute < 1) {
+            throw new IllegalArgumentException("Warm-up max-calls-per-minute must be at least 1");
+        }
+        this.weatherService = weatherService;
+        this.weatherCache = weatherCache;
+        this.configuredCities = configuredCities.stream()
+            .filter(city -> !city.isBlank())
+            .map(WeatherCache::normalize)
+            .distinct()
+            .toList();
+        this.autoTop = autoTop;
+        this.refreshAhead = refreshAhead;
+        this.jitter = jitter;
+        this.startupTimeout = startupTimeout;
+        this.executor = executor;
+        this.clock = clock;
+        this.maxCallsPerMinute = maxCallsPerMinute;
+        this.tokens = maxCallsPerMinute;
+        this.lastRefill = clock.instant();
+    }
+
+    @Override
+    public void run(ApplicationArguments args){
+        warmUp();
+    }
+
+    // Loads the configured cities in parallel, as far as the budget allows, and waits for them up to startupTimeout.
+    public void warmUp(){
+        List<CompletableFuture<Void>> loads = new ArrayList<>();
+        for (String city : configuredCities) {
+            if (!tryTakeToken()) {
+                log.info("Warm-up budget used up, {} more cities are left for the scheduler", configuredCities.size() - loads.size());
+                break;
+            }
+            loads.add(CompletableFuture.runAsync(() -> load(city), executor));
+        }
+        try {
+            CompletableFuture.allOf(loads.toArray(CompletableFuture[]::new)).get(startupTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            log.info("Warmed up {} cities", loads.size());
+        } catch (TimeoutException e) {
+            log.warn("Warm-up did not finish within {}, starting anyway", startupTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Warm-up failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${weather.warmup.interval:PT30S}", fixedDelayString = "${weather.warmup.interval:PT30S}")
+    public void refreshHotCities(){
+        Set<String> hotCities = new LinkedHashSet<>(configuredCities);
+        if (autoTop > 0) {
+            hotCities.addAll(weatherCache.mostRequested(autoTop));
+            weatherCache.decayRequestCounts();
+        }
+
+        // Missing entries first, then the oldest ones, so the budget goes where a miss is closest.
+        Instant now = clock.instant();
+        List<String> due = hotCities.stream()
+            .filter(city -> isDue(weatherCache.peek(city), now) && !isKnownMissing(city))
+            .sorted(Comparator.comparing(city -> {
+                CachedWeather cached = weatherCache.peek(city);
+                return cached == null ? Instant.MIN : cached.getFetchedAt();
+            }))
+            .toList();
+        for (String city : due) {
+            if (!tryTakeToken()) {
+                log.debug("Warm-up budget used up, {} cities wait for the next round", due.size() - due.indexOf(city));
+                return;
+            }
+            refresh(city);
+        }
+    }
+
+    private boolean isDue(CachedWeather cached, Instant now){
+        if (cached == null) {
+            return true;
+        }
+        double window = refreshAhead * (1 - jitter * ThreadLocalRandom.current().nextDouble());
+        Duration refreshAfter = Duration.ofMillis((long) (weatherCache.getTtl().toMillis() * (1 - window)));
+        return cached.ageAt(now).compareTo(refreshAfter) >= 0;
+    }
+
+    private boolean isKnownMissing(String city){
+        try {
+            return weatherService.isKnownMissing(city);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void load(String city){
+        try {
+            weatherService.getCachedWeather(city, UpstreamPriority.BACKGROUND);
+        } catch (RuntimeException e) {
+            log.warn("Warm-up of '{}' failed: {}", city, e.getMessage());
+        }
+    }
+
+    private void refresh(String city){
+        try {
+            weatherService.refresh(city);
+        } catch (RuntimeException e) {
+            log.warn("Warm-up of '{}' failed: {}", city, e.getMessage());
+        }
+    }
+
+    private synchronized boolean tryTakeToken(){
+        Instant now = clock.instant();
+        double minutes = Duration.between(lastRefill, now).toMillis() / 60_000.0;
+        tokens = Math.min(maxCallsPerMinute, tokens + minutes * maxCallsPerMinute);
+        lastRefill = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
@@ -0,0 +1,217 @@
+package com.onlyweather.OnlyWeather.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.onlyweather.OnlyWeather.cache.CachedWeather;
+import com.onlyweather.OnlyWeather.cache.NegativeCache;
+import com.onlyweather.OnlyWeather.cache.WeatherCache;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.exception.CityNotFoundException;
+import com.onlyweather.OnlyWeather.exception.InvalidApiKeyException;
+import com.onlyweather.OnlyWeather.exception.UpstreamBudgetExceededException;
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+import com.onlyweather.OnlyWeather.history.ObservationStore;
+import com.onlyweather.OnlyWeather.metrics.WeatherMetrics;
+import com.onlyweather.OnlyWeather.upstream.UpstreamBudget;
+import com.onlyweather.OnlyWeather.upstream.UpstreamLimiter;
+import com.onlyweather.OnlyWeather.upstream.UpstreamPriority;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.netty.handler.timeout.ReadTimeoutException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+// Non-blocking counterpart of WeatherService, but the upstream call runs on the Reactor Netty event loop instead of
+// holding a thread while it waits. It follows the same policy: names are resolved through the city list into the
+// same cache key, known-missing names are answered from the negative cache, stale entries are served while they
+// refresh in the background, and a failing upstream is answered with a stale entry if there is one. Calls go
+// through the same circuit breaker, upstream budget and concurrency limiter, except that nothing waits: an empty
+// budget or a full limiter fails right away instead of parking an event-loop thread.
+//
+// With a disk or shared cache tier, a miss also goes through the tiers (and the shared tier's cluster lock) like
+// in WeatherService. Tier I/O blocks, so such a miss runs on the upstream executor and holds one of its threads
+// for the whole load; without tiers, misses never leave the event loop.
+@Service
+public class ReactiveWeatherService {
+
+    private final WebClient webClient;
+    private final String apiKey;
+    private final String apiUrl;
+    private final WeatherService weatherService;
+    private final WeatherCache weatherCache;
+    private final WeatherMetrics weatherMetrics;
+    private final CircuitBreaker circuitBreaker;
+    private final UpstreamLimiter upstreamLimiter;
+    private final NegativeCache negativeCache;
+    private final UpstreamBudget upstreamBudget;
+    private final ObservationStore observationStore;
+    private final Scheduler tierScheduler;
+    private final ConcurrentMap<String, Mono<CachedWeather>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReactiveWeatherService(@Value("${openweathermap.api.key}") String apiKey,
+    @Value("${openweathermap.api.url}") String apiUrl,
+    WebClient upstreamWebClient,
+    WeatherService weatherService,
+    WeatherCache weatherCache,
+    WeatherMetrics weatherMetrics,
+    CircuitBreaker upstreamCircuitBreaker,
+    UpstreamLimiter upstreamLimiter,
+    NegativeCache negativeCache,
+    UpstreamBudget upstreamBudget,
+    ObservationStore observationStore,
+    @Qualifier("upstreamExecutor") Executor upstreamExecutor){
+        this.apiKey = apiKey;
+        this.apiUrl = apiUrl;
+        this.webClient = upstreamWebClient;
+        this.weatherService = weatherService;
+        this.weatherCache = weatherCache;
+        this.weatherMetrics = weatherMetrics;
+        this.circuitBreaker = upstreamCircuitBreaker;
+        this.upstreamLimiter = upstreamLimiter;
+        this.negativeCache = negativeCache;
+        this.upstreamBudget = upstreamBudget;
+        this.observationStore = observationStore;
+        this.tierScheduler = Schedulers.fromExecutor(upstreamExecutor);
+    }
+
+    public Mono<WeatherResponseDto> getWeather(String city){
+        return getCachedWeather(city).map(CachedWeather::getWeather);
+    }
+
+    public Mono<CachedWeather> getCachedWeather(String city){
+        if(city == null || city.trim().isEmpty()){
+            return Mono.error(new IllegalArgumentException("City is empty or null, this is illegal"));
+        }
+        String requestedCity;
+        try {
+            requestedCity = weatherService.canonicalCity(city);
+        } catch (CityNotFoundException e) {
+            return Mono.error(e);
+        }
+        String key = WeatherCache.normalize(requestedCity);
+        if (negativeCache.isKnownMissing(key)) {
+            return Mono.error(new CityNotFoundException("City not found: " + requestedCity));
+        }
+        // The background refresh runs on the cache's refresh executor, never on an event-loop thread, so it may block.
+        CachedWeather cachedWeather = weatherCache.getIfUsable(key, k -> fetchWeather(requestedCity, UpstreamPriority.BACKGROUND)
+            .doOnNext(weather -> observationStore.record(k, weather))
+            .doOnError(CityNotFoundException.class, e -> negativeCache.put(k))
+            .block());
+        if (cachedWeather != null) {
+            return Mono.just(cachedWeather);
+        }
+        // Concurrent subscribers for the same city share one upstream call.
+        Mono<CachedWeather> existing = inFlight.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        AtomicReference<Mono<CachedWeather>> flight = new AtomicReference<>();
+        flight.set(load(key, requestedCity)
+            .doOnError(CityNotFoundException.class, e -> negativeCache.put(key))
+            // The upstream is failing or out of budget: an expired-but-still-usable entry beats an error.
+            .onErrorResume(WeatherServiceUnavailableException.class, e -> {
+                CachedWeather stale = weatherCache.getStaleOnError(key);
+                return stale == null ? Mono.error(e) : Mono.just(stale);
+            })
+            // Before the result reaches anyone, so a caller that got an error and asks again makes a new call.
+            // Only this flight is removed, never one that started after it ended.
+            .doOnTerminate(() -> inFlight.remove(key, flight.get()))
+            .cache());
+        existing = inFlight.putIfAbsent(key, flight.get());
+        return existing != null ? existing : flight.get();
+    }
+
+    private Mono<CachedWeather> load(String key, String requestedCity){
+        if (!weatherCache.hasTiers()) {
+            return fetchWeather(requestedCity, UpstreamPriority.USER)
+                .doOnNext(weather -> observationStore.record(key, weather))
+                .map(weather -> weatherCache.put(key, weather));
+        }
+        // Blocks on tier I/O, and waits for the upstream inside the shared tier's lock, so off the event loop.
+        return Mono.fromCallable(() -> weatherCache.load(key, k -> fetchWeather(requestedCity, UpstreamPriority.USER)
+                .doOnNext(weather -> observationStore.record(k, weather))
+                .block()))
+            .subscribeOn(tierScheduler);
+    }
+
+    // Like WeatherService.callUpstream, an open circuit fails first and only the call itself is recorded by the
+    // breaker. Nothing here waits, so the budget token is simply taken last: a call turned away by the limiter or
+    // the breaker never costs one.
+    private Mono<WeatherResponseDto> fetchWeather(String city, UpstreamPriority priority){
+        return Mono.defer(() -> {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                return Mono.error(new WeatherServiceUnavailableException("Service unavailable, try again later"));
+            }
+            circuitBreaker.releasePermission();
+            if (!upstreamLimiter.tryAcquire()) {
+                return Mono.error(new WeatherServiceUnavailableException("Service unavailable, try again later"));
+            }
+            if (!circuitBreaker.tryAcquirePermission()) {
+                upstreamLimiter.release(0, false);
+                return Mono.error(new WeatherServiceUnavailableException("Service unavailable, try again later"));
+            }
+            if (!upstreamBudget.tryAcquireNow(priority)) {
+                circuitBreaker.releasePermission();
+                upstreamLimiter.release(0, false);
+                return Mono.error(new UpstreamBudgetExceededException("Upstream call budget used up, try again later"));
+            }
+            long start = System.nanoTime();
+            // Like UpstreamLimiter.call, only an unavailable upstream counts as a dropped call.
+            AtomicBoolean dropped = new AtomicBoolean();
+            return request(city)
+                .doOnSuccess(weather -> circuitBreaker.onSuccess(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                .doOnError(e -> {
+                    dropped.set(e instanceof WeatherServiceUnavailableException);
+                    circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+                })
+                .doOnCancel(circuitBreaker::releasePermission)
+                .doFinally(signal -> upstreamLimiter.release(System.nanoTime() - start,
+                    signal == SignalType.ON_ERROR && dropped.get()));
+        });
+    }
+
+    private Mono<WeatherResponseDto> request(String city){
+        String url = UriComponentsBuilder.fromHttpUrl(apiUrl)
+        .queryParam("q", city)
+        .queryParam("appid", apiKey)
+        .queryParam("units", "metric")
+        .toUriString();
+
+        return weatherMetrics.timeUpstreamCall("webclient", webClient.get()
+            .uri(url)
+            .retrieve()
+            .onStatus(status -> status.value() == HttpStatus.NOT_FOUND.value(),
+                response -> Mono.error(new CityNotFoundException("City not found: " + city)))
+            .onStatus(status -> status.value() == HttpStatus.UNAUTHORIZED.value(),
+                response -> Mono.error(new InvalidApiKeyException("Invalid ApiKey, try to change it")))
+            .onStatus(status -> status.value() == HttpStatus.TOO_MANY_REQUESTS.value(),
+                response -> {
+                    upstreamBudget.throttled();
+                    return Mono.error(new WeatherServiceUnavailableException("Service unavailable, try again later"));
+                })
+            .onStatus(status -> status.is5xxServerError(),
+                response -> Mono.error(new WeatherServiceUnavailableException("Service unavailable, try again later")))
+            .bodyToMono(WeatherResponseDto.class)
+            .doOnNext(WeatherService::applyIconFileName)
+            // Connection refused, timeouts and other I/O problems mean the upstream is unreachable.
+            .onErrorMap(e -> e instanceof WebClientRequestException || e instanceof ReadTimeoutException,
+                e -> new WeatherServiceUnavailableException("Service unavailable, try again later")));
+    }
+}
@@ -1,8 +1,31 @@
 package com.onlyweather.OnlyWeather.service;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.onlyweather.OnlyWeather.cache.CachedWeather;
+import com.onlyweather.OnlyWeather.cache.NegativeCache;
+import com.onlyweather.OnlyWeather.cache.WeatherCache;
 import com.onlyweather.OnlyWeather.enums.WeatherIcons;
+import com.onlyweather.OnlyWeather.history.ObservationStore;
+import com.onlyweather.OnlyWeather.metrics.WeatherMetrics;
+import com.onlyweather.OnlyWeather.upstream.CityIndex;
+import com.onlyweather.OnlyWeather.upstream.OpenWeatherMapJsonReader;
+import com.onlyweather.OnlyWeather.upstream.RequestBatcher;
+import com.onlyweather.OnlyWeather.upstream.UpstreamBudget;
+import com.onlyweather.OnlyWeather.upstream.UpstreamLimiter;
+import com.onlyweather.OnlyWeather.upstream.UpstreamPriority;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.util.UriComponentsBuilder;
 import org.springframework.http.ResponseEntity;
@@ -10,63 +33,348 @@ import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
 
 import com.onlyweather.OnlyWeather.exception.CityNotFoundException;
 import com.onlyweather.OnlyWeather.exception.InvalidApiKeyException;
+import com.onlyweather.OnlyWeather.exception.UpstreamBudgetExceededException;
 import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
-import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+
 @Service
 public class WeatherService {
 
     private final RestTemplate restTemplate;
     private final String apiKey;
     private final String apiUrl;
+    private final WeatherCache weatherCache;
+    private final NegativeCache negativeCache;
+    private final UpstreamLimiter upstreamLimiter;
+    private final UpstreamBudget upstreamBudget;
+    private final ObservationStore observationStore;
+    private final WeatherMetrics weatherMetrics;
+    private final CircuitBreaker circuitBreaker;
+    private final CityIndex cityIndex;
+    private final boolean rejectUnknownCities;
+    // What the city list made of each normalized name: its spelling in the list, or empty for names it doesn't know.
+    // A name that isn't listed as typed costs an edit-distance scan, so junk and typos are only scanned once.
+    private final Cache<String, Optional<String>> canonicalNames = Caffeine.newBuilder().maximumSize(10_000).build();
+    private final String groupUrl;
+    private final OpenWeatherMapJsonReader jsonReader = new OpenWeatherMapJsonReader();
+    // Null when group calls are off or there is no city list to resolve IDs with. One batcher per priority,
+    // so a group call is budgeted in the lane of the lookups it carries.
+    private final Map<UpstreamPriority, RequestBatcher<Integer, WeatherResponseDto>> groupBatchers;
 
+    @Autowired
     public WeatherService(@Value("${openweathermap.api.key}") String apiKey, 
     @Value("${openweathermap.api.url}") String apiUrl, 
-    RestTemplate restTemplate){
+    RestTemplate restTemplate,
+    WeatherCache weatherCache,
+    UpstreamLimiter upstreamLimiter,
+    WeatherMetrics weatherMetrics,
+    CircuitBreaker upstreamCircuitBreaker,
+    CityIndex cityIndex,
+    @Value("${weather.city-list.reject-unknown:true}") boolean rejectUnknownCities,
+    @Value("${openweathermap.api.group-url:}") String groupUrl,
+    @Value("${weather.group.enabled:true}") boolean groupCalls,
+    @Value("${weather.group.window:5ms}") Duration groupWindow,
+    @Value("${weather.group.max-size:20}") int groupMaxSize,
+    NegativeCache negativeCache,
+    UpstreamBudget upstreamBudget,
+    ObservationStore observationStore){
         this.apiKey = apiKey;
         this.apiUrl = apiUrl;
         this.restTemplate = restTemplate;
+        this.weatherCache = weatherCache;
+        this.negativeCache = negativeCache;
+        this.upstreamLimiter = upstreamLimiter;
+        this.upstreamBudget = upstreamBudget;
+        this.observationStore = observationStore;
+        this.weatherMetrics = weatherMetrics;
+        this.circuitBreaker = upstreamCircuitBreaker;
+        this.cityIndex = cityIndex;
+        this.rejectUnknownCities = rejectUnknownCities;
+        // The group endpoint sits next to the current weather one: .../data/2.5/weather -> .../data/2.5/group
+        if (groupUrl.isBlank() && apiUrl.endsWith("/weather")) {
+            groupUrl = apiUrl.substring(0, apiUrl.length() - "weather".length()) + "group";
+        }
+        this.groupUrl = groupUrl;
+        if (groupCalls && cityIndex.size() > 0 && !groupUrl.isBlank()) {
+            this.groupBatchers = new EnumMap<>(UpstreamPriority.class);
+            for (UpstreamPriority priority : UpstreamPriority.values()) {
+                groupBatchers.put(priority, new RequestBatcher<>(groupWindow, groupMaxSize, cityIds -> fetchGroup(cityIds, priority)));
+            }
+        } else {
+            this.groupBatchers = null;
+        }
+        // Loads WeatherIcons, whose lookup table is validated on class load, so a broken table fails startup.
+        WeatherIcons.values();
+    }
+
+    // Without a city list every lookup is a single-city call.
+    public WeatherService(String apiKey, String apiUrl, RestTemplate restTemplate, WeatherCache weatherCache,
+    UpstreamLimiter upstreamLimiter, WeatherMetrics weatherMetrics, CircuitBreaker upstreamCircuitBreaker){
+        this(apiKey, apiUrl, restTemplate, weatherCache, upstreamLimiter, weatherMetrics, upstreamCircuitBreaker,
+            CityIndex.empty(), false, "", false, Duration.ZERO, 1, NegativeCache.disabled(), UpstreamBudget.unlimited(),
+            ObservationStore.disabled());
     }
 
     public WeatherResponseDto getWeather(String city){
+        CachedWeather cachedWeather = getCachedWeather(city);
+        return cachedWeather == null ? null : cachedWeather.getWeather();
+    }
+
+    // Same as getWeather, but also tells the caller when the data was fetched from the upstream.
+    public CachedWeather getCachedWeather(String city){
+        return getCachedWeather(city, UpstreamPriority.USER);
+    }
+
+    // Same, with a miss budgeted in the given lane; refreshes of stale entries always run in the background lane.
+    public CachedWeather getCachedWeather(String city, UpstreamPriority priority){
+        if(city == null || city.trim().isEmpty()){
+            throw new IllegalArgumentException("City is empty or null, this is illegal");
+        }
+        String requestedCity = canonicalCity(city);
+        return getCachedWeather(requestedCity, WeatherCache.normalize(requestedCity), priority);
+    }
+
+    // Same, for a key from cacheKey, so callers that already resolved the city don't resolve it again. The key is
+    // also what is sent upstream; OpenWeatherMap doesn't care about case.
+    public CachedWeather getCachedWeatherForKey(String key, UpstreamPriority priority){
+        if(key == null || key.isEmpty()){
+            throw new IllegalArgumentException("City is empty or null, this is illegal");
+        }
+        return getCachedWeather(key, key, priority);
+    }
+
+    private CachedWeather getCachedWeather(String requestedCity, String key, UpstreamPriority priority){
+        if (negativeCache.isKnownMissing(key)) {
+            throw new CityNotFoundException("City not found: " + requestedCity);
+        }
+        try {
+            return weatherCache.get(key, k -> fetchWeather(requestedCity, priority),
+                k -> fetchWeather(requestedCity, UpstreamPriority.BACKGROUND));
+        } catch (CityNotFoundException e) {
+            negativeCache.put(key);
+            throw e;
+        }
+    }
+
+    // Answers from the cache only; returns null when the city would need an upstream call.
+    public CachedWeather getCachedWeatherIfPresent(String city){
+        if(city == null || city.trim().isEmpty()){
+            throw new IllegalArgumentException("City is empty or null, this is illegal");
+        }
+        return weatherCache.getIfFresh(WeatherCache.normalize(canonicalCity(city)));
+    }
+
+    // Same, for a key from cacheKey.
+    public CachedWeather getCachedWeatherIfPresentForKey(String key){
+        if(key == null || key.isEmpty()){
+            throw new IllegalArgumentException("City is empty or null, this is illegal");
+        }
+        return weatherCache.getIfFresh(key);
+    }
+
+    // Fetches the city from the upstream even if the cached entry is still fresh; budgeted as background work.
+    // Names the upstream recently answered with 404 are not fetched again, the same as in getCachedWeather.
+    public CachedWeather refresh(String city){
+        if(city == null || city.trim().isEmpty()){
+            throw new IllegalArgumentException("City is empty or null, this is illegal");
+        }
+        String requestedCity = canonicalCity(city);
+        String key = WeatherCache.normalize(requestedCity);
+        if (negativeCache.isKnownMissing(key)) {
+            throw new CityNotFoundException("City not found: " + requestedCity);
+        }
+        try {
+            return weatherCache.refresh(key, k -> fetchWeather(requestedCity, UpstreamPriority.BACKGROUND));
+        } catch (CityNotFoundException e) {
+            negativeCache.put(key);
+            throw e;
+        }
+    }
+
+    // True for names a lookup would answer with 404 without an upstream call: rejected by the city list,
+    // or answered with 404 by the upstream within the negative cache's ttl.
+    public boolean isKnownMissing(String city){
+        if(city == null || city.trim().isEmpty()){
+            throw new IllegalArgumentException("City is empty or null, this is illegal");
+        }
+        try {
+            return negativeCache.isKnownMissing(cacheKey(city));
+        } catch (CityNotFoundException e) {
+            return true;
+        }
+    }
+
+    // The cache key every spelling of the city maps to; throws CityNotFoundException like getCachedWeather
+    // for names the city list rejects.
+    public String cacheKey(String city){
         if(city == null || city.trim().isEmpty()){
             throw new IllegalArgumentException("City is empty or null, this is illegal");
         }
+        return WeatherCache.normalize(canonicalCity(city));
+    }
+
+    // Known names that start with the prefix, spelled the way lookups accept them.
+    public List<String> suggestCities(String prefix, int limit){
+        return cityIndex.suggest(prefix, limit);
+    }
+
+    // With a city list, every spelling of a city (including small typos) becomes the list's spelling, so they
+    // all share one cache entry, and names the list doesn't know are turned away without an upstream call.
+    // Package-private so ReactiveWeatherService resolves names the same way.
+    String canonicalCity(String city){
+        String requestedCity = city.trim();
+        if (cityIndex.size() == 0) {
+            return requestedCity;
+        }
+        // The same for every spelling with the same normalized form, so that is what the outcome is kept under.
+        Optional<String> canonical = canonicalNames.get(WeatherCache.normalize(requestedCity),
+            name -> Optional.ofNullable(cityIndex.canonicalize(requestedCity)));
+        if (canonical.isPresent()) {
+            return canonical.get();
+        }
+        if (rejectUnknownCities) {
+            throw new CityNotFoundException("City not found: " + requestedCity);
+        }
+        return requestedCity;
+    }
+
+    // Every observation fetched from the upstream also goes into the city's history.
+    private WeatherResponseDto fetchWeather(String city, UpstreamPriority priority){
+        WeatherResponseDto weatherResponseDto = fetchFromUpstream(city, priority);
+        observationStore.record(WeatherCache.normalize(city), weatherResponseDto);
+        return weatherResponseDto;
+    }
+
+    private WeatherResponseDto fetchFromUpstream(String city, UpstreamPriority priority){
+        // Cities with a known ID are fetched together with the other misses of the same few milliseconds.
+        OptionalInt cityId = groupBatchers == null ? OptionalInt.empty() : cityIndex.resolve(city);
+        if (cityId.isPresent()) {
+            WeatherResponseDto weatherResponseDto = groupBatchers.get(priority).load(cityId.getAsInt());
+            if (weatherResponseDto == null) {
+                throw new CityNotFoundException("City not found: " + city);
+            }
+            return weatherResponseDto;
+        }
+
         UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(apiUrl)
         .queryParam("q", city)
         .queryParam("appid", apiKey)
         .queryParam("units", "metric");
 
         String url = builder.toUriString();
-        
+        return callUpstream("rest", priority, () -> requestWeather(url, city));
+    }
+
+    // One group call for all the city IDs of a batch; IDs missing from the response are unknown to OpenWeatherMap.
+    private Map<Integer, WeatherResponseDto> fetchGroup(Collection<Integer> cityIds, UpstreamPriority priority){
+        String url = UriComponentsBuilder.fromHttpUrl(groupUrl)
+        .queryParam("id", cityIds.stream().map(String::valueOf).collect(Collectors.joining(",")))
+        .queryParam("appid", apiKey)
+        .queryParam("units", "metric")
+        .toUriString();
+
+        weatherMetrics.recordGroupSize(cityIds.size());
+        return callUpstream("group", priority, () -> requestGroup(url));
+    }
+
+    private <T> T callUpstream(String client, UpstreamPriority priority, Supplier<T> upstreamCall){
+        // An open circuit fails fast, without spending budget or waiting for a limiter slot. Asking for a permission
+        // is also what moves the breaker to half-open once open-duration is over; it is handed back right away,
+        // the breaker is asked again for the call itself below.
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new WeatherServiceUnavailableException("Service unavailable, try again later");
+        }
+        circuitBreaker.releasePermission();
+        // The budget token and the limiter slot are taken outside the breaker: waiting for them (a user call may
+        // wait up to max-wait for a token), or giving up, is neither a slow nor a failed upstream call, so a busy
+        // instance can't open the circuit on a healthy upstream. Only the call itself is timed.
+        if (!upstreamBudget.tryAcquire(priority)) {
+            throw new UpstreamBudgetExceededException("Upstream call budget used up, try again later");
+        }
+        // The token only pays for a call that goes out: no limiter slot in time, or a breaker that opened (or ran out
+        // of half-open permits) since the check above, hands it back.
+        AtomicBoolean slotTaken = new AtomicBoolean();
+        try {
+            return upstreamLimiter.call(() -> {
+                slotTaken.set(true);
+                try {
+                    return circuitBreaker.executeSupplier(() -> weatherMetrics.timeUpstreamCall(client, upstreamCall));
+                } catch (CallNotPermittedException e) {
+                    upstreamBudget.release();
+                    // Same exception as a failing upstream, so the cache can still answer with a stale entry.
+                    throw new WeatherServiceUnavailableException("Service unavailable, try again later");
+                }
+            });
+        } catch (WeatherServiceUnavailableException e) {
+            if (!slotTaken.get()) {
+                upstreamBudget.release();
+            }
+            throw e;
+        }
+    }
+
+    private WeatherResponseDto requestWeather(String url, String city){
         try{
             ResponseEntity<WeatherResponseDto> response = restTemplate.getForEntity(url, WeatherResponseDto.class);
             WeatherResponseDto weatherResponseDto = response.getBody();
+            applyIconFileName(weatherResponseDto);
+            return weatherResponseDto;
+        } catch (HttpStatusCodeException e){
+            throw upstreamError(e, "City not found: " + city);
+        } catch (ResourceAccessException e){
+            // Connection refused, timeouts and other I/O problems mean the upstream is unreachable.
+            throw new WeatherServiceUnavailableException("Service unavailable, try again later");
+        }
+    }
 
-            if (weatherResponseDto != null &&
-                weatherResponseDto.getWeather() != null &&
-                !weatherResponseDto.getWeather().isEmpty()){
+    private Map<Integer, WeatherResponseDto> requestGroup(String url){
+        try{
+            Map<Integer, WeatherResponseDto> entries = restTemplate.execute(url, HttpMethod.GET, null,
+                response -> jsonReader.readGroup(response.getBody()));
+            entries.values().forEach(WeatherService::applyIconFileName);
+            return entries;
+        } catch (HttpStatusCodeException e){
+            throw upstreamError(e, "City not found");
+        } catch (ResourceAccessException e){
+            throw new WeatherServiceUnavailableException("Service unavailable, try again later");
+        }
+    }
 
-                    String apiIconCode = weatherResponseDto.getWeather().get(0).getIcon();
-                    WeatherIcons weatherIcon = WeatherIcons.findByApiIconCode(apiIconCode);
-                    if (weatherIcon != null) {
-                        weatherResponseDto.setIconFileName(weatherIcon.getIconFileName());
-                    }
-            }
-            return weatherResponseDto;
-        } catch (HttpClientErrorException e){
-            if(e.getStatusCode() == HttpStatus.NOT_FOUND){
-                throw new CityNotFoundException("City not found: " + city);
-            }
-            if (e.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE ||
-                e.getStatusCode() == HttpStatus.INTERNAL_SERVER_ERROR) {
-                throw new WeatherServiceUnavailableException("Service unavailable, try again later");
-            }
-            if (e.getStatusCode() == HttpStatus.UNAUTHORIZED) {
-                throw new InvalidApiKeyException("Invalid ApiKey, try to change it");
-            }
-            throw e;
+    private RuntimeException upstreamError(HttpStatusCodeException e, String notFoundMessage){
+        if(e.getStatusCode() == HttpStatus.NOT_FOUND){
+            return new CityNotFoundException(notFoundMessage);
+        }
+        if (e.getStatusCode().is5xxServerError()) {
+            return new WeatherServiceUnavailableException("Service unavailable, try again later");
+        }
+        if (e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+            // Throttled despite the budget (e.g. other clients share the key): stop calling for the rest of the minute.
+            upstreamBudget.throttled();
+            return new WeatherServiceUnavailableException("Service unavailable, try again later");
+        }
+        if (e.getStatusCode() == HttpStatus.UNAUTHORIZED) {
+            return new InvalidApiKeyException("Invalid ApiKey, try to change it");
+        }
+        return e;
+    }
+
+    // Shared with ReactiveWeatherService so both stacks resolve icons the same way.
+    static void applyIconFileName(WeatherResponseDto weatherResponseDto){
+        if (weatherResponseDto != null &&
+            weatherResponseDto.getWeather() != null &&
+            !weatherResponseDto.getWeather().isEmpty()){
+
+                String apiIconCode = weatherResponseDto.getWeather().get(0).getIcon();
+                weatherResponseDto.setIconFileName(WeatherIcons.findByApiIconCode(apiIconCode).getIconFileName());
         }
     }
-}
\ No newline at end of file
+}
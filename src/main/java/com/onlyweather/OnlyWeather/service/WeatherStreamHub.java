@@ -0,0 +1,331 @@
+package com.onlyweather.OnlyWeather.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.onlyweather.OnlyWeather.cache.CachedWeather;
+import com.onlyweather.OnlyWeather.cache.EncodedWeather;
+import com.onlyweather.OnlyWeather.cache.WeatherResponseEncoder;
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+import com.onlyweather.OnlyWeather.upstream.UpstreamPriority;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+
+// Server-Sent Events fan-out behind GET /stream/{city}.
+//
+// All subscribers of a city share one channel, and every poll-interval each channel asks WeatherService for
+// the city once, however many clients are listening, so the cache and upstream see one request per city
+// rather than one per client. A response is encoded once per change and the same bytes go to every subscriber;
+// unchanged responses aren't sent at all.
+//
+// Open streams are servlet async requests, so an idle client holds a connection but no thread. Each client has
+// a queue of at most buffer-size events, written out by a small pool of sender threads, one drain at a time per
+// client. A client that doesn't keep up (its queue is full when the next event arrives) is disconnected rather
+// than held in memory; EventSource clients reconnect by themselves. A heartbeat comment keeps proxies from
+// closing quiet streams and finds dead connections, and streams are closed after max-duration so that
+// reconnecting clients spread over the instances again.
+@Component
+public class WeatherStreamHub implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherStreamHub.class);
+    private static final Event HEARTBEAT = new Event(null, SseEmitter.event().comment("").build());
+
+    private final WeatherService weatherService;
+    private final WeatherResponseEncoder weatherResponseEncoder;
+    private final Executor refreshExecutor;
+    private final Executor senderExecutor;
+    private final int bufferSize;
+    private final long maxDurationMillis;
+    private final int maxSubscribers;
+
+    private final ConcurrentMap<String, Channel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final LongAdder eventsSent = new LongAdder();
+    private final LongAdder slowEvictions = new LongAdder();
+
+    @Autowired
+    public WeatherStreamHub(WeatherService weatherService, WeatherResponseEncoder weatherResponseEncoder,
+    @Qualifier("upstreamExecutor") Executor refreshExecutor,
+    @Value("${weather.stream.sender-threads:8}") int senderThreads,
+    @Value("${weather.stream.buffer-size:8}") int bufferSize,
+    @Value("${weather.stream.max-duration:30m}") Duration maxDuration,
+    @Value("${weather.stream.max-subscribers:20000}") int maxSubscribers){
+        this(weatherService, weatherResponseEncoder, refreshExecutor, senderExecutor(senderThreads), bufferSize,
+            maxDuration, maxSubscribers);
+    }
+
+    public WeatherStreamHub(WeatherService weatherService, WeatherResponseEncoder weatherResponseEncoder, Executor refreshExecutor,
+    Executor senderExecutor, int bufferSize, Duration maxDuration, int maxSubscribers){
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Stream buffer-size must be at least 1");
+        }
+        this.weatherService = weatherService;
+        this.weatherResponseEncoder = weatherResponseEncoder;
+        this.refreshExecutor = refreshExecutor;
+        this.senderExecutor = senderExecutor;
+        this.bufferSize = bufferSize;
+        this.maxDurationMillis = maxDuration.toMillis();
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    // Sender threads are platform threads: SseEmitter writes while holding its monitor, which would pin a
+    // virtual thread's carrier for as long as a slow client blocks the write.
+    private static ExecutorService senderExecutor(int threads){
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("stream-sender-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+    // Opens a stream for the city, starting with its current weather. Unknown cities fail here, before the
+    // stream starts, so the client gets a normal 404. A client reconnecting with the ETag of the last event
+    // it got as Last-Event-ID doesn't get the same weather again.
+    public SseEmitter subscribe(String city, String lastEventId){
+        String key = weatherService.cacheKey(city);
+        CachedWeather current = weatherService.getCachedWeather(key);
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new WeatherServiceUnavailableException("Too many open streams, try again later");
+        }
+
+        SseEmitter emitter = new SseEmitter(maxDurationMillis);
+        Subscriber subscriber = new Subscriber(key, emitter, lastEventId);
+        Channel channel = channels.compute(key, (k, existing) -> {
+            Channel joined = existing == null ? new Channel(k) : existing;
+            joined.subscribers.add(subscriber);
+            return joined;
+        });
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        // A changed weather goes to every subscriber, this one included; otherwise it still needs the last one.
+        boolean sent = current != null && channel.update(current);
+        Event latest = channel.latest;
+        if (!sent && latest != null) {
+            subscriber.offer(latest);
+        }
+        return emitter;
+    }
+
+    // One poll per city with subscribers, whatever the number of subscribers. Mostly cache hits; when the
+    // entry has expired, the poll is what loads it again, in the background lane of the upstream budget.
+    @Scheduled(initialDelayString = "${weather.stream.poll-interval:PT15S}", fixedDelayString = "${weather.stream.poll-interval:PT15S}")
+    public void refreshAll(){
+        for (Channel channel : channels.values()) {
+            if (!channel.refreshing.compareAndSet(false, true)) {
+                continue;
+            }
+            try {
+                refreshExecutor.execute(() -> {
+                    try {
+                        CachedWeather cachedWeather = weatherService.getCachedWeather(channel.key, UpstreamPriority.BACKGROUND);
+                        if (cachedWeather != null) {
+                            channel.update(cachedWeather);
+                        }
+                    } catch (RuntimeException e) {
+                        // Subscribers keep the last weather they got; the next poll tries again.
+                        log.debug("Refreshing stream of '{}' failed: {}", channel.key, e.getMessage());
+                    } finally {
+                        channel.refreshing.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                channel.refreshing.set(false);
+            }
+        }
+    }
+
+    @Scheduled(initialDelayString = "${weather.stream.heartbeat:PT15S}", fixedRateString = "${weather.stream.heartbeat:PT15S}")
+    public void sendHeartbeats(){
+        for (Channel channel : channels.values()) {
+            for (Subscriber subscriber : channel.subscribers) {
+                subscriber.offer(HEARTBEAT);
+            }
+        }
+    }
+
+    public int subscriberCount(){
+        return subscriberCount.get();
+    }
+
+    public int cityCount(){
+        return channels.size();
+    }
+
+    @PreDestroy
+    public void close(){
+        channels.values().forEach(channel -> channel.subscribers.forEach(Subscriber::close));
+        if (senderExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber){
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        subscriberCount.decrementAndGet();
+        // The last subscriber to leave takes the channel, and with it the city's polling, away.
+        channels.computeIfPresent(subscriber.key, (key, channel) -> {
+            channel.subscribers.remove(subscriber);
+            return channel.subscribers.isEmpty() ? null : channel;
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry){
+        Gauge.builder("weather.stream.subscribers", this, WeatherStreamHub::subscriberCount)
+            .description("Open weather streams")
+            .register(meterRegistry);
+        Gauge.builder("weather.stream.cities", this, WeatherStreamHub::cityCount)
+            .description("Cities with at least one open stream, each polled once per poll-interval")
+            .register(meterRegistry);
+        FunctionCounter.builder("weather.stream.events", eventsSent, LongAdder::sum)
+            .description("Weather events written to streams")
+            .register(meterRegistry);
+        FunctionCounter.builder("weather.stream.evictions", slowEvictions, LongAdder::sum)
+            .description("Streams closed because the client didn't keep up")
+            .register(meterRegistry);
+    }
+
+    // A weather event, or the heartbeat with a null etag.
+    private record Event(String etag, Set<DataWithMediaType> data) {
+    }
+
+    private final class Channel {
+        private final String key;
+        private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile Event latest;
+        private byte[] latestJson;
+
+        private Channel(String key){
+            this.key = key;
+        }
+
+        // Sends the weather to every subscriber if it differs from what they got last; false if it didn't.
+        private boolean update(CachedWeather cachedWeather){
+            EncodedWeather encodedWeather = weatherResponseEncoder.encode(cachedWeather);
+            Event event;
+            synchronized (this) {
+                if (Arrays.equals(encodedWeather.getJson(), latestJson)) {
+                    return false;
+                }
+                latestJson = encodedWeather.getJson();
+                event = new Event(encodedWeather.getEtag(), SseEmitter.event()
+                    .name("weather")
+                    .id(encodedWeather.getEtag())
+                    .data(encodedWeather.getJson(), MediaType.APPLICATION_JSON)
+                    .build());
+                latest = event;
+            }
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(event);
+            }
+            return true;
+        }
+    }
+
+    private final class Subscriber {
+        private final String key;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // The ETag of the weather the client already has, from Last-Event-ID.
+        private final String lastEventId;
+
+        private Subscriber(String key, SseEmitter emitter, String lastEventId){
+            this.key = key;
+            this.emitter = emitter;
+            this.lastEventId = lastEventId;
+        }
+
+        // Never blocks: called for every subscriber of a city in turn.
+        private void offer(Event event){
+            if (closed.get() || (event.etag() != null && event.etag().equals(lastEventId))) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                slowEvictions.increment();
+                close();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain(){
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                senderExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                close();
+            }
+        }
+
+        private void drain(){
+            try {
+                Event event;
+                while (!closed.get() && (event = queue.poll()) != null) {
+                    emitter.send(event.data());
+                    if (event != HEARTBEAT) {
+                        eventsSent.increment();
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client went away; Spring completes the emitter, which unsubscribes it.
+                unsubscribe(this);
+            } finally {
+                draining.set(false);
+            }
+            if (!closed.get() && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        // Unsubscribes right away, but completes the emitter on a sender thread: complete() waits for the
+        // emitter's monitor, which a send to this slow client may be holding.
+        private void close(){
+            unsubscribe(this);
+            queue.clear();
+            try {
+                senderExecutor.execute(emitter::complete);
+            } catch (RejectedExecutionException e) {
+                log.debug("Couldn't complete a closed stream of '{}'", key);
+            }
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.onlyweather.OnlyWeather.upstream;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.OptionalInt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+// Resolves city names to OpenWeatherMap city IDs, so lookups can use the group endpoint, and spells
+// them the one way the city list does, so "Londn" and "london" end up as the same cache entry.
+// Built from a CSV city list with one `id,name,country` line per city (see README for how to
+// generate it from OpenWeatherMap's city.list.json.gz).
+//
+// Every city is indexed as "name" and as "name,country". A bare name shared by several cities
+// (London GB and London CA) doesn't resolve to an ID, so it keeps going through the q= query and
+// OpenWeatherMap picks the city like it always did.
+//
+// The index is one buffer: a header, then key offsets and city IDs as int arrays, then all keys as
+// UTF-8 sorted for binary search. The same bytes are written to `weather.city-list.index`, and once that
+// file exists it is memory-mapped on startup instead of parsing the CSV again: the keys stay in the page
+// cache, off the heap, and the app starts without reading a single line of the list. The header keeps the
+// size and modification time of the CSV the index was built from; when the CSV no longer matches them, the
+// index file is rebuilt instead of mapped.
+@Component
+public class CityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CityIndex.class);
+    private static final int MAGIC = 0x4F574349; // "OWCI"
+    private static final int VERSION = 2;
+    private static final int HEADER = 32;
+    private static final int AMBIGUOUS = -1;
+    private static final long UNKNOWN = -1;
+
+    private final ByteBuffer data;
+    private final int size;
+    private final int idsStart;
+    private final int keysStart;
+
+    @Autowired
+    public CityIndex(@Value("${weather.city-list.location:}") String location,
+    @Value("${weather.city-list.index:}") String indexFile,
+    ResourceLoader resourceLoader){
+        this(load(location, indexFile, resourceLoader));
+        if (size > 0) {
+            log.info("City index ready with {} names", size);
+        }
+    }
+
+    private CityIndex(ByteBuffer data){
+        if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IllegalStateException("Not a city index, or one written by another version; delete it to rebuild it");
+        }
+        this.data = data;
+        this.size = data.getInt(8);
+        this.idsStart = HEADER + (size + 1) * Integer.BYTES;
+        this.keysStart = idsStart + size * Integer.BYTES;
+    }
+
+    public static CityIndex empty(){
+        return new CityIndex(build(new ArrayList<>(), UNKNOWN, UNKNOWN));
+    }
+
+    public static CityIndex read(InputStream csv) throws IOException{
+        return new CityIndex(build(readEntries(csv), UNKNOWN, UNKNOWN));
+    }
+
+    // Maps an index file written by writeTo; nothing is copied onto the heap.
+    public static CityIndex map(Path indexFile) throws IOException{
+        return new CityIndex(mapFile(indexFile));
+    }
+
+    private static ByteBuffer mapFile(Path indexFile) throws IOException{
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    // Writes the index next to the target first, so a crash never leaves a half-written index to be mapped.
+    public void writeTo(Path indexFile) throws IOException{
+        Path temporary = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = data.duplicate().position(0);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // The city ID for a name as typed by a user ("London", "london, gb"), if it is known and unambiguous.
+    public OptionalInt resolve(String city){
+        if (size == 0 || city == null) {
+            return OptionalInt.empty();
+        }
+        int index = find(key(city));
+        return index < 0 || id(index) == AMBIGUOUS ? OptionalInt.empty() : OptionalInt.of(id(index));
+    }
+
+    // The name as the index spells it: the same name for an exact match, or the closest known name for a
+    // misspelled one. Null for names that are too far from any known one, or equally close to several.
+    public String canonicalize(String city){
+        if (size == 0 || city == null) {
+            return null;
+        }
+        byte[] key = key(city);
+        if (find(key) >= 0) {
+            return new String(key, StandardCharsets.UTF_8);
+        }
+        int maxEdits = maxEdits(key.length);
+        if (maxEdits == 0) {
+            return null;
+        }
+        // Misspellings are looked for among names with the same first letter: that keeps the scan to a slice
+        // of the index, and a wrong first letter is the least common typo.
+        int from = lowerBound(key, 0, 1);
+        int to = key[0] == (byte) 0xFF ? size : lowerBound(new byte[] {(byte) (key[0] + 1)}, 0, 1);
+        boolean withCountry = indexOf(key, key.length, (byte) ',') >= 0;
+
+        // Edit distance rows, one per byte of the candidate, so that sorted neighbours sharing a prefix reuse
+        // the rows of that prefix. Once two rows in a row are over the limit, no name with that prefix can
+        // match, and the whole run of them is skipped with one binary search.
+        int maxLength = key.length + maxEdits;
+        int[][] rows = new int[maxLength + 1][key.length + 1];
+        int[] rowMinimum = new int[maxLength + 1];
+        for (int j = 0; j <= key.length; j++) {
+            rows[0][j] = j;
+        }
+        byte[] candidate = new byte[maxLength];
+        byte[] computed = new byte[maxLength];
+        int computedLength = 0;
+
+        int best = -1;
+        int bestDistance = maxEdits + 1;
+        boolean tie = false;
+        for (int i = from; i < to; i++) {
+            int length = keyLength(i);
+            if (Math.abs(length - key.length) > maxEdits) {
+                continue;
+            }
+            data.get(keysStart + offset(i), candidate, 0, length);
+            if ((indexOf(candidate, length, (byte) ',') >= 0) != withCountry) {
+                continue;
+            }
+            int shared = 0;
+            while (shared < length && shared < computedLength && candidate[shared] == computed[shared]) {
+                shared++;
+            }
+            int depth = shared + 1;
+            for (; depth <= length; depth++) {
+                fillRow(rows, rowMinimum, depth, candidate, key);
+                if (rowMinimum[depth] > maxEdits && rowMinimum[depth - 1] > maxEdits) {
+                    break;
+                }
+            }
+            System.arraycopy(candidate, 0, computed, 0, Math.min(depth, length));
+            computedLength = Math.min(depth, length);
+            if (depth <= length) {
+                i = skipPrefix(candidate, depth, to) - 1;
+                continue;
+            }
+            int distance = rows[length][key.length];
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+                tie = false;
+            } else if (distance == bestDistance && best >= 0) {
+                tie = true;
+            }
+        }
+        return best < 0 || tie ? null : keyString(best);
+    }
+
+    // Optimal string alignment distance (Levenshtein plus swapped neighbours): row `depth` from the rows above it.
+    private static void fillRow(int[][] rows, int[] rowMinimum, int depth, byte[] candidate, byte[] key){
+        int[] row = rows[depth];
+        int[] previousRow = rows[depth - 1];
+        byte current = candidate[depth - 1];
+        row[0] = depth;
+        int minimum = depth;
+        for (int j = 1; j <= key.length; j++) {
+            int cost = current == key[j - 1] ? 0 : 1;
+            int distance = Math.min(Math.min(row[j - 1] + 1, previousRow[j] + 1), previousRow[j - 1] + cost);
+            if (depth > 1 && j > 1 && current == key[j - 2] && candidate[depth - 2] == key[j - 1]) {
+                distance = Math.min(distance, rows[depth - 2][j - 2] + 1);
+            }
+            row[j] = distance;
+            minimum = Math.min(minimum, distance);
+        }
+        rowMinimum[depth] = minimum;
+    }
+
+    // Index of the first key sorting after all keys that start with prefix[0..length), at most `to`.
+    private int skipPrefix(byte[] prefix, int length, int to){
+        byte[] next = Arrays.copyOf(prefix, length);
+        int last = length - 1;
+        while (last >= 0 && next[last] == (byte) 0xFF) {
+            last--;
+        }
+        if (last < 0) {
+            return to;
+        }
+        next[last]++;
+        return Math.min(to, lowerBound(next, 0, last + 1));
+    }
+
+    // Up to `limit` known names starting with the prefix, in alphabetical order.
+    public List<String> suggest(String prefix, int limit){
+        List<String> suggestions = new ArrayList<>();
+        if (size == 0 || prefix == null || prefix.isBlank()) {
+            return suggestions;
+        }
+        byte[] key = key(prefix);
+        for (int i = lowerBound(key, 0, key.length); i < size && suggestions.size() < limit && startsWith(i, key); i++) {
+            suggestions.add(keyString(i));
+        }
+        return suggestions;
+    }
+
+    // Number of distinct keys, including the "name,country" ones.
+    public int size(){
+        return size;
+    }
+
+    // Same rules as WeatherCache.normalize, plus no spaces around the country separator.
+    private static byte[] key(String city){
+        return city.trim().replaceAll("\\s*,\\s*", ",").replaceAll("\\s+", " ").toLowerCase(Locale.ROOT)
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Like Elasticsearch's AUTO fuzziness: short names must be exact, long ones may have two typos.
+    private static int maxEdits(int length){
+        if (length < 4) {
+            return 0;
+        }
+        return length < 8 ? 1 : 2;
+    }
+
+    private int find(byte[] key){
+        int index = lowerBound(key, 0, key.length);
+        return index < size && compare(index, key, 0, key.length) == 0 ? index : -1;
+    }
+
+    // Index of the first key not smaller than key[from..to).
+    private int lowerBound(byte[] key, int from, int to){
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, key, from, to) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int index, byte[] key, int from, int to){
+        int position = keysStart + offset(index);
+        int length = keyLength(index);
+        int common = Math.min(length, to - from);
+        for (int i = 0; i < common; i++) {
+            int difference = Byte.toUnsignedInt(data.get(position + i)) - Byte.toUnsignedInt(key[from + i]);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - (to - from);
+    }
+
+    private boolean startsWith(int index, byte[] prefix){
+        if (keyLength(index) < prefix.length) {
+            return false;
+        }
+        int position = keysStart + offset(index);
+        for (int i = 0; i < prefix.length; i++) {
+            if (data.get(position + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int offset(int index){
+        return data.getInt(HEADER + index * Integer.BYTES);
+    }
+
+    private int keyLength(int index){
+        return offset(index + 1) - offset(index);
+    }
+
+    private int id(int index){
+        return data.getInt(idsStart + index * Integer.BYTES);
+    }
+
+    private String keyString(int index){
+        byte[] bytes = new byte[keyLength(index)];
+        data.get(keysStart + offset(index), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(byte[] bytes, int length, byte value){
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static ByteBuffer load(String location, String indexFile, ResourceLoader resourceLoader){
+        try {
+            Resource source = location.isBlank() ? null : resourceLoader.getResource(location);
+            long sourceLength = source == null ? UNKNOWN : sourceLength(source);
+            long sourceLastModified = source == null ? UNKNOWN : sourceLastModified(source);
+            if (!indexFile.isBlank() && Files.exists(Path.of(indexFile))) {
+                ByteBuffer mapped = mapFile(Path.of(indexFile));
+                // Without a configured CSV there is nothing to compare with, the index is all there is.
+                if (source == null || isBuiltFrom(mapped, sourceLength, sourceLastModified)) {
+                    log.info("Mapping city index {}", indexFile);
+                    return mapped;
+                }
+                log.info("City index {} wasn't built from the current {}, rebuilding it", indexFile, location);
+            }
+            if (source == null) {
+                return build(new ArrayList<>(), UNKNOWN, UNKNOWN);
+            }
+            log.info("Building city index from {}", location);
+            CityIndex built = new CityIndex(build(readEntries(source), sourceLength, sourceLastModified));
+            if (indexFile.isBlank()) {
+                return built.data;
+            }
+            built.writeTo(Path.of(indexFile));
+            return map(Path.of(indexFile)).data;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't load the city index", e);
+        }
+    }
+
+    // A CSV whose size or modification time can't be told never matches, so its index is rebuilt on every start.
+    private static boolean isBuiltFrom(ByteBuffer index, long sourceLength, long sourceLastModified){
+        return index.capacity() >= HEADER && index.getInt(0) == MAGIC && index.getInt(4) == VERSION
+            && sourceLength != UNKNOWN && sourceLastModified != UNKNOWN
+            && index.getLong(16) == sourceLength && index.getLong(24) == sourceLastModified;
+    }
+
+    private static long sourceLength(Resource source){
+        try {
+            return source.contentLength();
+        } catch (IOException e) {
+            return UNKNOWN;
+        }
+    }
+
+    private static long sourceLastModified(Resource source){
+        try {
+            return source.lastModified();
+        } catch (IOException e) {
+            return UNKNOWN;
+        }
+    }
+
+    private static ByteBuffer build(List<Entry> entries, long sourceLength, long sourceLastModified){
+        entries.sort((left, right) -> Arrays.compareUnsigned(left.key(), right.key()));
+
+        int distinct = 0;
+        int bytes = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            if (i == 0 || !Arrays.equals(entries.get(i - 1).key(), entries.get(i).key())) {
+                distinct++;
+                bytes += entries.get(i).key().length;
+            }
+        }
+
+        int idsStart = HEADER + (distinct + 1) * Integer.BYTES;
+        int keysStart = idsStart + distinct * Integer.BYTES;
+        ByteBuffer data = ByteBuffer.allocate(keysStart + bytes);
+        data.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, distinct).putInt(12, bytes)
+            .putLong(16, sourceLength).putLong(24, sourceLastModified);
+        int position = 0;
+        int index = -1;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (index >= 0 && Arrays.equals(entries.get(i - 1).key(), entry.key())) {
+                // The same key for another city; the same city listed twice is fine.
+                if (data.getInt(idsStart + index * Integer.BYTES) != entry.id()) {
+                    data.putInt(idsStart + index * Integer.BYTES, AMBIGUOUS);
+                }
+                continue;
+            }
+            index++;
+            data.putInt(HEADER + index * Integer.BYTES, position);
+            data.putInt(idsStart + index * Integer.BYTES, entry.id());
+            data.put(keysStart + position, entry.key());
+            position += entry.key().length;
+        }
+        data.putInt(HEADER + distinct * Integer.BYTES, position);
+        return data;
+    }
+
+    private static List<Entry> readEntries(Resource resource){
+        try (InputStream inputStream = resource.getInputStream()) {
+            return readEntries(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read the city list " + resource.getDescription(), e);
+        }
+    }
+
+    private static List<Entry> readEntries(InputStream csv) throws IOException{
+        List<Entry> entries = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#") || line.startsWith("id,")) {
+                continue;
+            }
+            // City names may contain commas, so the ID is before the first one and the country after the last one.
+            int first = line.indexOf(',');
+            int last = line.lastIndexOf(',');
+            if (first < 0 || last == first) {
+                throw new IllegalArgumentException("City list line " + lineNumber + " is not 'id,name,country': " + line);
+            }
+            int id;
+            try {
+                id = Integer.parseInt(line.substring(0, first).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("City list line " + lineNumber + " has no numeric city ID: " + line);
+            }
+            String name = line.substring(first + 1, last);
+            String country = line.substring(last + 1);
+            entries.add(new Entry(key(name), id));
+            if (!country.isBlank()) {
+                entries.add(new Entry(key(name + "," + country), id));
+            }
+        }
+        return entries;
+    }
+
+    private record Entry(byte[] key, int id) {
+    }
+}
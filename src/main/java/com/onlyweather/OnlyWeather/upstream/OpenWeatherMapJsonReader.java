@@ -0,0 +1,150 @@
+package com.onlyweather.OnlyWeather.upstream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.onlyweather.OnlyWeather.dto.MainInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+
+// Reads an OpenWeatherMap current weather response straight off the token stream.
+// Only id, name, dt, main.temp and the first weather entry are kept; coord, wind, clouds, sys and everything
+// else are skipped token by token without building trees, maps or DTOs for them. Field names come from
+// Jackson's symbol table, so the only strings created are the three text values we keep.
+public class OpenWeatherMapJsonReader {
+
+    // Thread-safe and meant to be shared; parsers it creates borrow their buffers from Jackson's recycler.
+    private final JsonFactory jsonFactory = JsonFactory.builder().build();
+
+    public WeatherResponseDto read(InputStream body) throws IOException{
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return read(parser);
+        }
+    }
+
+    public WeatherResponseDto read(byte[] body) throws IOException{
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return read(parser);
+        }
+    }
+
+    // Reads a group call response, {"cnt": n, "list": [...]}, into its entries keyed by city ID.
+    // Entries without an ID can't be matched to a request and are dropped.
+    public Map<Integer, WeatherResponseDto> readGroup(InputStream body) throws IOException{
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return readGroup(parser);
+        }
+    }
+
+    private static Map<Integer, WeatherResponseDto> readGroup(JsonParser parser) throws IOException{
+        expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+        Map<Integer, WeatherResponseDto> entries = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!field.equals("list") || value != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            JsonToken element;
+            while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (element != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                WeatherResponseDto entry = readEntry(parser);
+                if (entry.getCityId() != null) {
+                    entries.put(entry.getCityId(), entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static WeatherResponseDto read(JsonParser parser) throws IOException{
+        expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+        return readEntry(parser);
+    }
+
+    // Reads one current weather object; the parser is positioned on its START_OBJECT.
+    private static WeatherResponseDto readEntry(JsonParser parser) throws IOException{
+        WeatherResponseDto weatherResponseDto = new WeatherResponseDto();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id" -> weatherResponseDto.setCityId(value.isNumeric() ? parser.getIntValue() : null);
+                case "name" -> weatherResponseDto.setName(parser.getValueAsString());
+                case "dt" -> weatherResponseDto.setObservedAt(value.isNumeric() ? parser.getLongValue() : null);
+                case "main" -> weatherResponseDto.setMain(readMain(parser, value));
+                case "weather" -> weatherResponseDto.setWeather(readWeather(parser, value));
+                default -> parser.skipChildren();
+            }
+        }
+        return weatherResponseDto;
+    }
+
+    private static MainInfoDto readMain(JsonParser parser, JsonToken value) throws IOException{
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        MainInfoDto mainInfoDto = new MainInfoDto();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken fieldValue = parser.nextToken();
+            if (field.equals("temp") && fieldValue.isNumeric()) {
+                mainInfoDto.setTemp(parser.getDoubleValue());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return mainInfoDto;
+    }
+
+    // OpenWeatherMap may send several conditions; only the first one (the primary) is shown.
+    private static List<WeatherInfoDto> readWeather(JsonParser parser, JsonToken value) throws IOException{
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        WeatherInfoDto first = null;
+        JsonToken element;
+        while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (first == null && element == JsonToken.START_OBJECT) {
+                first = readWeatherInfo(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return first == null ? Collections.emptyList() : Collections.singletonList(first);
+    }
+
+    private static WeatherInfoDto readWeatherInfo(JsonParser parser) throws IOException{
+        WeatherInfoDto weatherInfoDto = new WeatherInfoDto();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "description" -> weatherInfoDto.setDescription(parser.getValueAsString());
+                case "icon" -> weatherInfoDto.setIcon(parser.getValueAsString());
+                default -> parser.skipChildren();
+            }
+        }
+        return weatherInfoDto;
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected, JsonParser parser) throws IOException{
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but found " + actual);
+        }
+    }
+}
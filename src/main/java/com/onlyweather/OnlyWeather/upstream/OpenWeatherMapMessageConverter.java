@@ -0,0 +1,48 @@
+package com.onlyweather.OnlyWeather.upstream;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import com.fasterxml.jackson.core.JacksonException;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+
+// Lets RestTemplate read OpenWeatherMap responses with OpenWeatherMapJsonReader instead of going through
+// the generic Jackson databind converter. Read-only: our own responses are still written by Spring's converters.
+public class OpenWeatherMapMessageConverter extends AbstractHttpMessageConverter<WeatherResponseDto> {
+
+    private final OpenWeatherMapJsonReader reader = new OpenWeatherMapJsonReader();
+
+    public OpenWeatherMapMessageConverter(){
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz){
+        return WeatherResponseDto.class == clazz;
+    }
+
+    @Override
+    protected boolean canWrite(MediaType mediaType){
+        return false;
+    }
+
+    @Override
+    protected WeatherResponseDto readInternal(Class<? extends WeatherResponseDto> clazz, HttpInputMessage inputMessage) throws IOException{
+        try {
+            return reader.read(inputMessage.getBody());
+        } catch (JacksonException e) {
+            throw new HttpMessageNotReadableException("Malformed OpenWeatherMap response: " + e.getOriginalMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(WeatherResponseDto weatherResponseDto, HttpOutputMessage outputMessage){
+        throw new HttpMessageNotWritableException("OpenWeatherMapMessageConverter only reads responses");
+    }
+}
@@ -0,0 +1,112 @@
+package com.onlyweather.OnlyWeather.upstream;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Collects concurrent lookups for a short window and loads them with a single call.
+//
+// The first caller of a batch waits up to `window` for others to join and then loads the whole batch
+// on its own thread; a caller that fills the batch up to `maxBatchSize` loads it right away. Everyone else
+// just waits for the result. No extra threads are involved, so a busy upstream executor can never leave
+// a batch waiting for a thread that is itself waiting for the batch.
+public class RequestBatcher<K, V> {
+
+    private final Duration window;
+    private final int maxBatchSize;
+    private final Function<Collection<K>, Map<K, V>> batchLoader;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchTaken = lock.newCondition();
+    // Guarded by lock; the batch that is still collecting lookups, null if there is none.
+    private Map<K, CompletableFuture<V>> pending;
+
+    // The loader gets the distinct keys of a batch and returns the values it found; keys it leaves out load as null.
+    public RequestBatcher(Duration window, int maxBatchSize, Function<Collection<K>, Map<K, V>> batchLoader){
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.batchLoader = batchLoader;
+    }
+
+    // Loads the key together with whatever other keys are asked for at about the same time.
+    public V load(K key){
+        Map<K, CompletableFuture<V>> toRun = null;
+        CompletableFuture<V> result;
+        lock.lock();
+        try {
+            boolean leader = pending == null;
+            if (leader) {
+                pending = new LinkedHashMap<>();
+            }
+            Map<K, CompletableFuture<V>> batch = pending;
+            result = batch.computeIfAbsent(key, k -> new CompletableFuture<>());
+            if (batch.size() >= maxBatchSize) {
+                toRun = take(batch);
+            } else if (leader) {
+                awaitWindow(batch);
+                if (pending == batch) {
+                    toRun = take(batch);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (toRun != null) {
+            run(toRun);
+        }
+        return await(result);
+    }
+
+    // Called with the lock held; new lookups start the next batch from now on.
+    private Map<K, CompletableFuture<V>> take(Map<K, CompletableFuture<V>> batch){
+        pending = null;
+        // Wakes the leader if a full batch was taken by someone else.
+        batchTaken.signalAll();
+        return batch;
+    }
+
+    // Called with the lock held; returns when the window is over or another caller took the batch.
+    private void awaitWindow(Map<K, CompletableFuture<V>> batch){
+        long remaining = window.toNanos();
+        try {
+            while (pending == batch && remaining > 0) {
+                remaining = batchTaken.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            // Load what we have right away rather than leave the others waiting.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(Map<K, CompletableFuture<V>> batch){
+        try {
+            Map<K, V> loaded = batchLoader.apply(batch.keySet());
+            batch.forEach((key, future) -> future.complete(loaded.get(key)));
+        } catch (RuntimeException | Error e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> result){
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
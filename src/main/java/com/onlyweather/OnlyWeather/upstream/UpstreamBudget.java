@@ -0,0 +1,335 @@
+package com.onlyweather.OnlyWeather.upstream;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Budget of OpenWeatherMap calls, so bursts don't run the API key into its per-minute or per-day limit and
+// get every user throttled at once. Each window counts the calls made in the last minute (or day) and a call
+// needs room in both; no span of that length ever sees more than the limit. A limit of 0 leaves that window unbounded.
+//
+// Lower priority lanes must leave a share of each bucket (batch-reserve, background-reserve) to the lanes
+// above them, so background refreshes stop first and user misses stop last. A user call that finds the
+// windows full waits up to max-wait for a call to age out, and no lower lane gets one while it does. A call that gets
+// no token fails with UpstreamBudgetExceededException, which the cache answers with a stale entry if it has one.
+// A token taken for a call that then never goes out (no limiter slot, circuit opened meanwhile) is handed back.
+@Component
+public class UpstreamBudget implements MeterBinder {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition tokenDue = lock.newCondition();
+    private final Window minute;
+    private final Window day;
+    private final Map<UpstreamPriority, Double> reserves = new EnumMap<>(UpstreamPriority.class);
+    private final Duration maxWait;
+    private final Clock clock;
+    private final Map<UpstreamPriority, LongAdder> rejected = new EnumMap<>(UpstreamPriority.class);
+
+    // Guarded by lock.
+    private int usersWaiting;
+
+    @Autowired
+    public UpstreamBudget(@Value("${weather.upstream.budget.calls-per-minute:0}") int callsPerMinute,
+    @Value("${weather.upstream.budget.calls-per-day:0}") int callsPerDay,
+    @Value("${weather.upstream.budget.batch-reserve:0.1}") double batchReserve,
+    @Value("${weather.upstream.budget.background-reserve:0.3}") double backgroundReserve,
+    @Value("${weather.upstream.budget.max-wait:1s}") Duration maxWait){
+        this(callsPerMinute, callsPerDay, batchReserve, backgroundReserve, maxWait, Clock.systemUTC());
+    }
+
+    public UpstreamBudget(int callsPerMinute, int callsPerDay, double batchReserve, double backgroundReserve,
+    Duration maxWait, Clock clock){
+        if (callsPerMinute < 0 || callsPerDay < 0) {
+            throw new IllegalArgumentException("Upstream budget calls-per-minute and calls-per-day must not be negative");
+        }
+        if (batchReserve < 0 || backgroundReserve < batchReserve || backgroundReserve >= 1) {
+            throw new IllegalArgumentException("Upstream budget reserves must satisfy 0 <= batch-reserve <= background-reserve < 1");
+        }
+        Instant now = clock.instant();
+        this.minute = callsPerMinute == 0 ? null : new Window(callsPerMinute, Duration.ofMinutes(1), now);
+        this.day = callsPerDay == 0 ? null : new Window(callsPerDay, Duration.ofDays(1), now);
+        this.reserves.put(UpstreamPriority.USER, 0.0);
+        this.reserves.put(UpstreamPriority.BATCH, batchReserve);
+        this.reserves.put(UpstreamPriority.BACKGROUND, backgroundReserve);
+        this.maxWait = maxWait;
+        this.clock = clock;
+        for (UpstreamPriority priority : UpstreamPriority.values()) {
+            rejected.put(priority, new LongAdder());
+        }
+    }
+
+    // No limits, for callers that don't budget their calls.
+    public static UpstreamBudget unlimited(){
+        return new UpstreamBudget(0, 0, 0, 0, Duration.ZERO, Clock.systemUTC());
+    }
+
+    // Takes a token for one call; user calls may wait up to max-wait for one. False means don't make the call.
+    public boolean tryAcquire(UpstreamPriority priority){
+        return tryAcquire(priority, priority == UpstreamPriority.USER ? maxWait : Duration.ZERO);
+    }
+
+    // Same, but never waits, for callers that must not block (e.g. on an event loop).
+    public boolean tryAcquireNow(UpstreamPriority priority){
+        return tryAcquire(priority, Duration.ZERO);
+    }
+
+    // Hands back a token taken by tryAcquire for a call that was not made after all.
+    public void release(){
+        if (minute == null && day == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            Instant now = clock.instant();
+            if (minute != null) {
+                minute.advance(now);
+                minute.uncount();
+            }
+            if (day != null) {
+                day.advance(now);
+                day.uncount();
+            }
+            tokenDue.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // OpenWeatherMap answered 429: whatever we counted, this minute is used up.
+    public void throttled(){
+        if (minute == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            minute.advance(clock.instant());
+            minute.fill();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Calls left in each window right now, or -1 if the window is unbounded.
+    public double getRemainingPerMinute(){
+        return remaining(minute);
+    }
+
+    public double getRemainingPerDay(){
+        return remaining(day);
+    }
+
+    public long getRejected(UpstreamPriority priority){
+        return rejected.get(priority).sum();
+    }
+
+    private boolean tryAcquire(UpstreamPriority priority, Duration wait){
+        if (minute == null && day == null) {
+            return true;
+        }
+        lock.lock();
+        try {
+            if (take(priority)) {
+                return true;
+            }
+            if (wait.isZero() || wait.isNegative()) {
+                rejected.get(priority).increment();
+                return false;
+            }
+            long deadline = System.nanoTime() + wait.toNanos();
+            usersWaiting++;
+            try {
+                while (true) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        rejected.get(priority).increment();
+                        return false;
+                    }
+                    // Room appears as old calls age out, so sleep until the next one does, or a token is handed back.
+                    tokenDue.awaitNanos(Math.min(left, Math.max(TimeUnit.MILLISECONDS.toNanos(1), untilNextToken())));
+                    if (take(priority)) {
+                        return true;
+                    }
+                }
+            } finally {
+                usersWaiting--;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.get(priority).increment();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held.
+    private boolean take(UpstreamPriority priority){
+        Instant now = clock.instant();
+        double reserve = reserves.get(priority);
+        if (priority != UpstreamPriority.USER && usersWaiting > 0) {
+            return false;
+        }
+        if (!allows(minute, now, reserve) || !allows(day, now, reserve)) {
+            return false;
+        }
+        if (minute != null) {
+            minute.count();
+        }
+        if (day != null) {
+            day.count();
+        }
+        return true;
+    }
+
+    private static boolean allows(Window window, Instant now, double reserve){
+        if (window == null) {
+            return true;
+        }
+        window.advance(now);
+        return window.remaining() - 1 >= reserve * window.limit;
+    }
+
+    // Called with the lock held; how long until a call ages out of every window that is full.
+    private long untilNextToken(){
+        Instant now = clock.instant();
+        return Math.max(untilNextToken(minute, now), untilNextToken(day, now));
+    }
+
+    private static long untilNextToken(Window window, Instant now){
+        if (window == null || window.remaining() >= 1) {
+            return 0;
+        }
+        return window.untilOldestExpires(now);
+    }
+
+    private double remaining(Window window){
+        if (window == null) {
+            return -1;
+        }
+        lock.lock();
+        try {
+            window.advance(clock.instant());
+            return window.remaining();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry){
+        if (minute != null) {
+            Gauge.builder("weather.upstream.budget.remaining", this, UpstreamBudget::getRemainingPerMinute)
+                .description("OpenWeatherMap calls left in the budget of each window")
+                .tag("window", "minute")
+                .register(meterRegistry);
+        }
+        if (day != null) {
+            Gauge.builder("weather.upstream.budget.remaining", this, UpstreamBudget::getRemainingPerDay)
+                .description("OpenWeatherMap calls left in the budget of each window")
+                .tag("window", "day")
+                .register(meterRegistry);
+        }
+        for (UpstreamPriority priority : UpstreamPriority.values()) {
+            FunctionCounter.builder("weather.upstream.budget.rejected", rejected.get(priority), LongAdder::sum)
+                .description("Upstream calls not made because the budget was used up, by priority lane")
+                .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry);
+        }
+    }
+
+    // Calls of the last window length, counted in SLOTS slots of length / SLOTS. The slot that began a whole
+    // window ago is still counted until it has fully aged out, so every call of the last window length is
+    // counted: at worst a call is let through one slot later than it could have been.
+    private static final class Window {
+
+        private static final int SLOTS = 60;
+
+        private final int limit;
+        private final long slotNanos;
+        // Guarded by the budget's lock. Calls per slot, for the current slot and the SLOTS before it.
+        private final int[] counts = new int[SLOTS + 1];
+        private long currentSlot;
+        private int used;
+
+        private Window(int limit, Duration length, Instant now){
+            this.limit = limit;
+            this.slotNanos = Math.max(1, length.toNanos() / SLOTS);
+            this.currentSlot = slotOf(now);
+        }
+
+        // Forgets the slots that are now more than a window old.
+        private void advance(Instant now){
+            long slot = slotOf(now);
+            long passed = Math.min(slot - currentSlot, counts.length);
+            for (long i = 1; i <= passed; i++) {
+                int index = (int) Math.floorMod(currentSlot + i, (long) counts.length);
+                used -= counts[index];
+                counts[index] = 0;
+            }
+            if (slot > currentSlot) {
+                currentSlot = slot;
+            }
+        }
+
+        private int remaining(){
+            return limit - used;
+        }
+
+        private void count(){
+            counts[(int) Math.floorMod(currentSlot, (long) counts.length)]++;
+            used++;
+        }
+
+        // Takes back the newest counted call; the token was taken moments ago, so it sits in one of the last slots.
+        private void uncount(){
+            for (long slot = currentSlot; slot >= currentSlot - SLOTS; slot--) {
+                int index = (int) Math.floorMod(slot, (long) counts.length);
+                if (counts[index] > 0) {
+                    counts[index]--;
+                    used--;
+                    return;
+                }
+            }
+        }
+
+        // Counts the rest of the window as used.
+        private void fill(){
+            counts[(int) Math.floorMod(currentSlot, (long) counts.length)] += limit - used;
+            used = limit;
+        }
+
+        // Nanoseconds until the oldest slot with calls in it stops being counted.
+        private long untilOldestExpires(Instant now){
+            for (long slot = currentSlot - SLOTS; slot <= currentSlot; slot++) {
+                if (counts[(int) Math.floorMod(slot, (long) counts.length)] > 0) {
+                    return Math.max(0, (slot + SLOTS + 1) * slotNanos - nanosOf(now));
+                }
+            }
+            return 0;
+        }
+
+        private long slotOf(Instant now){
+            return nanosOf(now) / slotNanos;
+        }
+
+        private static long nanosOf(Instant now){
+            return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        }
+    }
+}
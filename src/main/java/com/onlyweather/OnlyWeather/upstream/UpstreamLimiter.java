@@ -0,0 +1,154 @@
+package com.onlyweather.OnlyWeather.upstream;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+
+// Caps the number of OpenWeatherMap calls in flight at once.
+// Without it, thousands of virtual threads could all hit the upstream at the same moment.
+//
+// The cap adapts to the upstream (AIMD): every call slower than `latencyThreshold`, or failing with
+// WeatherServiceUnavailableException, shrinks the limit by `backoffRatio`; fast calls made while the
+// limit is at least half used grow it again, by about one permit per `limit` calls. The limit stays
+// between min- and max-concurrency, so a slow upstream ends up with fewer threads parked on it.
+@Component
+public class UpstreamLimiter {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final Duration acquireTimeout;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    // Guarded by lock; the limit is a double so several fast calls are needed to add a whole permit back.
+    private double limit;
+    private int inFlight;
+
+    @Autowired
+    public UpstreamLimiter(@Value("${weather.upstream.max-concurrency:64}") int maxConcurrency,
+    @Value("${weather.upstream.min-concurrency:4}") int minConcurrency,
+    @Value("${weather.upstream.acquire-timeout:2s}") Duration acquireTimeout,
+    @Value("${weather.upstream.latency-threshold:1s}") Duration latencyThreshold,
+    @Value("${weather.upstream.backoff-ratio:0.9}") double backoffRatio){
+        if (minConcurrency < 1 || maxConcurrency < minConcurrency) {
+            throw new IllegalArgumentException("Upstream concurrency must satisfy 1 <= min-concurrency <= max-concurrency");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Upstream backoff-ratio must be between 0 and 1");
+        }
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeout = acquireTimeout;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.limit = maxConcurrency;
+    }
+
+    // A fixed limit, for callers that don't want it to adapt.
+    public UpstreamLimiter(int maxConcurrency, Duration acquireTimeout){
+        this(maxConcurrency, maxConcurrency, acquireTimeout, Duration.ofDays(1), 0.5);
+    }
+
+    public <T> T call(Supplier<T> upstreamCall){
+        acquire();
+        long start = System.nanoTime();
+        boolean dropped = true;
+        try {
+            T result = upstreamCall.get();
+            dropped = false;
+            return result;
+        } catch (RuntimeException e) {
+            // Not found and bad API key are answers from a healthy upstream; only overload counts as a drop.
+            dropped = e instanceof WeatherServiceUnavailableException;
+            throw e;
+        } finally {
+            release(System.nanoTime() - start, dropped);
+        }
+    }
+
+    // Non-blocking variant for the reactive stack, whose event-loop threads must never park: takes a permit only
+    // if one is free right now. Every permit taken must be handed back with release once the call is over.
+    public boolean tryAcquire(){
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight(){
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit(){
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxConcurrency(){
+        return maxConcurrency;
+    }
+
+    private void acquire(){
+        long remaining = acquireTimeout.toNanos();
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    throw new WeatherServiceUnavailableException("Service unavailable, try again later");
+                }
+                remaining = permitReleased.awaitNanos(remaining);
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WeatherServiceUnavailableException("Service unavailable, try again later");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Hands back a permit; a dropped call (see call) or one slower than latency-threshold shrinks the limit.
+    public void release(long latencyNanos, boolean dropped){
+        lock.lock();
+        try {
+            inFlight--;
+            if (dropped || latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(minConcurrency, limit * backoffRatio);
+            } else if (inFlight + 1 >= limit / 2) {
+                double grown = Math.min(maxConcurrency, limit + 1 / limit);
+                // The limit crossed a whole permit, so one more waiter can go.
+                if ((int) grown > (int) limit) {
+                    permitReleased.signal();
+                }
+                limit = grown;
+            }
+            permitReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
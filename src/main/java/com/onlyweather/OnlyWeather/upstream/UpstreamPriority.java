@@ -0,0 +1,12 @@
+package com.onlyweather.OnlyWeather.upstream;
+
+// Who an OpenWeatherMap call is for, highest priority first. UpstreamBudget keeps part of its quota back
+// from the lower lanes, so when calls run short the ones a user is waiting on still go through.
+public enum UpstreamPriority {
+    // A cache miss on a single-city request (GET /{city}, /view/{city}, opening a stream).
+    USER,
+    // A miss inside POST /batch; the user waits for the whole batch, so it still beats background work.
+    BATCH,
+    // Refreshes nobody is waiting on: serve-stale refresh, cache warm-up, stream polls.
+    BACKGROUND
+}
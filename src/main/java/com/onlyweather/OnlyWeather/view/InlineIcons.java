@@ -0,0 +1,41 @@
+package com.onlyweather.OnlyWeather.view;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.core.io.ClassPathResource;
+
+import com.onlyweather.OnlyWeather.enums.WeatherIcons;
+
+// The weather icons as data: URIs, read once at startup, for pages that embed their icon instead of linking it.
+// Each icon is under 1 KB, so inlining one costs less than the extra round trip a first-time visitor makes for it.
+public class InlineIcons {
+
+    private final Map<String, String> dataUris = new HashMap<>();
+
+    public InlineIcons(boolean enabled){
+        if (!enabled) {
+            return;
+        }
+        for (WeatherIcons icon : WeatherIcons.values()) {
+            dataUris.computeIfAbsent(icon.getIconFileName(), InlineIcons::read);
+        }
+    }
+
+    // Null when inlining is off or the icon is unknown; the page then links /images/{iconFileName}.
+    public String dataUri(String iconFileName){
+        return iconFileName == null ? null : dataUris.get(iconFileName);
+    }
+
+    private static String read(String iconFileName){
+        try (InputStream inputStream = new ClassPathResource("static/images/" + iconFileName).getInputStream()) {
+            return "data:image/png;base64," + Base64.getEncoder().encodeToString(inputStream.readAllBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read icon " + iconFileName, e);
+        }
+    }
+}
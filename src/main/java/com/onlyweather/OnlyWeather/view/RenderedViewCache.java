@@ -0,0 +1,137 @@
+package com.onlyweather.OnlyWeather.view;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.ViewResolver;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.onlyweather.OnlyWeather.cache.WeatherResponseEncoder;
+import com.onlyweather.OnlyWeather.controller.WeatherController;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Keeps the HTML of rendered pages, so showing the same data again skips template evaluation.
+//
+// Wraps the views of another resolver (Thymeleaf's). A page is cached when its model carries VERSION_ATTRIBUTE,
+// which must change whenever anything the page shows changes; /view/{city} uses the ETag of the city's JSON,
+// so each city and data version gets its own entry and a refreshed entry simply misses. Every page is stored
+// with a gzipped copy, sent to clients that accept it, and old versions age out by size.
+public class RenderedViewCache implements ViewResolver, Ordered, MeterBinder {
+
+    public static final String VERSION_ATTRIBUTE = "renderedViewVersion";
+
+    private final ViewResolver delegate;
+    private final Cache<String, RenderedPage> pages;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public RenderedViewCache(ViewResolver delegate, long maxSize){
+        this.delegate = delegate;
+        this.pages = Caffeine.newBuilder().maximumSize(maxSize).build();
+    }
+
+    @Override
+    public View resolveViewName(String viewName, Locale locale) throws Exception{
+        View view = delegate.resolveViewName(viewName, locale);
+        return view == null ? null : new CachingView(viewName + ':' + locale, view);
+    }
+
+    // Ahead of the resolver it wraps, so ContentNegotiatingViewResolver picks the caching view.
+    @Override
+    public int getOrder(){
+        return Ordered.HIGHEST_PRECEDENCE + 10;
+    }
+
+    public long getHits(){
+        return hits.sum();
+    }
+
+    public long getMisses(){
+        return misses.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry){
+        FunctionCounter.builder("weather.view.cache.requests", hits, LongAdder::sum)
+            .description("Rendered pages served from the view cache, or rendered because they weren't in it")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        FunctionCounter.builder("weather.view.cache.requests", misses, LongAdder::sum)
+            .description("Rendered pages served from the view cache, or rendered because they weren't in it")
+            .tag("result", "miss")
+            .register(meterRegistry);
+    }
+
+    private record RenderedPage(String contentType, byte[] body, byte[] gzip) {
+    }
+
+    private final class CachingView implements View {
+
+        private final String viewKey;
+        private final View view;
+
+        private CachingView(String viewKey, View view){
+            this.viewKey = viewKey;
+            this.view = view;
+        }
+
+        @Override
+        public String getContentType(){
+            return view.getContentType();
+        }
+
+        @Override
+        public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws Exception{
+            Object version = model == null ? null : model.get(VERSION_ATTRIBUTE);
+            if (version == null) {
+                view.render(model, request, response);
+                return;
+            }
+            String key = viewKey + ':' + version;
+            RenderedPage page = pages.getIfPresent(key);
+            if (page != null) {
+                hits.increment();
+            } else {
+                // Two requests may render the same page at once; both produce the same bytes.
+                misses.increment();
+                page = renderPage(model, request, response);
+                pages.put(key, page);
+            }
+            write(page, request, response);
+        }
+
+        private RenderedPage renderPage(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws Exception{
+            ContentCachingResponseWrapper buffer = new ContentCachingResponseWrapper(response);
+            view.render(model, request, buffer);
+            byte[] body = buffer.getContentAsByteArray();
+            byte[] gzip = WeatherResponseEncoder.gzip(body);
+            String contentType = buffer.getContentType() != null ? buffer.getContentType() : view.getContentType();
+            return new RenderedPage(contentType, body, gzip.length < body.length ? gzip : null);
+        }
+
+        private static void write(RenderedPage page, HttpServletRequest request, HttpServletResponse response) throws Exception{
+            if (page.contentType() != null) {
+                response.setContentType(page.contentType());
+            }
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            byte[] body = page.body();
+            if (page.gzip() != null && WeatherController.acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                body = page.gzip();
+            }
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
+}
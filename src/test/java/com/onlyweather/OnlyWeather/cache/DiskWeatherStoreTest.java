@@ -0,0 +1,117 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.onlyweather.OnlyWeather.dto.MainInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+
+public class DiskWeatherStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private static CachedWeather cached(String city, double temp, WeatherCacheTest.MutableClock clock){
+        WeatherResponseDto weatherResponseDto = new WeatherResponseDto(new MainInfoDto(temp),
+            List.of(new WeatherInfoDto("light rain", "10d")), city, "10d.png", 1709294400L, 2643743);
+        return new CachedWeather(weatherResponseDto, clock.instant());
+    }
+
+    private DiskWeatherStore store(WeatherCacheTest.MutableClock clock) throws IOException{
+        return new DiskWeatherStore(directory.resolve("weather-cache.log"), Duration.ofHours(1), false, 0, clock);
+    }
+
+    @Test
+    public void read_ShouldReturnEntriesWrittenBeforeARestart_WithTheirFetchTime() throws IOException{
+        WeatherCacheTest.MutableClock clock = new WeatherCacheTest.MutableClock();
+        DiskWeatherStore store = store(clock);
+        store.write("london", cached("London", 11.5, clock));
+        clock.advance(Duration.ofMinutes(1));
+        store.write("paris", cached("Paris", 14.0, clock));
+        store.write("london", cached("London", 12.5, clock));
+        store.close();
+
+        DiskWeatherStore reopened = store(clock);
+        CachedWeather london = reopened.read("london");
+
+        assertEquals(2, reopened.size());
+        assertEquals(12.5, london.getWeather().getMain().getTemp());
+        assertEquals("light rain", london.getWeather().getWeather().get(0).getDescription());
+        assertEquals("10d.png", london.getWeather().getIconFileName());
+        assertEquals(1709294400L, london.getWeather().getObservedAt());
+        assertEquals(2643743, london.getWeather().getCityId());
+        assertEquals(clock.instant(), london.getFetchedAt());
+        assertEquals("Paris", reopened.read("paris").getWeather().getName());
+        assertNull(reopened.read("rome"));
+    }
+
+    @Test
+    public void read_ShouldSkipEntries_OlderThanMaxAge() throws IOException{
+        WeatherCacheTest.MutableClock clock = new WeatherCacheTest.MutableClock();
+        DiskWeatherStore store = store(clock);
+        store.write("london", cached("London", 11.5, clock));
+
+        clock.advance(Duration.ofMinutes(59));
+        assertEquals("London", store.read("london").getWeather().getName());
+        clock.advance(Duration.ofMinutes(1));
+        assertNull(store.read("london"));
+    }
+
+    @Test
+    public void open_ShouldDropATornRecordAtTheEnd_AndKeepAppending() throws IOException{
+        WeatherCacheTest.MutableClock clock = new WeatherCacheTest.MutableClock();
+        DiskWeatherStore store = store(clock);
+        store.write("london", cached("London", 11.5, clock));
+        store.write("paris", cached("Paris", 14.0, clock));
+        long sizeWithBoth = store.fileSize();
+        store.close();
+        // As if the process died halfway through writing the second record.
+        try (FileChannel channel = FileChannel.open(directory.resolve("weather-cache.log"), StandardOpenOption.WRITE)) {
+            channel.truncate(sizeWithBoth - 5);
+        }
+
+        DiskWeatherStore reopened = store(clock);
+        assertEquals("London", reopened.read("london").getWeather().getName());
+        assertNull(reopened.read("paris"));
+
+        reopened.write("paris", cached("Paris", 15.0, clock));
+        reopened.close();
+        assertEquals(15.0, store(clock).read("paris").getWeather().getMain().getTemp());
+    }
+
+    @Test
+    public void compact_ShouldKeepOnlyTheLatestUnexpiredRecords() throws IOException{
+        WeatherCacheTest.MutableClock clock = new WeatherCacheTest.MutableClock();
+        DiskWeatherStore store = store(clock);
+        store.write("rome", cached("Rome", 18.0, clock));
+        clock.advance(Duration.ofMinutes(30));
+        for (int i = 0; i < 100; i++) {
+            store.write("london", cached("London", i, clock));
+        }
+        clock.advance(Duration.ofMinutes(31));
+        long before = store.fileSize();
+
+        store.compactIfNeeded();
+
+        assertTrue(store.fileSize() * 50 < before);
+        assertEquals(1, store.size());
+        assertEquals(99.0, store.read("london").getWeather().getMain().getTemp());
+        assertNull(store.read("rome"));
+        store.close();
+        assertEquals(1, store(clock).size());
+        assertTrue(Files.notExists(directory.resolve("weather-cache.log.compact")));
+    }
+}
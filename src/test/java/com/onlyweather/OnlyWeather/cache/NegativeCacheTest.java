@@ -0,0 +1,78 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class NegativeCacheTest {
+
+    @Test
+    public void isKnownMissing_ShouldRememberKeys_ForTheTtl(){
+        WeatherCacheTest.MutableClock clock = new WeatherCacheTest.MutableClock();
+        NegativeCache negativeCache = new NegativeCache(true, Duration.ofMinutes(5), 100, true, 1000, 0.01, clock);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        negativeCache.bindTo(meterRegistry);
+
+        assertFalse(negativeCache.isKnownMissing("atlantis"));
+        negativeCache.put("atlantis");
+        assertTrue(negativeCache.isKnownMissing("atlantis"));
+        assertFalse(negativeCache.isKnownMissing("london"));
+
+        clock.advance(Duration.ofMinutes(5));
+        assertFalse(negativeCache.isKnownMissing("atlantis"));
+
+        assertEquals(1, meterRegistry.get("weather.negative-cache.requests").tag("result", "hit").functionCounter().count());
+        assertEquals(3, meterRegistry.get("weather.negative-cache.requests").tag("result", "miss").functionCounter().count());
+        // The expired key got past the Bloom filter, the never-seen ones didn't.
+        assertEquals(1, meterRegistry.get("weather.negative-cache.bloom.false-positives").functionCounter().count());
+        assertEquals(2, meterRegistry.get("weather.negative-cache.bloom.rejections").functionCounter().count());
+        assertEquals(0.01, meterRegistry.get("weather.negative-cache.bloom.fpp").tag("value", "configured").gauge().value());
+    }
+
+    @Test
+    public void put_ShouldRebuildTheBloomFilter_FromLiveEntries(){
+        NegativeCache negativeCache = new NegativeCache(true, Duration.ofMinutes(5), 100, true, 10, 0.01, Clock.systemUTC());
+
+        for (int i = 0; i < 25; i++) {
+            negativeCache.put("nowhere-" + i);
+        }
+
+        for (int i = 0; i < 25; i++) {
+            assertTrue(negativeCache.isKnownMissing("nowhere-" + i));
+        }
+    }
+
+    @Test
+    public void bloomFilter_ShouldNeverMissAPutKey_AndStayNearItsFalsePositiveRate(){
+        BloomFilter bloomFilter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            bloomFilter.put("city-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(bloomFilter.mightContain("city-" + i));
+            if (bloomFilter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+        assertTrue(bloomFilter.estimatedFalsePositiveRate() < 0.02);
+    }
+
+    @Test
+    public void disabled_ShouldRememberNothing(){
+        NegativeCache negativeCache = NegativeCache.disabled();
+
+        negativeCache.put("atlantis");
+
+        assertFalse(negativeCache.isKnownMissing("atlantis"));
+    }
+}
@@ -0,0 +1,147 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+
+// Several WeatherCaches sharing one InMemorySharedCacheBackend stand in for instances sharing a Redis server.
+public class SharedWeatherCacheTest {
+
+    private static WeatherResponseDto response(String city){
+        WeatherResponseDto weatherResponseDto = new WeatherResponseDto();
+        weatherResponseDto.setName(city);
+        return weatherResponseDto;
+    }
+
+    private static WeatherCache node(SharedCacheBackend backend, WeatherCacheTest.MutableClock clock){
+        SharedWeatherCache sharedWeatherCache = new SharedWeatherCache(backend, "test:", Duration.ofHours(1),
+            Duration.ofSeconds(5), Duration.ofMillis(5));
+        return new WeatherCache(Duration.ofMinutes(10), 100, false, Duration.ofMinutes(10), Runnable::run, clock,
+            List.of(sharedWeatherCache));
+    }
+
+    @Test
+    public void get_ShouldServeAnEntryLoadedByAnotherNode_UntilItsOriginalTtlRunsOut(){
+        WeatherCacheTest.MutableClock clock = new WeatherCacheTest.MutableClock();
+        InMemorySharedCacheBackend backend = new InMemorySharedCacheBackend(clock);
+        WeatherCache first = node(backend, clock);
+        WeatherCache second = node(backend, clock);
+        AtomicInteger loads = new AtomicInteger();
+
+        first.get("london", key -> { loads.incrementAndGet(); return response("London"); });
+        clock.advance(Duration.ofMinutes(6));
+        CachedWeather shared = second.get("london", key -> { loads.incrementAndGet(); return response("London"); });
+
+        assertEquals(1, loads.get());
+        assertEquals("London", shared.getWeather().getName());
+        assertEquals(1, second.getStats().getTierHits());
+
+        // The second node's near cache expires the entry when the first node's would, not ten minutes later.
+        clock.advance(Duration.ofMinutes(4));
+        second.get("london", key -> { loads.incrementAndGet(); return response("London"); });
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void get_ShouldLoadOnceAcrossNodes_WhenNodesMissTheSameCityConcurrently() throws Exception{
+        WeatherCacheTest.MutableClock clock = new WeatherCacheTest.MutableClock();
+        InMemorySharedCacheBackend backend = new InMemorySharedCacheBackend(clock);
+        List<WeatherCache> nodes = List.of(node(backend, clock), node(backend, clock), node(backend, clock));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(nodes.size());
+        try {
+            List<Future<CachedWeather>> results = nodes.stream()
+                .map(node -> executor.submit(() -> node.get("london", key -> {
+                    loads.incrementAndGet();
+                    loaderStarted.countDown();
+                    try {
+                        releaseLoader.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return response("London");
+                })))
+                .toList();
+            loaderStarted.await(5, TimeUnit.SECONDS);
+            // Give the other nodes a moment to find the lock taken.
+            Thread.sleep(100);
+            releaseLoader.countDown();
+
+            for (Future<CachedWeather> result : results) {
+                assertEquals("London", result.get(5, TimeUnit.SECONDS).getWeather().getName());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void get_ShouldLoadOnEveryNode_WhenTheSharedStoreIsDown(){
+        WeatherCacheTest.MutableClock clock = new WeatherCacheTest.MutableClock();
+        SharedCacheBackend unreachable = new SharedCacheBackend() {
+            @Override
+            public byte[] get(String key){
+                throw new IllegalStateException("Connection refused");
+            }
+
+            @Override
+            public void set(String key, byte[] value, Duration ttl){
+                throw new IllegalStateException("Connection refused");
+            }
+
+            @Override
+            public boolean tryLock(String key, String token, Duration ttl){
+                throw new IllegalStateException("Connection refused");
+            }
+
+            @Override
+            public void unlock(String key, String token){
+                throw new IllegalStateException("Connection refused");
+            }
+        };
+        AtomicInteger loads = new AtomicInteger();
+
+        node(unreachable, clock).get("london", key -> { loads.incrementAndGet(); return response("London"); });
+        CachedWeather loaded = node(unreachable, clock).get("london", key -> { loads.incrementAndGet(); return response("London"); });
+
+        assertEquals("London", loaded.getWeather().getName());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void tryLock_ShouldAdmitOneHolder_UntilItUnlocksOrItsTtlRunsOut(){
+        WeatherCacheTest.MutableClock clock = new WeatherCacheTest.MutableClock();
+        InMemorySharedCacheBackend backend = new InMemorySharedCacheBackend(clock);
+
+        assertTrue(backend.tryLock("lock:london", "a", Duration.ofSeconds(5)));
+        assertFalse(backend.tryLock("lock:london", "b", Duration.ofSeconds(5)));
+        backend.unlock("lock:london", "b");
+        assertFalse(backend.tryLock("lock:london", "b", Duration.ofSeconds(5)));
+        backend.unlock("lock:london", "a");
+        assertTrue(backend.tryLock("lock:london", "b", Duration.ofSeconds(5)));
+
+        clock.advance(Duration.ofSeconds(5));
+        assertTrue(backend.tryLock("lock:london", "c", Duration.ofSeconds(5)));
+        backend.set("weather:london", new byte[] {1}, Duration.ofSeconds(1));
+        clock.advance(Duration.ofSeconds(1));
+        assertNull(backend.get("weather:london"));
+    }
+}
@@ -0,0 +1,283 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.onlyweather.OnlyWeather.dto.CacheStatsDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.exception.CityNotFoundException;
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+
+// Unit tests for the WeatherCache: freshness, single-flight loading and counters.
+public class WeatherCacheTest {
+
+    // A clock we can move forward by hand, so TTL tests don't have to sleep.
+    static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-03-01T12:00:00Z");
+
+        void advance(Duration duration){
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone(){
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone){
+            return this;
+        }
+
+        @Override
+        public Instant instant(){
+            return now;
+        }
+    }
+
+    private static WeatherResponseDto response(String city){
+        WeatherResponseDto weatherResponseDto = new WeatherResponseDto();
+        weatherResponseDto.setName(city);
+        return weatherResponseDto;
+    }
+
+    @Test
+    public void normalize_ShouldIgnoreCaseAndSurroundingWhitespace(){
+        assertEquals("new york", WeatherCache.normalize("  New   York "));
+        assertEquals("london", WeatherCache.normalize("LONDON"));
+    }
+
+    @Test
+    public void get_ShouldReturnCachedEntry_UntilTtlExpires(){
+        MutableClock clock = new MutableClock();
+        WeatherCache cache = new WeatherCache(Duration.ofMinutes(10), 100, clock);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("london", key -> { loads.incrementAndGet(); return response("London"); });
+        clock.advance(Duration.ofMinutes(9));
+        cache.get("london", key -> { loads.incrementAndGet(); return response("London"); });
+        assertEquals(1, loads.get());
+
+        clock.advance(Duration.ofMinutes(2));
+        cache.get("london", key -> { loads.incrementAndGet(); return response("London"); });
+        assertEquals(2, loads.get());
+
+        CacheStatsDto stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(2, stats.getMisses());
+    }
+
+    @Test
+    public void get_ShouldNotCacheFailures(){
+        WeatherCache cache = new WeatherCache(Duration.ofMinutes(10), 100, new MutableClock());
+
+        assertThrows(CityNotFoundException.class,
+            () -> cache.get("atlantis", key -> { throw new CityNotFoundException("City not found: atlantis"); }));
+
+        CachedWeather cachedWeather = cache.get("atlantis", key -> response("Atlantis"));
+        assertEquals("Atlantis", cachedWeather.getWeather().getName());
+    }
+
+    @Test
+    public void get_ShouldCoalesceConcurrentMisses_IntoSingleLoad() throws Exception{
+        WeatherCache cache = new WeatherCache(Duration.ofMinutes(10), 100, new MutableClock());
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        int callers = 50;
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<CachedWeather>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> cache.get("london", key -> {
+                    loads.incrementAndGet();
+                    loaderStarted.countDown();
+                    try {
+                        releaseLoader.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return response("London");
+                })));
+            }
+            loaderStarted.await(5, TimeUnit.SECONDS);
+            // Give the remaining callers a moment to pile up behind the loader.
+            Thread.sleep(100);
+            releaseLoader.countDown();
+
+            CachedWeather first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<CachedWeather> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void get_ShouldEvictEntries_WhenMaxSizeIsExceeded(){
+        WeatherCache cache = new WeatherCache(Duration.ofMinutes(10), 2, new MutableClock());
+        for (int i = 0; i < 10; i++) {
+            String city = "city" + i;
+            cache.get(city, key -> response(city));
+        }
+        cache.cleanUp();
+
+        CacheStatsDto stats = cache.getStats();
+        assertEquals(10, stats.getMisses());
+        assertEquals(2, stats.getSize());
+        assertEquals(8, stats.getEvictions());
+    }
+
+    @Test
+    public void get_ShouldServeStaleEntry_AndRefreshInBackground(){
+        MutableClock clock = new MutableClock();
+        List<Runnable> refreshes = new ArrayList<>();
+        WeatherCache cache = new WeatherCache(Duration.ofMinutes(10), 100, true, Duration.ofHours(1), refreshes::add, clock);
+
+        cache.get("london", key -> response("London (old)"));
+        clock.advance(Duration.ofMinutes(15));
+
+        CachedWeather stale = cache.get("london", key -> response("London (new)"));
+        assertEquals("London (old)", stale.getWeather().getName());
+        assertEquals(1, refreshes.size());
+
+        refreshes.get(0).run();
+        CachedWeather refreshed = cache.get("london", key -> response("London (unused)"));
+        assertEquals("London (new)", refreshed.getWeather().getName());
+        assertEquals(Duration.ofMinutes(10), refreshed.getFreshFor());
+        assertEquals(Duration.ofMinutes(50), refreshed.getStaleFor());
+
+        CacheStatsDto stats = cache.getStats();
+        assertEquals(1, stats.getStaleHits());
+        assertEquals(1, stats.getBackgroundRefreshes());
+        assertEquals(1, stats.getHits());
+    }
+
+    @Test
+    public void get_ShouldKeepStaleEntry_WhenBackgroundRefreshFails(){
+        MutableClock clock = new MutableClock();
+        WeatherCache cache = new WeatherCache(Duration.ofMinutes(10), 100, true, Duration.ofHours(1), Runnable::run, clock);
+
+        cache.get("london", key -> response("London"));
+        clock.advance(Duration.ofMinutes(30));
+
+        CachedWeather stale = cache.get("london", key -> { throw new WeatherServiceUnavailableException("Service unavailable, try again later"); });
+        assertEquals("London", stale.getWeather().getName());
+        assertEquals(Duration.ofMinutes(30), stale.ageAt(clock.instant()));
+    }
+
+    @Test
+    public void get_ShouldFail_WhenStaleEntryIsPastStaleTtl(){
+        MutableClock clock = new MutableClock();
+        WeatherCache cache = new WeatherCache(Duration.ofMinutes(10), 100, true, Duration.ofHours(1), Runnable::run, clock);
+
+        cache.get("london", key -> response("London"));
+        clock.advance(Duration.ofMinutes(61));
+
+        assertThrows(WeatherServiceUnavailableException.class,
+            () -> cache.get("london", key -> { throw new WeatherServiceUnavailableException("Service unavailable, try again later"); }));
+    }
+
+    @Test
+    public void mostRequested_ShouldRankKeysByRecentRequests(){
+        WeatherCache cache = new WeatherCache(Duration.ofMinutes(10), 100, new MutableClock());
+        for (int i = 0; i < 3; i++) {
+            cache.get("london", key -> response("London"));
+        }
+        cache.get("paris", key -> response("Paris"));
+        cache.getIfFresh("paris");
+        cache.getIfFresh("rome");
+
+        assertEquals(List.of("london", "paris"), cache.mostRequested(2));
+
+        // After decaying, fresh traffic outweighs the old counts.
+        cache.decayRequestCounts();
+        cache.decayRequestCounts();
+        cache.getIfFresh("rome");
+        assertEquals("rome", cache.mostRequested(1).get(0));
+    }
+
+    @Test
+    public void decayRequestCounts_ShouldDropKeys_WhoseCountReachesZero(){
+        WeatherCache cache = new WeatherCache(Duration.ofMinutes(10), 100, new MutableClock());
+        cache.getIfFresh("london");
+        cache.getIfFresh("london");
+        cache.getIfFresh("paris");
+
+        cache.decayRequestCounts();
+
+        assertEquals(List.of("london"), cache.mostRequested(10));
+    }
+
+    @Test
+    public void refresh_ShouldReloadFreshEntry_WithoutCountingARequest(){
+        WeatherCache cache = new WeatherCache(Duration.ofMinutes(10), 100, new MutableClock());
+        cache.get("london", key -> response("London (old)"));
+
+        cache.refresh("london", key -> response("London (new)"));
+
+        assertEquals("London (new)", cache.peek("london").getWeather().getName());
+        assertEquals(1, cache.getStats().getMisses());
+        assertEquals(0, cache.getStats().getHits());
+    }
+
+    @Test
+    public void get_ShouldUseFreshEntriesFromATier_AndWriteLoadsThroughToIt(){
+        MutableClock clock = new MutableClock();
+        Map<String, CachedWeather> stored = new HashMap<>();
+        WeatherCacheTier tier = new WeatherCacheTier() {
+            @Override
+            public CachedWeather read(String key){
+                return stored.get(key);
+            }
+
+            @Override
+            public void write(String key, CachedWeather cachedWeather){
+                stored.put(key, cachedWeather);
+            }
+        };
+        stored.put("london", new CachedWeather(response("London (disk)"), clock.instant()));
+        stored.put("paris", new CachedWeather(response("Paris (disk)"), clock.instant().minus(Duration.ofMinutes(20))));
+        WeatherCache cache = new WeatherCache(Duration.ofMinutes(10), 100, false, Duration.ofMinutes(10), Runnable::run, clock,
+            List.of(tier));
+        AtomicInteger loads = new AtomicInteger();
+
+        clock.advance(Duration.ofMinutes(5));
+        CachedWeather london = cache.get("london", key -> { loads.incrementAndGet(); return response("London"); });
+        CachedWeather paris = cache.get("paris", key -> { loads.incrementAndGet(); return response("Paris"); });
+
+        // The tier's entry keeps its age: five more minutes and it is due for a reload.
+        assertEquals("London (disk)", london.getWeather().getName());
+        assertEquals(Duration.ofMinutes(10), london.getFreshFor());
+        assertEquals("Paris", paris.getWeather().getName());
+        assertSame(paris, stored.get("paris"));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getStats().getTierHits());
+
+        clock.advance(Duration.ofMinutes(5));
+        assertEquals("London", cache.get("london", key -> { loads.incrementAndGet(); return response("London"); })
+            .getWeather().getName());
+    }
+}
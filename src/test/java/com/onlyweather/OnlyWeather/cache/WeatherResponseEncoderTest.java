@@ -0,0 +1,48 @@
+package com.onlyweather.OnlyWeather.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+
+public class WeatherResponseEncoderTest {
+
+    private final WeatherResponseEncoder encoder = new WeatherResponseEncoder(new ObjectMapper(), true);
+
+    private static CachedWeather cached(String name){
+        WeatherResponseDto weatherResponseDto = new WeatherResponseDto();
+        weatherResponseDto.setName(name);
+        return new CachedWeather(weatherResponseDto, Instant.now());
+    }
+
+    @Test
+    public void encode_ShouldEncodeOncePerCacheEntry(){
+        CachedWeather london = cached("London");
+
+        assertSame(encoder.encode(london), encoder.encode(london));
+    }
+
+    @Test
+    public void encode_ShouldDeriveETagFromContent(){
+        EncodedWeather first = encoder.encode(cached("London"));
+
+        assertEquals(first.getEtag(), encoder.encode(cached("London")).getEtag());
+        assertNotEquals(first.getEtag(), encoder.encode(cached("Paris")).getEtag());
+    }
+
+    @Test
+    public void encode_ShouldSkipGzip_WhenItWouldNotShrinkTheBody(){
+        EncodedWeather tiny = encoder.encode(cached("London"));
+        EncodedWeather large = encoder.encode(cached("London ".repeat(100)));
+
+        assertNull(tiny.getGzip());
+        assertEquals(large.getEtag().replace("\"", "") + "-gzip", large.getGzipEtag().replace("\"", ""));
+    }
+}
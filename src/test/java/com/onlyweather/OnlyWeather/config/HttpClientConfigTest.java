@@ -0,0 +1,82 @@
+package com.onlyweather.OnlyWeather.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Checks the pooled client against a tiny local HTTP server: connections are reused and timeouts apply.
+public class HttpClientConfigTest {
+
+    private final HttpClientConfig httpClientConfig = new HttpClientConfig();
+    private HttpServer server;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() throws IOException{
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/fast", exchange -> respond(exchange, "ok"));
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, "late");
+        });
+        server.start();
+
+        connectionManager = httpClientConfig.upstreamConnectionManager(10, 10,
+            Duration.ofSeconds(1), Duration.ofMillis(300), Duration.ofSeconds(30));
+        restTemplate = new RestTemplate(httpClientConfig.pooledRequestFactory(connectionManager,
+            Duration.ofMillis(300), Duration.ofMillis(500), Duration.ofSeconds(30)));
+    }
+
+    @AfterEach
+    void tearDown(){
+        connectionManager.close();
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException{
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private String url(String path){
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    @Test
+    public void sequentialCalls_ShouldReuseOneKeepAliveConnection(){
+        for (int i = 0; i < 5; i++) {
+            assertEquals("ok", restTemplate.getForObject(url("/fast"), String.class));
+        }
+
+        assertEquals(0, connectionManager.getTotalStats().getLeased());
+        assertEquals(1, connectionManager.getTotalStats().getAvailable());
+    }
+
+    @Test
+    public void slowResponse_ShouldFailWithReadTimeout(){
+        assertThrows(ResourceAccessException.class, () -> restTemplate.getForObject(url("/slow"), String.class));
+    }
+}
@@ -0,0 +1,38 @@
+package com.onlyweather.OnlyWeather.config;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import com.onlyweather.OnlyWeather.dto.MainInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.enums.WeatherIcons;
+import com.onlyweather.OnlyWeather.exception.ErrorDetails;
+
+import io.swagger.v3.oas.models.info.Info;
+
+public class NativeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    public void registerHints_ShouldCoverTheDtos_IncludingNestedOnes(){
+        new NativeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(WeatherResponseDto.class, "getMain").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(WeatherResponseDto.class, "setName").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(MainInfoDto.class, "getTemp").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(ErrorDetails.class, "getMessage").test(hints));
+    }
+
+    @Test
+    public void registerHints_ShouldCoverWeatherIconsAndTheSwaggerModels(){
+        new NativeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(WeatherIcons.class, "getIconFileName").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onField(WeatherIcons.class, "DEFAULT").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(Info.class, "getTitle").test(hints));
+    }
+}
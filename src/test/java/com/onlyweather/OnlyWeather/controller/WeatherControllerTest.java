@@ -1,32 +1,53 @@
 package com.onlyweather.OnlyWeather.controller;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlyweather.OnlyWeather.cache.CachedWeather;
+import com.onlyweather.OnlyWeather.cache.WeatherResponseEncoder;
+import com.onlyweather.OnlyWeather.dto.BatchWeatherEntryDto;
 import com.onlyweather.OnlyWeather.dto.MainInfoDto;
 import com.onlyweather.OnlyWeather.dto.WeatherInfoDto;
 import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
 import com.onlyweather.OnlyWeather.exception.CityNotFoundException;
 import com.onlyweather.OnlyWeather.exception.InvalidApiKeyException;
+import com.onlyweather.OnlyWeather.metrics.WeatherMetrics;
+import com.onlyweather.OnlyWeather.service.BatchWeatherService;
 import com.onlyweather.OnlyWeather.service.WeatherService;
+import com.onlyweather.OnlyWeather.view.RenderedViewCache;
 
 // This annotation sets up everything for testing only the web layer (our controller),
 // without loading the entire application. It includes Mockito out of the box.
 @WebMvcTest(WeatherController.class)
+// The real encoder, so the tests see the exact bytes the controller sends.
+@Import(WeatherResponseEncoder.class)
 public class WeatherControllerTest {
 
     // A tool to convert Java objects to JSON (and vice versa).
@@ -38,11 +59,22 @@ public class WeatherControllerTest {
     @MockBean
     WeatherService weatherService;
 
+    @MockBean
+    BatchWeatherService batchWeatherService;
+
+    // Needed by GlobalExceptionHandler, which @WebMvcTest loads along with the controller.
+    @MockBean
+    WeatherMetrics weatherMetrics;
+
     // Spring injects the MockMvc tool, which allows us to
     // simulate sending HTTP requests (like GET) to our controller.
     @Autowired
     MockMvc mockMvc;
 
+    // From WebAssetsConfig, which @WebMvcTest loads as a WebMvcConfigurer.
+    @Autowired
+    RenderedViewCache renderedViewCache;
+
     private WeatherResponseDto createSampleWeatherResponseDto(String city, double temp, String description, String iconCode){
         WeatherResponseDto weatherResponseDto = new WeatherResponseDto();
 
@@ -66,8 +98,8 @@ public class WeatherControllerTest {
         // --- Configure the Mock Service (Mockito) ---
         // We say: "When someone calls the getWeather method on our mock weatherService
         // with any string (anyString()), then return the prepared weatherResponseDto object".
-        when(weatherService.getWeather(anyString()))
-        .thenReturn(weatherResponseDto);
+        when(weatherService.getCachedWeather(anyString()))
+        .thenReturn(new CachedWeather(weatherResponseDto, Instant.now()));
 
         // --- Prepare Expected JSON Response ---
         // Convert our sample Java object into a JSON string.
@@ -86,7 +118,7 @@ public class WeatherControllerTest {
     @Test
     public void testGetWeather_View_WhenCityNotFound_ShouldReturnNotFound() throws Exception{
         String city = "UnknownCity";
-        when(weatherService.getWeather(city))
+        when(weatherService.getCachedWeather(city))
         .thenThrow(new CityNotFoundException("City not found: " + city));
 
         mockMvc.perform(get("/{city}", city))
@@ -96,7 +128,7 @@ public class WeatherControllerTest {
 
     @Test
     public void testGetWeather_View_WhenApiInvalid_ShouldReturnUnauthorized() throws Exception{
-        when(weatherService.getWeather("London"))
+        when(weatherService.getCachedWeather("London"))
         .thenThrow(new InvalidApiKeyException("Invalid ApiKey, try to change it"));
 
         mockMvc.perform(get("/{city}", "London"))
@@ -109,8 +141,8 @@ public class WeatherControllerTest {
         WeatherResponseDto weatherResponseDto = createSampleWeatherResponseDto("London", 5.5, "clear sky", "01n");
         weatherResponseDto.setIconFileName("01d@2x.png");
 
-        when(weatherService.getWeather(anyString()))
-                .thenReturn(weatherResponseDto);
+        when(weatherService.getCachedWeather(anyString()))
+                .thenReturn(new CachedWeather(weatherResponseDto, Instant.now()));
 
         mockMvc.perform(get("/view/{city}", "London"))
                 .andExpect(status().isOk())
@@ -120,4 +152,172 @@ public class WeatherControllerTest {
                 .andExpect(model().attribute("description", "clear sky"))
                 .andExpect(model().attribute("icon", "01d@2x.png"));
     }
+
+    @Test
+    public void testGetWeather_ShouldSendAgeOfCachedData() throws Exception{
+        WeatherResponseDto weatherResponseDto = createSampleWeatherResponseDto("London", 5.0, "clear sky", "01n");
+        when(weatherService.getCachedWeather(anyString()))
+        .thenReturn(new CachedWeather(weatherResponseDto, Instant.now().minusSeconds(90)));
+
+        mockMvc.perform(get("/{city}", "London"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Age", matchesPattern("9[0-9]")));
+    }
+
+    @Test
+    public void testGetWeatherBatch_ShouldReturnEntryPerCity() throws Exception{
+        WeatherResponseDto london = createSampleWeatherResponseDto("London", 5.0, "clear sky", "01n");
+        when(batchWeatherService.getWeather(List.of("London", "Atlantis")))
+        .thenReturn(List.of(
+            BatchWeatherEntryDto.success("London", london),
+            BatchWeatherEntryDto.failure("Atlantis", 404, "City not found: Atlantis")));
+
+        mockMvc.perform(get("/batch").param("cities", "London,Atlantis"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].city").value("London"))
+        .andExpect(jsonPath("$[0].status").value(200))
+        .andExpect(jsonPath("$[0].weather.name").value("London"))
+        .andExpect(jsonPath("$[1].status").value(404))
+        .andExpect(jsonPath("$[1].error").value("City not found: Atlantis"));
+
+        mockMvc.perform(post("/batch").contentType(MediaType.APPLICATION_JSON).content("[\"London\",\"Atlantis\"]"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[1].city").value("Atlantis"));
+    }
+
+    @Test
+    public void testGetWeatherBatch_WhenTooManyCities_ShouldReturnBadRequest() throws Exception{
+        when(batchWeatherService.getWeather(List.of("London", "Paris")))
+        .thenThrow(new IllegalArgumentException("Too many cities in one batch, the limit is 1"));
+
+        mockMvc.perform(get("/batch").param("cities", "London,Paris"))
+        .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testSuggestCities_ShouldCapTheLimit() throws Exception{
+        when(weatherService.suggestCities("lon", 50)).thenReturn(List.of("london", "london,gb"));
+
+        mockMvc.perform(get("/cities/suggest").param("prefix", "lon").param("limit", "1000"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0]").value("london"))
+        .andExpect(jsonPath("$[1]").value("london,gb"));
+    }
+
+    @Test
+    public void testGetWeather_WhenETagMatches_ShouldReturnNotModified() throws Exception{
+        WeatherResponseDto weatherResponseDto = createSampleWeatherResponseDto("London", 5.0, "clear sky", "01n");
+        when(weatherService.getCachedWeather(anyString()))
+        .thenReturn(new CachedWeather(weatherResponseDto, Instant.now()));
+
+        String etag = mockMvc.perform(get("/{city}", "London"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Vary", "Accept-Encoding"))
+        .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/{city}", "London").header("If-None-Match", etag))
+        .andExpect(status().isNotModified())
+        .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    public void testGetWeather_WhenClientAcceptsGzip_ShouldSendPreCompressedBody() throws Exception{
+        // A long description, so gzip actually makes the body smaller.
+        WeatherResponseDto weatherResponseDto = createSampleWeatherResponseDto("London", 5.0, "clear sky ".repeat(50), "01n");
+        CachedWeather cachedWeather = new CachedWeather(weatherResponseDto, Instant.now());
+        when(weatherService.getCachedWeather(anyString())).thenReturn(cachedWeather);
+
+        byte[] body = mockMvc.perform(get("/{city}", "London").header("Accept-Encoding", "br;q=1.0, gzip;q=0.8"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Encoding", "gzip"))
+        .andExpect(header().string("ETag", matchesPattern("\"[0-9a-f]+-gzip\"")))
+        .andReturn().getResponse().getContentAsByteArray();
+
+        String json = new String(new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals("London", objectMapper.readTree(json).get("name").asText());
+
+        mockMvc.perform(get("/{city}", "London").header("Accept-Encoding", "gzip;q=0"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist("Content-Encoding"))
+        .andExpect(jsonPath("$.name").value("London"));
+    }
+
+    @Test
+    public void testGetWeather_ShouldSendCachingHeaders_FromCacheEntryAndObservationTime() throws Exception{
+        WeatherResponseDto weatherResponseDto = createSampleWeatherResponseDto("London", 5.0, "clear sky", "01n");
+        weatherResponseDto.setObservedAt(1709300000L);
+        when(weatherService.getCachedWeather(anyString()))
+        .thenReturn(new CachedWeather(weatherResponseDto, Instant.now(), Duration.ofMinutes(10), Duration.ofMinutes(50)));
+
+        mockMvc.perform(get("/{city}", "London"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Cache-Control", "max-age=600, public, stale-while-revalidate=3000"))
+        .andExpect(header().string("Last-Modified", "Fri, 01 Mar 2024 13:33:20 GMT"))
+        .andExpect(jsonPath("$.dt").doesNotExist());
+
+        mockMvc.perform(get("/{city}", "London").header("If-Modified-Since", "Fri, 01 Mar 2024 13:33:20 GMT"))
+        .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void testShowWeather_WhenNotModified_ShouldReturnNotModifiedWithoutRendering() throws Exception{
+        WeatherResponseDto weatherResponseDto = createSampleWeatherResponseDto("London", 5.5, "clear sky", "01n");
+        when(weatherService.getCachedWeather(anyString()))
+        .thenReturn(new CachedWeather(weatherResponseDto, Instant.now(), Duration.ofMinutes(10), Duration.ZERO));
+
+        String etag = mockMvc.perform(get("/view/{city}", "London"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Cache-Control", "max-age=600, public"))
+        .andExpect(header().string("ETag", matchesPattern("W/\"[0-9a-f]+\"")))
+        .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/view/{city}", "London").header("If-None-Match", etag))
+        .andExpect(status().isNotModified())
+        .andExpect(content().string(""));
+    }
+
+    @Test
+    public void testShowWeather_WhenDataUnchanged_ShouldServeRenderedPageFromViewCache() throws Exception{
+        // A long description, so gzip makes the page smaller; also keeps this page apart from the other tests'.
+        WeatherResponseDto weatherResponseDto = createSampleWeatherResponseDto("Oslo", 2.5, "light snow ".repeat(50), "13d");
+        weatherResponseDto.setIconFileName("13d@2x.png");
+        when(weatherService.getCachedWeather(anyString()))
+        .thenReturn(new CachedWeather(weatherResponseDto, Instant.now()));
+
+        long hits = renderedViewCache.getHits();
+        String page = mockMvc.perform(get("/view/{city}", "Oslo"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Vary", containsString("Accept-Encoding")))
+        .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertEquals(hits, renderedViewCache.getHits());
+
+        byte[] body = mockMvc.perform(get("/view/{city}", "Oslo").header("Accept-Encoding", "gzip"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Encoding", "gzip"))
+        .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(hits + 1, renderedViewCache.getHits());
+        assertEquals(page, new String(new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testShowWeather_ShouldLinkFingerprintedIcon_ServedAsImmutable() throws Exception{
+        WeatherResponseDto weatherResponseDto = createSampleWeatherResponseDto("Rome", 21.0, "clear sky", "01d");
+        weatherResponseDto.setIconFileName("01d@2x.png");
+        when(weatherService.getCachedWeather(anyString()))
+        .thenReturn(new CachedWeather(weatherResponseDto, Instant.now()));
+
+        String page = mockMvc.perform(get("/view/{city}", "Rome"))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        Matcher icon = Pattern.compile("/images/01d@2x-[0-9a-f]{32}\\.png").matcher(page);
+        assertTrue(icon.find(), page);
+
+        mockMvc.perform(get(icon.group()))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"));
+        // The plain URL serves whatever the file holds now, so it must not be cached as immutable.
+        mockMvc.perform(get("/images/01d@2x.png"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Cache-Control", "max-age=3600, public"));
+    }
 }
@@ -0,0 +1,86 @@
+package com.onlyweather.OnlyWeather.controller;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.onlyweather.OnlyWeather.dto.MainInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.exception.CityNotFoundException;
+import com.onlyweather.OnlyWeather.exception.GlobalExceptionHandler;
+import com.onlyweather.OnlyWeather.history.ObservationStore;
+import com.onlyweather.OnlyWeather.metrics.WeatherMetrics;
+import com.onlyweather.OnlyWeather.service.WeatherService;
+
+public class WeatherHistoryControllerTest {
+
+    private final WeatherService weatherService = mock(WeatherService.class);
+    private final ObservationStore observationStore = new ObservationStore(10, 100, 10, Duration.ofHours(1), Clock.systemUTC());
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new WeatherHistoryController(weatherService, observationStore))
+        .setControllerAdvice(new GlobalExceptionHandler(mock(WeatherMetrics.class)))
+        .build();
+
+    private void observe(long secondsAgo, double temp){
+        observationStore.record("london", new WeatherResponseDto(new MainInfoDto(temp),
+            List.of(new WeatherInfoDto("clear sky", "01d")), "London", null, Instant.now().getEpochSecond() - secondsAgo, null));
+    }
+
+    @Test
+    public void testGetHistory_ShouldReturnStepsOfTheWindow() throws Exception{
+        when(weatherService.cacheKey(anyString())).thenReturn("london");
+        observe(3 * 3600, 5.0);
+        observe(60, 7.0);
+        observe(0, 9.0);
+
+        mockMvc.perform(get("/{city}/history", "london").param("hours", "6").param("stepMinutes", "30"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.city").value("London"))
+        .andExpect(jsonPath("$.step").value(1800))
+        .andExpect(jsonPath("$.buckets.length()").value(12))
+        .andExpect(jsonPath("$.count").value(3))
+        .andExpect(jsonPath("$.min").value(5.0))
+        .andExpect(jsonPath("$.max").value(9.0))
+        .andExpect(jsonPath("$.avg").value(7.0));
+    }
+
+    @Test
+    public void testGetHistory_WhenNothingWasObserved_ShouldReturnEmptySteps() throws Exception{
+        when(weatherService.cacheKey(anyString())).thenReturn("oslo");
+
+        mockMvc.perform(get("/{city}/history", "Oslo"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.city").value("Oslo"))
+        .andExpect(jsonPath("$.count").value(0))
+        .andExpect(jsonPath("$.avg").doesNotExist())
+        .andExpect(jsonPath("$.buckets.length()").value(24));
+    }
+
+    @Test
+    public void testGetHistory_WhenWindowOutOfRange_ShouldReturnBadRequest() throws Exception{
+        mockMvc.perform(get("/{city}/history", "London").param("hours", "0"))
+        .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/{city}/history", "London").param("hours", "744").param("stepMinutes", "1"))
+        .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testGetHistory_WhenCityUnknown_ShouldReturnNotFound() throws Exception{
+        when(weatherService.cacheKey(anyString())).thenThrow(new CityNotFoundException("City not found: Atlantis"));
+
+        mockMvc.perform(get("/{city}/history", "Atlantis"))
+        .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,153 @@
+package com.onlyweather.OnlyWeather.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlyweather.OnlyWeather.cache.CachedWeather;
+import com.onlyweather.OnlyWeather.cache.WeatherCache;
+import com.onlyweather.OnlyWeather.cache.WeatherResponseEncoder;
+import com.onlyweather.OnlyWeather.dto.MainInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.exception.GlobalExceptionHandler;
+import com.onlyweather.OnlyWeather.metrics.WeatherMetrics;
+import com.onlyweather.OnlyWeather.service.WeatherService;
+import com.onlyweather.OnlyWeather.service.WeatherStreamHub;
+import com.onlyweather.OnlyWeather.upstream.UpstreamPriority;
+
+// Runs the stream hub for real behind a standalone MockMvc; sends happen on the calling thread,
+// so every event is in the response as soon as the call that produced it returns.
+public class WeatherStreamControllerTest {
+
+    private final WeatherService weatherService = mock(WeatherService.class);
+    private final WeatherResponseEncoder weatherResponseEncoder = new WeatherResponseEncoder(new ObjectMapper(), false);
+    private final AtomicReference<CachedWeather> london = new AtomicReference<>();
+
+    private static CachedWeather weather(double temp){
+        WeatherResponseDto weatherResponseDto = new WeatherResponseDto();
+        weatherResponseDto.setMain(new MainInfoDto(temp));
+        weatherResponseDto.setWeather(Collections.singletonList(new WeatherInfoDto("clear sky", "01d")));
+        weatherResponseDto.setName("London");
+        return new CachedWeather(weatherResponseDto, Instant.now());
+    }
+
+    private static int events(MvcResult result) throws Exception{
+        return result.getResponse().getContentAsString().split("event:weather", -1).length - 1;
+    }
+
+    private MockMvc mockMvc(WeatherStreamHub hub){
+        return MockMvcBuilders.standaloneSetup(new WeatherStreamController(hub))
+            .setControllerAdvice(new GlobalExceptionHandler(mock(WeatherMetrics.class)))
+            .build();
+    }
+
+    private WeatherStreamHub hub(Executor senderExecutor, int bufferSize, int maxSubscribers){
+        return new WeatherStreamHub(weatherService, weatherResponseEncoder, Runnable::run, senderExecutor, bufferSize,
+            Duration.ofMinutes(5), maxSubscribers);
+    }
+
+    @BeforeEach
+    public void setUp(){
+        when(weatherService.cacheKey(anyString())).thenAnswer(invocation -> WeatherCache.normalize(invocation.getArgument(0)));
+        when(weatherService.getCachedWeather("london")).thenAnswer(invocation -> london.get());
+        when(weatherService.getCachedWeather("london", UpstreamPriority.BACKGROUND)).thenAnswer(invocation -> london.get());
+        london.set(weather(5.0));
+    }
+
+    @Test
+    public void streamWeather_ShouldSendCurrentWeather_ThenOnlyChanges() throws Exception{
+        WeatherStreamHub hub = hub(Runnable::run, 8, 100);
+
+        MvcResult result = mockMvc(hub).perform(get("/stream/London")).andExpect(request().asyncStarted()).andReturn();
+        assertEquals(1, events(result));
+        assertEquals(true, result.getResponse().getContentAsString().contains("data:{\"main\":{\"temp\":5.0}"));
+
+        hub.refreshAll();
+        london.set(weather(5.0));
+        hub.refreshAll();
+        assertEquals(1, events(result));
+
+        london.set(weather(7.5));
+        hub.refreshAll();
+        assertEquals(2, events(result));
+        assertEquals(true, result.getResponse().getContentAsString().contains("\"temp\":7.5"));
+
+        hub.sendHeartbeats();
+        assertEquals(true, result.getResponse().getContentAsString().endsWith(":\n\n"));
+    }
+
+    @Test
+    public void streamWeather_ShouldPollEachCityOnce_WhateverTheNumberOfSubscribers() throws Exception{
+        WeatherStreamHub hub = hub(Runnable::run, 8, 100);
+        MockMvc mockMvc = mockMvc(hub);
+
+        MvcResult first = mockMvc.perform(get("/stream/London")).andReturn();
+        MvcResult second = mockMvc.perform(get("/stream/ LONDON ")).andReturn();
+        london.set(weather(9.0));
+        hub.refreshAll();
+
+        assertEquals(2, hub.subscriberCount());
+        assertEquals(1, hub.cityCount());
+        // Once per subscribe, once for the refresh, which doesn't go ahead of user requests for the upstream budget.
+        verify(weatherService, times(2)).getCachedWeather("london");
+        verify(weatherService, times(1)).getCachedWeather("london", UpstreamPriority.BACKGROUND);
+        assertEquals(2, events(first));
+        assertEquals(2, events(second));
+    }
+
+    @Test
+    public void streamWeather_ShouldSkipTheFirstEvent_WhenTheClientAlreadyHasIt() throws Exception{
+        WeatherStreamHub hub = hub(Runnable::run, 8, 100);
+        MockMvc mockMvc = mockMvc(hub);
+        String etag = weatherResponseEncoder.encode(london.get()).getEtag();
+
+        MvcResult result = mockMvc.perform(get("/stream/London").header("Last-Event-ID", etag)).andReturn();
+
+        assertEquals(0, events(result));
+    }
+
+    @Test
+    public void streamWeather_ShouldDisconnectClients_ThatDontKeepUp() throws Exception{
+        // Senders that never run: the client's buffer fills up as if its connection had stalled.
+        WeatherStreamHub hub = hub(task -> { }, 2, 100);
+
+        mockMvc(hub).perform(get("/stream/London")).andExpect(request().asyncStarted());
+        hub.sendHeartbeats();
+        assertEquals(1, hub.subscriberCount());
+        hub.sendHeartbeats();
+
+        assertEquals(0, hub.subscriberCount());
+        assertEquals(0, hub.cityCount());
+    }
+
+    @Test
+    public void streamWeather_ShouldAnswer503_WhenTooManyStreamsAreOpen() throws Exception{
+        WeatherStreamHub hub = hub(Runnable::run, 8, 1);
+        MockMvc mockMvc = mockMvc(hub);
+
+        mockMvc.perform(get("/stream/London")).andExpect(request().asyncStarted());
+        mockMvc.perform(get("/stream/London")).andExpect(status().isServiceUnavailable());
+
+        assertEquals(1, hub.subscriberCount());
+    }
+}
@@ -0,0 +1,43 @@
+package com.onlyweather.OnlyWeather.enums;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class WeatherIconsTest {
+
+    // All icon codes from https://openweathermap.org/weather-conditions
+    @ParameterizedTest
+    @ValueSource(strings = {"01d", "01n", "02d", "02n", "03d", "03n", "04d", "04n", "09d", "09n",
+        "10d", "10n", "11d", "11n", "13d", "13n", "50d", "50n"})
+    public void findByApiIconCode_ShouldResolveEveryDocumentedCode_ToItsOwnImage(String code){
+        WeatherIcons icon = WeatherIcons.findByApiIconCode(code);
+
+        assertEquals(code, icon.getApiIconCode());
+        assertEquals(code + "@2x.png", icon.getIconFileName());
+        assertNotNull(getClass().getResource("/static/images/" + icon.getIconFileName()), "missing image for " + code);
+    }
+
+    @Test
+    public void findByApiIconCode_ShouldTellRainFromClearSky(){
+        assertSame(WeatherIcons.CLEAR_SKY, WeatherIcons.findByApiIconCode("01d"));
+        assertSame(WeatherIcons.RAIN, WeatherIcons.findByApiIconCode("10d"));
+    }
+
+    @Test
+    public void findByApiIconCode_ShouldIgnoreCase(){
+        assertSame(WeatherIcons.MIST_NIGHT, WeatherIcons.findByApiIconCode("50N"));
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {"99d", "01x", "1d", "001d", "ab1"})
+    public void findByApiIconCode_ShouldFallBackToDefault_ForUnknownCodes(String code){
+        assertSame(WeatherIcons.DEFAULT, WeatherIcons.findByApiIconCode(code));
+    }
+}
@@ -0,0 +1,112 @@
+package com.onlyweather.OnlyWeather.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.onlyweather.OnlyWeather.dto.HistoryBucketDto;
+import com.onlyweather.OnlyWeather.dto.MainInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherHistoryDto;
+import com.onlyweather.OnlyWeather.dto.WeatherInfoDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+
+public class ObservationStoreTest {
+
+    // A whole hour in epoch seconds, so hourly steps start at it.
+    private static final long HOUR = 1709298000L;
+
+    private static WeatherResponseDto observation(String city, long observedAt, double temp, String icon){
+        return new WeatherResponseDto(new MainInfoDto(temp), List.of(new WeatherInfoDto("", icon)), city, null, observedAt, null);
+    }
+
+    @Test
+    public void history_ShouldAggregateMinMaxAvgPerStep(){
+        ObservationStore store = new ObservationStore(10, 100, 10, Duration.ofHours(1), Clock.systemUTC());
+        store.record("london", observation("London", HOUR + 600, 4.0, "01n"));
+        store.record("london", observation("London", HOUR + 1200, 6.0, "02n"));
+        store.record("london", observation("London", HOUR + 3600 + 600, 9.0, "10d"));
+        store.record("paris", observation("Paris", HOUR + 600, 20.0, "01d"));
+
+        WeatherHistoryDto history = store.history("london", HOUR, HOUR + 3 * 3600, 3600);
+
+        assertEquals("London", history.getCity());
+        assertEquals(3, history.getCount());
+        assertEquals(4.0, history.getMin());
+        assertEquals(9.0, history.getMax());
+        assertEquals(19.0 / 3, history.getAvg(), 1e-9);
+        List<HistoryBucketDto> buckets = history.getBuckets();
+        assertEquals(3, buckets.size());
+        assertEquals(HOUR, buckets.get(0).getFrom());
+        assertEquals(4.0, buckets.get(0).getMin());
+        assertEquals(6.0, buckets.get(0).getMax());
+        assertEquals(5.0, buckets.get(0).getAvg());
+        assertEquals(2, buckets.get(0).getCount());
+        assertEquals("02n", buckets.get(0).getIcon());
+        assertEquals("10d", buckets.get(1).getIcon());
+        assertEquals(0, buckets.get(2).getCount());
+        assertNull(buckets.get(2).getAvg());
+    }
+
+    @Test
+    public void record_ShouldIgnoreTheSameObservationFetchedAgain(){
+        ObservationStore store = new ObservationStore(10, 100, 10, Duration.ofHours(1), Clock.systemUTC());
+        store.record("london", observation("London", HOUR + 600, 4.0, "01n"));
+        store.record("london", observation("London", HOUR + 600, 4.0, "01n"));
+        store.record("london", observation("London", HOUR + 300, 3.0, "01n"));
+
+        assertEquals(1, store.history("london", HOUR, HOUR + 3600, 3600).getCount());
+    }
+
+    // Points pushed out of the raw ring are kept as downsampled buckets, so the window still covers them.
+    @Test
+    public void record_ShouldDownsamplePointsThatNoLongerFitTheRawRing(){
+        ObservationStore store = new ObservationStore(10, 4, 10, Duration.ofHours(1), Clock.systemUTC());
+        for (int i = 0; i < 12; i++) {
+            // Every 20 minutes, so three points per hour; temperatures 0..11.
+            store.record("london", observation("London", HOUR + i * 1200L, i, "01d"));
+        }
+
+        WeatherHistoryDto history = store.history("london", HOUR, HOUR + 4 * 3600, 3600);
+
+        assertEquals(12, history.getCount());
+        assertEquals(0.0, history.getMin());
+        assertEquals(11.0, history.getMax());
+        assertEquals(5.5, history.getAvg(), 1e-9);
+        for (int hour = 0; hour < 4; hour++) {
+            HistoryBucketDto bucket = history.getBuckets().get(hour);
+            assertEquals(3, bucket.getCount());
+            assertEquals(hour * 3.0, bucket.getMin());
+            assertEquals(hour * 3.0 + 2, bucket.getMax());
+        }
+    }
+
+    @Test
+    public void record_WhenAllSlotsAreTaken_ShouldDropTheCityObservedLongestAgo(){
+        ObservationStore store = new ObservationStore(2, 10, 0, Duration.ofHours(1), Clock.systemUTC());
+        store.record("london", observation("London", HOUR + 100, 4.0, "01d"));
+        store.record("paris", observation("Paris", HOUR + 200, 20.0, "01d"));
+        store.record("rome", observation("Rome", HOUR + 300, 25.0, "01d"));
+
+        assertEquals(2, store.getCities());
+        assertEquals(0, store.history("london", HOUR, HOUR + 3600, 3600).getCount());
+        assertEquals(1, store.history("paris", HOUR, HOUR + 3600, 3600).getCount());
+        assertEquals(1, store.history("rome", HOUR, HOUR + 3600, 3600).getCount());
+    }
+
+    @Test
+    public void getMemoryBytes_ShouldBeFixedByTheConfiguredSizes(){
+        ObservationStore store = new ObservationStore(1000, 288, 336, Duration.ofHours(1), Clock.systemUTC());
+        long before = store.getMemoryBytes();
+        for (int i = 0; i < 2000; i++) {
+            store.record("city" + i, observation("City", HOUR + i, i, "01d"));
+        }
+
+        assertEquals(before, store.getMemoryBytes());
+        assertEquals(1000 * (288 * 9 + 336 * 21 + 32L), before);
+    }
+}
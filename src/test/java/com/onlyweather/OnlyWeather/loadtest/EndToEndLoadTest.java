@@ -0,0 +1,70 @@
+package com.onlyweather.OnlyWeather.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.onlyweather.OnlyWeather.OnlyWeatherApplication;
+
+// Drives the whole application against a local OpenWeatherMap stand-in at a fixed request rate and
+// reports throughput, p50/p95/p99 latency and how many calls reached the upstream.
+// Run with: mvn test -Ploadtest -Dtest=EndToEndLoadTest
+// Tune with -Dloadtest.rps, -Dloadtest.seconds, -Dloadtest.cities, -Dloadtest.zipf,
+// -Dloadtest.upstream-latency-ms and -Dloadtest.upstream-error-rate.
+@Tag("load")
+public class EndToEndLoadTest {
+
+    private static final int TARGET_RPS = Integer.getInteger("loadtest.rps", 100);
+    private static final Duration WARM_UP = Duration.ofSeconds(2);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(Integer.getInteger("loadtest.seconds", 10));
+    private static final int CITIES = Integer.getInteger("loadtest.cities", 500);
+    private static final double ZIPF_EXPONENT = Double.parseDouble(System.getProperty("loadtest.zipf", "1.0"));
+    private static final Duration UPSTREAM_LATENCY = Duration.ofMillis(Integer.getInteger("loadtest.upstream-latency-ms", 50));
+    private static final double UPSTREAM_ERROR_RATE = Double.parseDouble(System.getProperty("loadtest.upstream-error-rate", "0.01"));
+
+    private static FakeOpenWeatherMapServer upstream;
+    private static ConfigurableApplicationContext context;
+    private static String baseUrl;
+
+    @BeforeAll
+    static void start() throws Exception{
+        upstream = new FakeOpenWeatherMapServer().withLatency(UPSTREAM_LATENCY).withErrorRate(UPSTREAM_ERROR_RATE);
+        // Passed as command line arguments so they win over application.properties.
+        context = new SpringApplicationBuilder(OnlyWeatherApplication.class)
+            .run("--server.port=0",
+                "--openweathermap.api.url=" + upstream.weatherUrl());
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    @AfterAll
+    static void stop(){
+        context.close();
+        upstream.close();
+    }
+
+    @Test
+    public void mixedTraffic_ShouldBeServedMostlyFromCache() throws Exception{
+        ZipfianCities cities = new ZipfianCities(CITIES, ZIPF_EXPONENT);
+        LoadDriver driver = new LoadDriver(baseUrl, cities).withTargetRps(TARGET_RPS);
+        driver.run(WARM_UP, upstream);
+
+        LoadReport report = driver.run(MEASUREMENT, upstream);
+        report.print(String.format("%d req/s target, %d Zipf(%.1f) cities, upstream latency %d ms, error rate %.0f%%",
+            TARGET_RPS, CITIES, ZIPF_EXPONENT, UPSTREAM_LATENCY.toMillis(), UPSTREAM_ERROR_RATE * 100));
+
+        assertEquals(0, report.getTransportErrors());
+        // Unknown cities must surface as 404, not as a server error.
+        assertEquals(0, report.getStatusCount("error", 500));
+        // Hot cities are cached, so only a fraction of the requests should reach the upstream.
+        assertTrue(report.getUpstreamCalls() < report.getRequests() / 2,
+            "expected the cache to absorb most requests, upstream calls: " + report.getUpstreamCalls());
+    }
+}
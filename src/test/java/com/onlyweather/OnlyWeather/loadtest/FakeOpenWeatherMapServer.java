@@ -0,0 +1,160 @@
+package com.onlyweather.OnlyWeather.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Local stand-in for the OpenWeatherMap current weather endpoint, so load tests never touch the real API.
+// Every request sleeps for the configured latency; a share of requests can fail with 500,
+// and cities whose name starts with "nowhere" are answered with 404 like the real API does.
+// The group endpoint answers every requested ID with a city named "city-<id>".
+public class FakeOpenWeatherMapServer implements AutoCloseable {
+
+    private static final String[] ICONS = {"01d", "02d", "03n", "04d", "09n", "10d", "11d", "13n", "50d"};
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder groupCalls = new LongAdder();
+    private volatile Duration latency = Duration.ZERO;
+    private volatile double errorRate;
+
+    public FakeOpenWeatherMapServer() throws IOException{
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.createContext("/data/2.5/weather", this::handleWeather);
+        server.createContext("/data/2.5/group", this::handleGroup);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public FakeOpenWeatherMapServer withLatency(Duration latency){
+        this.latency = latency;
+        return this;
+    }
+
+    public FakeOpenWeatherMapServer withErrorRate(double errorRate){
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public String weatherUrl(){
+        return "http://localhost:" + server.getAddress().getPort() + "/data/2.5/weather";
+    }
+
+    public long getCalls(){
+        return calls.sum();
+    }
+
+    // Group calls are counted in getCalls() as well.
+    public long getGroupCalls(){
+        return groupCalls.sum();
+    }
+
+    public void resetCalls(){
+        calls.reset();
+        groupCalls.reset();
+    }
+
+    private void handleWeather(HttpExchange exchange) throws IOException{
+        calls.increment();
+        pause();
+        String city = queryParam(exchange.getRequestURI(), "q");
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            respond(exchange, 500, "{\"cod\":500,\"message\":\"Internal error\"}");
+        } else if (city == null || city.toLowerCase(Locale.ROOT).startsWith("nowhere")) {
+            respond(exchange, 404, "{\"cod\":\"404\",\"message\":\"city not found\"}");
+        } else {
+            respond(exchange, 200, weatherJson(city));
+        }
+    }
+
+    private void handleGroup(HttpExchange exchange) throws IOException{
+        calls.increment();
+        groupCalls.increment();
+        pause();
+        String ids = queryParam(exchange.getRequestURI(), "id");
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            respond(exchange, 500, "{\"cod\":500,\"message\":\"Internal error\"}");
+        } else if (ids == null) {
+            respond(exchange, 400, "{\"cod\":\"400\",\"message\":\"Nothing to geocode\"}");
+        } else {
+            StringBuilder list = new StringBuilder();
+            String[] cityIds = ids.split(",");
+            for (String cityId : cityIds) {
+                list.append(list.isEmpty() ? "" : ",").append(weatherJson("city-" + cityId, Integer.parseInt(cityId)));
+            }
+            respond(exchange, 200, "{\"cnt\":" + cityIds.length + ",\"list\":[" + list + "]}");
+        }
+    }
+
+    // Mirrors the shape of a real response, including the fields OnlyWeather ignores.
+    public static String weatherJson(String city){
+        return weatherJson(city, Math.abs(city.hashCode()) % 9_000_000);
+    }
+
+    public static String weatherJson(String city, int cityId){
+        int hash = Math.abs(city.hashCode());
+        String icon = ICONS[hash % ICONS.length];
+        double temp = (hash % 400) / 10.0 - 10;
+        return "{\"coord\":{\"lon\":-0.1257,\"lat\":51.5085},"
+            + "\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"clear sky\",\"icon\":\"" + icon + "\"}],"
+            + "\"base\":\"stations\","
+            + "\"main\":{\"temp\":" + temp + ",\"feels_like\":" + (temp - 1) + ",\"temp_min\":" + (temp - 2) + ",\"temp_max\":" + (temp + 2) + ",\"pressure\":1012,\"humidity\":81},"
+            + "\"visibility\":10000,\"wind\":{\"speed\":4.12,\"deg\":240},\"clouds\":{\"all\":0},"
+            + "\"dt\":" + (System.currentTimeMillis() / 1000) + ","
+            + "\"sys\":{\"type\":2,\"id\":2075535,\"country\":\"GB\",\"sunrise\":1709275683,\"sunset\":1709315589},"
+            + "\"timezone\":0,\"id\":" + cityId + ",\"name\":\"" + city + "\",\"cod\":200}";
+    }
+
+    private void pause(){
+        if (latency.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String queryParam(URI uri, String name){
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0 && pair.substring(0, separator).equals(name)) {
+                return URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException{
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    @Override
+    public void close(){
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,107 @@
+package com.onlyweather.OnlyWeather.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Open-loop load generator: starts requests at a fixed rate no matter how slow the responses are,
+// and measures each latency from the moment the request was due. A slow server therefore shows up
+// as high percentiles instead of quietly lowering the request rate (coordinated omission).
+//
+// Each request is one of three scenarios, picked by weight:
+//   json  - GET /{city}
+//   view  - GET /view/{city}
+//   error - GET /nowhere-N, a city the fake upstream answers with 404
+public class LoadDriver {
+
+    private final String baseUrl;
+    private final ZipfianCities cities;
+    private int targetRps = 100;
+    private int jsonWeight = 80;
+    private int viewWeight = 15;
+    private int errorWeight = 5;
+    private Duration requestTimeout = Duration.ofSeconds(10);
+
+    public LoadDriver(String baseUrl, ZipfianCities cities){
+        this.baseUrl = baseUrl;
+        this.cities = cities;
+    }
+
+    public LoadDriver withTargetRps(int targetRps){
+        this.targetRps = targetRps;
+        return this;
+    }
+
+    public LoadDriver withMix(int jsonWeight, int viewWeight, int errorWeight){
+        this.jsonWeight = jsonWeight;
+        this.viewWeight = viewWeight;
+        this.errorWeight = errorWeight;
+        return this;
+    }
+
+    public LoadDriver withRequestTimeout(Duration requestTimeout){
+        this.requestTimeout = requestTimeout;
+        return this;
+    }
+
+    public LoadReport run(Duration duration, FakeOpenWeatherMapServer upstream) throws InterruptedException{
+        LoadReport report = new LoadReport();
+        AtomicLong errorCities = new AtomicLong();
+        long upstreamCallsBefore = upstream.getCalls();
+        long intervalNanos = 1_000_000_000L / targetRps;
+        long requests = duration.toNanos() / intervalNanos;
+        long start = System.nanoTime();
+
+        // Closing the executor waits for all in-flight requests, and must happen before the HttpClient is closed.
+        try (HttpClient httpClient = HttpClient.newBuilder().connectTimeout(requestTimeout).build();
+             ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < requests; i++) {
+                long due = start + i * intervalNanos;
+                LockSupport.parkNanos(due - System.nanoTime());
+                senders.execute(() -> send(httpClient, report, due, errorCities));
+            }
+        }
+        report.finish(Duration.ofNanos(System.nanoTime() - start), upstream.getCalls() - upstreamCallsBefore);
+        return report;
+    }
+
+    private void send(HttpClient httpClient, LoadReport report, long due, AtomicLong errorCities){
+        int pick = ThreadLocalRandom.current().nextInt(jsonWeight + viewWeight + errorWeight);
+        String scenario;
+        String path;
+        if (pick < jsonWeight) {
+            scenario = "json";
+            path = "/" + encode(cities.next());
+        } else if (pick < jsonWeight + viewWeight) {
+            scenario = "view";
+            path = "/view/" + encode(cities.next());
+        } else {
+            scenario = "error";
+            path = "/nowhere-" + errorCities.incrementAndGet();
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(requestTimeout).build();
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            report.record(scenario, response.statusCode(), System.nanoTime() - due);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.recordTransportError();
+        } catch (Exception e) {
+            report.recordTransportError();
+        }
+    }
+
+    private static String encode(String city){
+        return URLEncoder.encode(city, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
@@ -0,0 +1,111 @@
+package com.onlyweather.OnlyWeather.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+
+// Collects latencies and status codes per scenario while a load test runs and prints a summary.
+public class LoadReport {
+
+    private final Map<String, ScenarioStats> scenarios = new ConcurrentHashMap<>();
+    private final LongAdder transportErrors = new LongAdder();
+    @Getter
+    private Duration elapsed = Duration.ZERO;
+    @Getter
+    private long upstreamCalls;
+
+    public void record(String scenario, int status, long latencyNanos){
+        scenarios.computeIfAbsent(scenario, name -> new ScenarioStats()).record(status, latencyNanos);
+    }
+
+    public void recordTransportError(){
+        transportErrors.increment();
+    }
+
+    void finish(Duration elapsed, long upstreamCalls){
+        this.elapsed = elapsed;
+        this.upstreamCalls = upstreamCalls;
+    }
+
+    public long getRequests(){
+        return scenarios.values().stream().mapToLong(ScenarioStats::count).sum();
+    }
+
+    public long getTransportErrors(){
+        return transportErrors.sum();
+    }
+
+    public long getStatusCount(String scenario, int status){
+        ScenarioStats stats = scenarios.get(scenario);
+        return stats == null ? 0 : stats.statuses.getOrDefault(status, new LongAdder()).sum();
+    }
+
+    public double getThroughput(){
+        return elapsed.isZero() ? 0 : getRequests() / (elapsed.toNanos() / 1e9);
+    }
+
+    // Latency in milliseconds at the given percentile (0-100) across all scenarios.
+    public double percentile(double percentile){
+        return percentile(allLatencies(), percentile);
+    }
+
+    public void print(String title){
+        System.out.printf("%n%s%n", title);
+        System.out.printf("  requests %d in %.1f s = %.1f req/s, transport errors %d, upstream calls %d%n",
+            getRequests(), elapsed.toNanos() / 1e9, getThroughput(), getTransportErrors(), upstreamCalls);
+        System.out.printf("  %-12s %8s %9s %9s %9s  %s%n", "scenario", "count", "p50 ms", "p95 ms", "p99 ms", "statuses");
+        new TreeMap<>(scenarios).forEach((name, stats) -> {
+            long[] latencies = stats.sortedLatencies();
+            System.out.printf("  %-12s %8d %9.2f %9.2f %9.2f  %s%n", name, latencies.length,
+                percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99), stats.statusSummary());
+        });
+        long[] all = allLatencies();
+        System.out.printf("  %-12s %8d %9.2f %9.2f %9.2f%n", "all", all.length,
+            percentile(all, 50), percentile(all, 95), percentile(all, 99));
+    }
+
+    private long[] allLatencies(){
+        return scenarios.values().stream()
+            .flatMapToLong(stats -> Arrays.stream(stats.sortedLatencies()))
+            .sorted()
+            .toArray();
+    }
+
+    private static double percentile(long[] sortedLatencies, double percentile){
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))] / 1e6;
+    }
+
+    private static class ScenarioStats {
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        void record(int status, long latencyNanos){
+            latencies.add(latencyNanos);
+            statuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+        }
+
+        long count(){
+            return latencies.size();
+        }
+
+        long[] sortedLatencies(){
+            return latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+
+        String statusSummary(){
+            StringBuilder summary = new StringBuilder();
+            new TreeMap<>(statuses).forEach((status, count) -> summary.append(status).append('=').append(count.sum()).append(' '));
+            return summary.toString().trim();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.onlyweather.OnlyWeather.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.onlyweather.OnlyWeather.OnlyWeatherApplication;
+
+// Compares the blocking /{city} endpoint with the non-blocking /reactive/{city} endpoint on the same
+// app (platform threads, small Tomcat pool) while every request waits on a slow upstream.
+// Run with: mvn test -Ploadtest -Dtest=ReactiveVsBlockingLoadTest
+@Tag("load")
+public class ReactiveVsBlockingLoadTest {
+
+    private static final Duration UPSTREAM_LATENCY = Duration.ofMillis(200);
+    private static final int CLIENTS = 200;
+    private static final int TOMCAT_THREADS = 20;
+    private static final Duration WARM_UP = Duration.ofSeconds(2);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(8);
+
+    private static FakeOpenWeatherMapServer upstream;
+    private static ConfigurableApplicationContext context;
+    private static String baseUrl;
+
+    @BeforeAll
+    static void start() throws Exception{
+        upstream = new FakeOpenWeatherMapServer().withLatency(UPSTREAM_LATENCY);
+        // Passed as command line arguments so they win over application.properties.
+        context = new SpringApplicationBuilder(OnlyWeatherApplication.class)
+            .run("--server.port=0",
+                "--openweathermap.api.url=" + upstream.weatherUrl(),
+                "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+                "--weather.upstream.max-concurrency=" + CLIENTS,
+                "--weather.http.max-connections=" + CLIENTS,
+                "--weather.http.max-connections-per-route=" + CLIENTS);
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    @AfterAll
+    static void stop(){
+        context.close();
+        upstream.close();
+    }
+
+    @Test
+    public void reactiveEndpoint_ShouldNotBeLimitedByTomcatThreads() throws Exception{
+        drive(baseUrl + "/warmup-", WARM_UP);
+        long blocking = drive(baseUrl + "/blocking-", MEASUREMENT);
+        int blockingThreads = Thread.activeCount();
+        drive(baseUrl + "/reactive/warmup-", WARM_UP);
+        long reactive = drive(baseUrl + "/reactive/reactive-", MEASUREMENT);
+        int reactiveThreads = Thread.activeCount();
+
+        double seconds = MEASUREMENT.toMillis() / 1000.0;
+        System.out.printf("%nUpstream latency %d ms, %d concurrent clients, Tomcat max threads %d%n",
+            UPSTREAM_LATENCY.toMillis(), CLIENTS, TOMCAT_THREADS);
+        System.out.printf("  blocking /{city}:          %8.1f req/s (%d JVM threads)%n", blocking / seconds, blockingThreads);
+        System.out.printf("  reactive /reactive/{city}: %8.1f req/s (%d JVM threads)%n", reactive / seconds, reactiveThreads);
+
+        assertTrue(reactive > blocking, "the reactive endpoint should not be slower than the blocking one");
+    }
+
+    // Keeps CLIENTS requests in flight for the given time, each asking for a different city (always a cache miss).
+    private static long drive(String urlPrefix, Duration duration) throws InterruptedException{
+        AtomicLong cityCounter = new AtomicLong();
+        LongAdder completed = new LongAdder();
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        // Closing the executor waits for all clients to finish, and must happen before the HttpClient is closed.
+        try (HttpClient httpClient = HttpClient.newHttpClient();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.execute(() -> {
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(urlPrefix + cityCounter.incrementAndGet())).build();
+                        try {
+                            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() == 200) {
+                                completed.increment();
+                            }
+                        } catch (Exception e) {
+                            // Count only successful requests.
+                        }
+                    }
+                });
+            }
+        }
+        return completed.sum();
+    }
+}
@@ -0,0 +1,135 @@
+package com.onlyweather.OnlyWeather.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+// Time from launching the process to the first successful GET /{city}, for the plain jar and for what the
+// fast-startup and native profiles build. Modes whose artifacts are missing are skipped. Run with:
+//   mvn package -DskipTests && cp target/OnlyWeather-0.0.1-SNAPSHOT.jar target/baseline.jar
+//   mvn package -Pfast-startup -DskipTests
+//   mvn test -Ploadtest -Dtest=StartupTimeTest
+// Override the artifacts with -Dstartup.baseline-jar, -Dstartup.aot-jar, -Dstartup.cds-archive and
+// -Dstartup.native-binary (the native one is only there after mvn -Pnative native:compile).
+@Tag("load")
+public class StartupTimeTest {
+
+    private static final int RUNS = 3;
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    private static final String JAVA = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    private static final Path BASELINE_JAR = Path.of(System.getProperty("startup.baseline-jar", "target/baseline.jar"));
+    private static final Path AOT_JAR = Path.of(System.getProperty("startup.aot-jar", "target/OnlyWeather-0.0.1-SNAPSHOT.jar"));
+    private static final Path CDS_ARCHIVE = Path.of(System.getProperty("startup.cds-archive", "target/OnlyWeather.jsa"));
+    private static final Path NATIVE_BINARY = Path.of(System.getProperty("startup.native-binary", "target/OnlyWeather"));
+
+    private static FakeOpenWeatherMapServer upstream;
+    private static HttpClient httpClient;
+
+    @BeforeAll
+    static void startUpstream() throws Exception{
+        upstream = new FakeOpenWeatherMapServer();
+        httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+    }
+
+    @AfterAll
+    static void stopUpstream(){
+        httpClient.close();
+        upstream.close();
+    }
+
+    @Test
+    public void fastStartup_ShouldServeTheFirstRequestSooner_ThanThePlainJar() throws Exception{
+        assumeTrue(Files.exists(BASELINE_JAR), BASELINE_JAR + " not found, see the comment on this class");
+
+        Map<String, List<String>> modes = new LinkedHashMap<>();
+        modes.put("jar", List.of(JAVA, "-jar", BASELINE_JAR.toString()));
+        if (Files.exists(AOT_JAR)) {
+            modes.put("aot", List.of(JAVA, "-Dspring.aot.enabled=true", "-jar", AOT_JAR.toString()));
+            if (Files.exists(CDS_ARCHIVE)) {
+                modes.put("aot+cds", List.of(JAVA, "-XX:SharedArchiveFile=" + CDS_ARCHIVE, "-Dspring.aot.enabled=true",
+                    "-jar", AOT_JAR.toString()));
+            }
+        }
+        if (Files.isExecutable(NATIVE_BINARY)) {
+            modes.put("native", List.of(NATIVE_BINARY.toString()));
+        }
+
+        Map<String, Long> medians = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> mode : modes.entrySet()) {
+            long[] millis = new long[RUNS];
+            for (int i = 0; i < RUNS; i++) {
+                millis[i] = timeToFirstRequest(mode.getValue());
+            }
+            Arrays.sort(millis);
+            medians.put(mode.getKey(), millis[RUNS / 2]);
+        }
+
+        System.out.printf("%nTime to first successful request, median of %d runs%n", RUNS);
+        medians.forEach((mode, millis) -> System.out.printf("  %-8s %6d ms%n", mode, millis));
+
+        if (medians.containsKey("aot+cds")) {
+            assertTrue(medians.get("aot+cds") < medians.get("jar"), "AOT + CDS should start faster than the plain jar");
+        }
+    }
+
+    private static long timeToFirstRequest(List<String> command) throws Exception{
+        int port = freePort();
+        List<String> arguments = new ArrayList<>(command);
+        arguments.add("--server.port=" + port);
+        arguments.add("--openweathermap.api.url=" + upstream.weatherUrl());
+        arguments.add("--openweathermap.api.key=startup-test");
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/London"))
+            .timeout(Duration.ofSeconds(5))
+            .build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(arguments).redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        try {
+            while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(String.join(" ", command) + " exited with " + process.exitValue());
+                }
+                try {
+                    if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return Duration.ofNanos(System.nanoTime() - start).toMillis();
+                    }
+                } catch (IOException e) {
+                    // Not listening yet.
+                }
+                Thread.sleep(5);
+            }
+            throw new IllegalStateException(String.join(" ", command) + " didn't answer within " + TIMEOUT);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static int freePort() throws IOException{
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
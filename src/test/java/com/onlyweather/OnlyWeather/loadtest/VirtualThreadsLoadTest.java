@@ -0,0 +1,107 @@
+package com.onlyweather.OnlyWeather.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.onlyweather.OnlyWeather.OnlyWeatherApplication;
+
+// Compares request throughput with Tomcat on platform threads vs. virtual threads while every
+// request waits on a slow upstream. Run with: mvn test -Ploadtest -Dtest=VirtualThreadsLoadTest
+@Tag("load")
+public class VirtualThreadsLoadTest {
+
+    private static final Duration UPSTREAM_LATENCY = Duration.ofMillis(200);
+    private static final int CLIENTS = 200;
+    private static final int TOMCAT_THREADS = 20;
+    private static final Duration WARM_UP = Duration.ofSeconds(2);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(8);
+
+    private static FakeOpenWeatherMapServer upstream;
+
+    @BeforeAll
+    static void startUpstream() throws Exception{
+        upstream = new FakeOpenWeatherMapServer().withLatency(UPSTREAM_LATENCY);
+    }
+
+    @AfterAll
+    static void stopUpstream(){
+        upstream.close();
+    }
+
+    @Test
+    public void virtualThreads_ShouldServeMoreRequestsPerSecond_ThanPlatformThreads() throws Exception{
+        double platform = measureThroughput(false);
+        double virtual = measureThroughput(true);
+
+        System.out.printf("%nUpstream latency %d ms, %d concurrent clients, Tomcat max threads %d%n",
+            UPSTREAM_LATENCY.toMillis(), CLIENTS, TOMCAT_THREADS);
+        System.out.printf("  platform threads: %8.1f req/s%n", platform);
+        System.out.printf("  virtual threads:  %8.1f req/s%n", virtual);
+
+        assertTrue(virtual > platform, "virtual threads should not be slower than platform threads");
+    }
+
+    private double measureThroughput(boolean virtualThreads) throws Exception{
+        // Passed as command line arguments so they win over application.properties.
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(OnlyWeatherApplication.class)
+            .run("--server.port=0",
+                "--openweathermap.api.url=" + upstream.weatherUrl(),
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+                "--weather.upstream.max-concurrency=" + CLIENTS,
+                "--weather.http.max-connections=" + CLIENTS,
+                "--weather.http.max-connections-per-route=" + CLIENTS);
+        try {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            drive(baseUrl, WARM_UP);
+            return drive(baseUrl, MEASUREMENT) / (MEASUREMENT.toMillis() / 1000.0);
+        } finally {
+            context.close();
+        }
+    }
+
+    // Keeps CLIENTS requests in flight for the given time. Every request asks for a different city,
+    // so each one is a cache miss that waits on the upstream.
+    private static long drive(String baseUrl, Duration duration) throws InterruptedException{
+        AtomicLong cityCounter = new AtomicLong();
+        LongAdder completed = new LongAdder();
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        // Closing the executor waits for all clients to finish, and must happen before the HttpClient is closed.
+        try (HttpClient httpClient = HttpClient.newHttpClient();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.execute(() -> {
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/city-" + cityCounter.incrementAndGet())).build();
+                        try {
+                            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() == 200) {
+                                completed.increment();
+                            }
+                        } catch (Exception e) {
+                            // Count only successful requests.
+                        }
+                    }
+                });
+            }
+        }
+        return completed.sum();
+    }
+}
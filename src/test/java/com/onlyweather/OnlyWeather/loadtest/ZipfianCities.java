@@ -0,0 +1,41 @@
+package com.onlyweather.OnlyWeather.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Picks city names with a Zipf distribution: city-1 is asked for most often, city-2 half as often
+// (with exponent 1), and so on. Real traffic looks like this - a few hot cities and a long tail.
+public class ZipfianCities {
+
+    private final double[] cumulative;
+
+    public ZipfianCities(int cities, double exponent){
+        if (cities < 1) {
+            throw new IllegalArgumentException("At least one city is required");
+        }
+        cumulative = new double[cities];
+        double sum = 0;
+        for (int rank = 1; rank <= cities; rank++) {
+            sum += 1 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = sum;
+        }
+        for (int i = 0; i < cities; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    public String next(){
+        return "city-" + nextRank();
+    }
+
+    // 1-based rank of the next city.
+    public int nextRank(){
+        int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        // binarySearch returns (-(insertion point) - 1) when the value isn't an exact match.
+        return (index >= 0 ? index : -index - 1) + 1;
+    }
+
+    public int size(){
+        return cumulative.length;
+    }
+}
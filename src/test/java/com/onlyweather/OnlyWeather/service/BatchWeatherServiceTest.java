@@ -0,0 +1,144 @@
+package com.onlyweather.OnlyWeather.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.onlyweather.OnlyWeather.cache.CachedWeather;
+import com.onlyweather.OnlyWeather.cache.WeatherCache;
+import com.onlyweather.OnlyWeather.dto.BatchWeatherEntryDto;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.exception.CityNotFoundException;
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+import com.onlyweather.OnlyWeather.upstream.UpstreamPriority;
+
+// Unit tests for the BatchWeatherService with a mocked WeatherService.
+@ExtendWith(MockitoExtension.class)
+public class BatchWeatherServiceTest {
+
+    @Mock
+    private WeatherService weatherService;
+
+    private ExecutorService executor;
+    private BatchWeatherService batchWeatherService;
+
+    @BeforeEach
+    void setUp(){
+        executor = Executors.newFixedThreadPool(4);
+        batchWeatherService = new BatchWeatherService(weatherService, executor, 3);
+        lenient().when(weatherService.cacheKey(anyString())).thenAnswer(invocation -> WeatherCache.normalize(invocation.getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown(){
+        executor.shutdownNow();
+    }
+
+    private static CachedWeather cached(String city){
+        WeatherResponseDto weatherResponseDto = new WeatherResponseDto();
+        weatherResponseDto.setName(city);
+        return new CachedWeather(weatherResponseDto, Instant.now());
+    }
+
+    @Test
+    public void getWeather_ShouldMixCacheHitsFetchesAndErrors_InRequestOrder(){
+        when(weatherService.getCachedWeatherIfPresentForKey(anyString())).thenReturn(null);
+        when(weatherService.getCachedWeatherIfPresentForKey("london")).thenReturn(cached("London"));
+        when(weatherService.getCachedWeatherForKey("paris", UpstreamPriority.BATCH)).thenReturn(cached("Paris"));
+        when(weatherService.getCachedWeatherForKey("atlantis", UpstreamPriority.BATCH)).thenThrow(new CityNotFoundException("City not found: Atlantis"));
+
+        List<BatchWeatherEntryDto> entries = batchWeatherService.getWeather(List.of("London", "Paris", "Atlantis"));
+
+        assertEquals("London", entries.get(0).getWeather().getName());
+        assertEquals(200, entries.get(0).getStatus());
+        assertEquals("Paris", entries.get(1).getWeather().getName());
+        assertEquals(404, entries.get(2).getStatus());
+        assertNull(entries.get(2).getWeather());
+        verify(weatherService, never()).getCachedWeatherForKey("london", UpstreamPriority.BATCH);
+    }
+
+    @Test
+    public void getWeather_ShouldLookUpDuplicateCitiesOnce(){
+        when(weatherService.getCachedWeatherIfPresentForKey(anyString())).thenReturn(null);
+        when(weatherService.getCachedWeatherForKey("london", UpstreamPriority.BATCH)).thenReturn(cached("London"));
+
+        List<BatchWeatherEntryDto> entries = batchWeatherService.getWeather(List.of("London", "london ", "LONDON"));
+
+        assertEquals(3, entries.size());
+        assertEquals("london ", entries.get(1).getCity());
+        verify(weatherService, times(1)).getCachedWeatherForKey(anyString(), any());
+    }
+
+    @Test
+    public void getWeather_ShouldReportUnavailableAndBlankCities_PerEntry(){
+        when(weatherService.getCachedWeatherIfPresentForKey("paris")).thenReturn(null);
+        when(weatherService.getCachedWeatherForKey("paris", UpstreamPriority.BATCH)).thenThrow(new WeatherServiceUnavailableException("Service unavailable, try again later"));
+
+        List<BatchWeatherEntryDto> entries = batchWeatherService.getWeather(Arrays.asList("Paris", " "));
+
+        assertEquals(503, entries.get(0).getStatus());
+        assertEquals(400, entries.get(1).getStatus());
+    }
+
+    @Test
+    public void getWeather_ShouldAnswerKnownCities_WhenAnotherCityIsNotInTheCityList(){
+        // With reject-unknown-cities, resolving the city throws before any future exists.
+        when(weatherService.cacheKey("Atlantis")).thenThrow(new CityNotFoundException("City not found: Atlantis"));
+        when(weatherService.getCachedWeatherIfPresentForKey("london")).thenReturn(cached("London"));
+
+        List<BatchWeatherEntryDto> entries = batchWeatherService.getWeather(List.of("Atlantis", "London"));
+
+        assertEquals(404, entries.get(0).getStatus());
+        assertEquals(200, entries.get(1).getStatus());
+        assertEquals("London", entries.get(1).getWeather().getName());
+    }
+
+    @Test
+    public void getWeather_ShouldReportPerEntry_WhenTheCacheLookupThrows(){
+        when(weatherService.getCachedWeatherIfPresentForKey("atlantis")).thenThrow(new CityNotFoundException("City not found: Atlantis"));
+        when(weatherService.getCachedWeatherIfPresentForKey("london")).thenReturn(cached("London"));
+
+        List<BatchWeatherEntryDto> entries = batchWeatherService.getWeather(List.of("London", "Atlantis"));
+
+        assertEquals(200, entries.get(0).getStatus());
+        assertEquals(404, entries.get(1).getStatus());
+    }
+
+    @Test
+    public void getWeather_ShouldLookUpOnce_WhenTheCityListMapsSpellingsToTheSameCity(){
+        when(weatherService.cacheKey("Köln")).thenReturn("cologne");
+        when(weatherService.cacheKey("Cologne")).thenReturn("cologne");
+        when(weatherService.getCachedWeatherIfPresentForKey("cologne")).thenReturn(cached("Cologne"));
+
+        List<BatchWeatherEntryDto> entries = batchWeatherService.getWeather(List.of("Köln", "Cologne"));
+
+        assertEquals("Cologne", entries.get(1).getWeather().getName());
+        verify(weatherService, times(1)).getCachedWeatherIfPresentForKey(anyString());
+    }
+
+    @Test
+    public void getWeather_ShouldRejectTooManyCities(){
+        assertThrows(IllegalArgumentException.class,
+            () -> batchWeatherService.getWeather(List.of("London", "Paris", "Berlin", "Madrid")));
+    }
+}
@@ -0,0 +1,117 @@
+package com.onlyweather.OnlyWeather.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.onlyweather.OnlyWeather.cache.CachedWeather;
+import com.onlyweather.OnlyWeather.cache.WeatherCache;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+import com.onlyweather.OnlyWeather.upstream.UpstreamPriority;
+
+// Unit tests for the CacheWarmer with a mocked cache and service. The clock stands still,
+// so the rate budget never refills during a test.
+@ExtendWith(MockitoExtension.class)
+public class CacheWarmerTest {
+
+    private static final Instant NOW = Instant.parse("2024-03-01T12:00:00Z");
+
+    @Mock
+    private WeatherService weatherService;
+
+    @Mock
+    private WeatherCache weatherCache;
+
+    @BeforeEach
+    void setUp(){
+        lenient().when(weatherCache.getTtl()).thenReturn(Duration.ofMinutes(10));
+    }
+
+    private CacheWarmer warmer(List<String> cities, int autoTop, int maxCallsPerMinute){
+        return new CacheWarmer(weatherService, weatherCache, cities, autoTop, 0.2, 0.5, maxCallsPerMinute,
+            Duration.ofSeconds(5), Runnable::run, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private static CachedWeather fetched(Duration ago){
+        return new CachedWeather(new WeatherResponseDto(), NOW.minus(ago));
+    }
+
+    @Test
+    public void warmUp_ShouldLoadConfiguredCities_WithinBudget(){
+        CacheWarmer cacheWarmer = warmer(List.of("London", " new  york", "Paris"), 0, 2);
+
+        cacheWarmer.warmUp();
+
+        verify(weatherService).getCachedWeather("london", UpstreamPriority.BACKGROUND);
+        verify(weatherService).getCachedWeather("new york", UpstreamPriority.BACKGROUND);
+        verify(weatherService, never()).getCachedWeather("paris", UpstreamPriority.BACKGROUND);
+        // A normal lookup, so entries still fresh on disk or in the shared tier aren't fetched again.
+        verify(weatherService, never()).refresh(anyString());
+    }
+
+    @Test
+    public void warmUp_ShouldKeepGoing_WhenACityFails(){
+        when(weatherService.getCachedWeather("london", UpstreamPriority.BACKGROUND))
+        .thenThrow(new WeatherServiceUnavailableException("Service unavailable, try again later"));
+        CacheWarmer cacheWarmer = warmer(List.of("London", "Paris"), 0, 10);
+
+        cacheWarmer.warmUp();
+
+        verify(weatherService).getCachedWeather("paris", UpstreamPriority.BACKGROUND);
+    }
+
+    @Test
+    public void refreshHotCities_ShouldRefreshMissingAndExpiringEntries_Only(){
+        when(weatherCache.peek("london")).thenReturn(null);
+        when(weatherCache.peek("paris")).thenReturn(fetched(Duration.ofMinutes(1)));
+        when(weatherCache.peek("rome")).thenReturn(fetched(Duration.ofMinutes(9).plusSeconds(30)));
+        CacheWarmer cacheWarmer = warmer(List.of("London", "Paris", "Rome"), 0, 10);
+
+        cacheWarmer.refreshHotCities();
+
+        verify(weatherService).refresh("london");
+        verify(weatherService).refresh("rome");
+        verify(weatherService, never()).refresh("paris");
+    }
+
+    @Test
+    public void refreshHotCities_ShouldIncludeMostRequestedCities_AndStopWhenBudgetIsUsed(){
+        when(weatherCache.mostRequested(3)).thenReturn(List.of("berlin", "madrid", "oslo"));
+        CacheWarmer cacheWarmer = warmer(List.of(), 3, 2);
+
+        cacheWarmer.refreshHotCities();
+
+        verify(weatherService, times(2)).refresh(anyString());
+        verify(weatherCache).decayRequestCounts();
+    }
+
+    @Test
+    public void refreshHotCities_ShouldSkipCitiesKnownToBeMissing_WithoutSpendingBudget(){
+        when(weatherCache.mostRequested(2)).thenReturn(List.of("atlantis", "berlin"));
+        when(weatherService.isKnownMissing("atlantis")).thenReturn(true);
+        CacheWarmer cacheWarmer = warmer(List.of(), 2, 1);
+
+        cacheWarmer.refreshHotCities();
+
+        verify(weatherService, never()).refresh("atlantis");
+        verify(weatherService).refresh("berlin");
+        verify(weatherService, never()).getCachedWeather(anyString(), any());
+    }
+}
@@ -0,0 +1,232 @@
+package com.onlyweather.OnlyWeather.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.onlyweather.OnlyWeather.cache.CachedWeather;
+import com.onlyweather.OnlyWeather.cache.NegativeCache;
+import com.onlyweather.OnlyWeather.cache.WeatherCache;
+import com.onlyweather.OnlyWeather.cache.WeatherCacheTier;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.exception.CityNotFoundException;
+import com.onlyweather.OnlyWeather.exception.InvalidApiKeyException;
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+import com.onlyweather.OnlyWeather.history.ObservationStore;
+import com.onlyweather.OnlyWeather.metrics.WeatherMetrics;
+import com.onlyweather.OnlyWeather.upstream.UpstreamBudget;
+import com.onlyweather.OnlyWeather.upstream.UpstreamLimiter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// The reactive service must map upstream responses, and answer from the caches, exactly like WeatherService does.
+// A tiny local HTTP server plays OpenWeatherMap; the city name picks the response.
+public class ReactiveWeatherServiceTest {
+
+    private HttpServer server;
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private String apiUrl;
+    private ReactiveWeatherService reactiveWeatherService;
+
+    @BeforeEach
+    void setUp() throws IOException{
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/weather", exchange -> {
+            upstreamCalls.incrementAndGet();
+            String query = exchange.getRequestURI().getQuery();
+            if (query.contains("q=London")) {
+                respond(exchange, 200, "{\"weather\":[{\"description\":\"clear sky\",\"icon\":\"01n\"}],\"main\":{\"temp\":5.5},\"name\":\"London\",\"wind\":{\"speed\":3}}");
+            } else if (query.contains("q=Unauthorized")) {
+                respond(exchange, 401, "{\"cod\":401}");
+            } else if (query.contains("q=Broken")) {
+                respond(exchange, 502, "{\"cod\":502}");
+            } else {
+                respond(exchange, 404, "{\"cod\":\"404\",\"message\":\"city not found\"}");
+            }
+        });
+        server.start();
+
+        apiUrl = "http://localhost:" + server.getAddress().getPort() + "/weather";
+        reactiveWeatherService = service(new WeatherCache(Duration.ofMinutes(10), 100, Clock.systemUTC()),
+            CircuitBreaker.ofDefaults("test"));
+    }
+
+    private ReactiveWeatherService service(WeatherCache weatherCache, CircuitBreaker circuitBreaker){
+        return service(weatherCache, circuitBreaker, new UpstreamLimiter(10, Duration.ofSeconds(1)), UpstreamBudget.unlimited());
+    }
+
+    private ReactiveWeatherService service(WeatherCache weatherCache, CircuitBreaker circuitBreaker,
+    UpstreamLimiter upstreamLimiter, UpstreamBudget upstreamBudget){
+        WeatherMetrics weatherMetrics = new WeatherMetrics(new SimpleMeterRegistry());
+        WeatherService weatherService = new WeatherService("dummy-api-key", apiUrl, new RestTemplate(), weatherCache,
+            upstreamLimiter, weatherMetrics, circuitBreaker);
+        NegativeCache negativeCache = new NegativeCache(true, Duration.ofMinutes(1), 100, true, 1000, 0.01, Clock.systemUTC());
+        return new ReactiveWeatherService("dummy-api-key", apiUrl, WebClient.create(), weatherService, weatherCache,
+            weatherMetrics, circuitBreaker, upstreamLimiter, negativeCache, upstreamBudget, ObservationStore.disabled(),
+            Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown(){
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException{
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    @Test
+    public void getWeather_ShouldReturnWeatherData_AndCacheIt(){
+        WeatherResponseDto weather = reactiveWeatherService.getWeather("London").block();
+
+        assertEquals("London", weather.getName());
+        assertEquals(5.5, weather.getMain().getTemp());
+        assertEquals("01n@2x.png", weather.getIconFileName());
+
+        reactiveWeatherService.getWeather("london").block();
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    public void getWeather_ShouldMapUpstreamErrors_LikeBlockingService(){
+        assertThrows(CityNotFoundException.class, () -> reactiveWeatherService.getWeather("Atlantis").block());
+        assertThrows(InvalidApiKeyException.class, () -> reactiveWeatherService.getWeather("Unauthorized").block());
+        assertThrows(WeatherServiceUnavailableException.class, () -> reactiveWeatherService.getWeather("Broken").block());
+    }
+
+    @Test
+    public void getWeather_ShouldCallApiOnce_WhenUnknownCityIsRequestedRepeatedly(){
+        assertThrows(CityNotFoundException.class, () -> reactiveWeatherService.getWeather("Atlantis").block());
+        assertThrows(CityNotFoundException.class, () -> reactiveWeatherService.getWeather(" atlantis").block());
+
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    public void getWeather_ShouldServeStaleEntry_AndRefreshItInTheBackground(){
+        // Every entry is stale right away; the refresh runs on the calling thread and fails with a 502.
+        WeatherCache weatherCache = new WeatherCache(Duration.ofNanos(1), 100, true, Duration.ofHours(1), Runnable::run,
+            Clock.systemUTC());
+        CachedWeather stale = weatherCache.put("broken", new WeatherResponseDto());
+        ReactiveWeatherService service = service(weatherCache, CircuitBreaker.ofDefaults("test"));
+
+        assertSame(stale, service.getCachedWeather("Broken").block());
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(1, weatherCache.getStats().getStaleHits());
+    }
+
+    @Test
+    public void getWeather_ShouldLoadMissesThroughTheCacheTiers(){
+        Map<String, CachedWeather> stored = new ConcurrentHashMap<>();
+        WeatherCacheTier tier = new WeatherCacheTier() {
+            @Override
+            public CachedWeather read(String key){
+                return stored.get(key);
+            }
+
+            @Override
+            public void write(String key, CachedWeather cachedWeather){
+                stored.put(key, cachedWeather);
+            }
+        };
+        WeatherResponseDto paris = new WeatherResponseDto();
+        paris.setName("Paris (other instance)");
+        stored.put("paris", new CachedWeather(paris, Instant.now()));
+        WeatherCache weatherCache = new WeatherCache(Duration.ofMinutes(10), 100, false, Duration.ofMinutes(10), Runnable::run,
+            Clock.systemUTC(), List.of(tier));
+        ReactiveWeatherService service = service(weatherCache, CircuitBreaker.ofDefaults("test"));
+
+        // Another instance already holds Paris; London is fetched and written through for the others.
+        assertEquals("Paris (other instance)", service.getWeather("Paris").block().getName());
+        assertEquals("London", service.getWeather("London").block().getName());
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals("London", stored.get("london").getWeather().getName());
+    }
+
+    @Test
+    public void getWeather_ShouldRememberA404_FoundByTheBackgroundRefresh(){
+        WeatherCache weatherCache = new WeatherCache(Duration.ofNanos(1), 100, true, Duration.ofHours(1), Runnable::run,
+            Clock.systemUTC());
+        weatherCache.put("atlantis", new WeatherResponseDto());
+        ReactiveWeatherService service = service(weatherCache, CircuitBreaker.ofDefaults("test"));
+
+        service.getWeather("Atlantis").block();
+        assertThrows(CityNotFoundException.class, () -> service.getWeather("Atlantis").block());
+
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    public void getWeather_ShouldFailFast_WhenTheSharedCircuitIsOpen(){
+        CircuitBreaker circuitBreaker = CircuitBreaker.of("test", CircuitBreakerConfig.custom()
+            .slidingWindowSize(2)
+            .minimumNumberOfCalls(2)
+            .recordException(e -> e instanceof WeatherServiceUnavailableException)
+            .build());
+        ReactiveWeatherService service = service(new WeatherCache(Duration.ofMinutes(10), 100, Clock.systemUTC()), circuitBreaker);
+
+        assertThrows(WeatherServiceUnavailableException.class, () -> service.getWeather("Broken").block());
+        assertThrows(WeatherServiceUnavailableException.class, () -> service.getWeather("Broken").block());
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertThrows(WeatherServiceUnavailableException.class, () -> service.getWeather("London").block());
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    public void getWeather_ShouldNotSpendBudget_WhenTheLimiterIsFull(){
+        UpstreamLimiter upstreamLimiter = new UpstreamLimiter(1, Duration.ofSeconds(1));
+        UpstreamBudget upstreamBudget = new UpstreamBudget(60, 1000, 0, 0, Duration.ZERO, Clock.systemUTC());
+        ReactiveWeatherService service = service(new WeatherCache(Duration.ofMinutes(10), 100, Clock.systemUTC()),
+            CircuitBreaker.ofDefaults("test"), upstreamLimiter, upstreamBudget);
+        // Someone else holds the only slot.
+        assertTrue(upstreamLimiter.tryAcquire());
+
+        assertThrows(WeatherServiceUnavailableException.class, () -> service.getWeather("London").block());
+
+        assertEquals(60, upstreamBudget.getRemainingPerMinute());
+        assertEquals(1000, upstreamBudget.getRemainingPerDay());
+        assertEquals(0, upstreamCalls.get());
+    }
+
+    @Test
+    public void getWeather_ShouldReportUnavailable_WhenUpstreamIsUnreachable(){
+        server.stop(0);
+
+        assertThrows(WeatherServiceUnavailableException.class, () -> reactiveWeatherService.getWeather("London").block());
+    }
+
+    @Test
+    public void getWeather_ShouldRejectEmptyCity(){
+        assertThrows(IllegalArgumentException.class, () -> reactiveWeatherService.getWeather(" ").block());
+    }
+}
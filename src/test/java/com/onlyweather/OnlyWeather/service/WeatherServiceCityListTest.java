@@ -0,0 +1,146 @@
+package com.onlyweather.OnlyWeather.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import com.onlyweather.OnlyWeather.cache.NegativeCache;
+import com.onlyweather.OnlyWeather.cache.WeatherCache;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.exception.CityNotFoundException;
+import com.onlyweather.OnlyWeather.loadtest.FakeOpenWeatherMapServer;
+import com.onlyweather.OnlyWeather.history.ObservationStore;
+import com.onlyweather.OnlyWeather.metrics.WeatherMetrics;
+import com.onlyweather.OnlyWeather.upstream.CityIndex;
+import com.onlyweather.OnlyWeather.upstream.OpenWeatherMapMessageConverter;
+import com.onlyweather.OnlyWeather.upstream.UpstreamBudget;
+import com.onlyweather.OnlyWeather.upstream.UpstreamLimiter;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// With a city list, listed cities are fetched by ID through the group endpoint, several misses per call,
+// misspelled names are corrected before the cache and unknown names never reach the upstream.
+public class WeatherServiceCityListTest {
+
+    private FakeOpenWeatherMapServer upstream;
+    private CityIndex cityIndex;
+    private RestTemplate restTemplate;
+    private WeatherService weatherService;
+
+    @BeforeEach
+    void setUp() throws Exception{
+        upstream = new FakeOpenWeatherMapServer();
+        StringBuilder cityList = new StringBuilder();
+        for (int id = 1; id <= 30; id++) {
+            cityList.append(id).append(",City ").append(id).append(",XX\n");
+        }
+        cityList.append("2643743,London,GB\n");
+        cityIndex = CityIndex.read(new ByteArrayInputStream(cityList.toString().getBytes(StandardCharsets.UTF_8)));
+
+        restTemplate = new RestTemplate();
+        restTemplate.getMessageConverters().add(0, new OpenWeatherMapMessageConverter());
+        weatherService = weatherService(true);
+    }
+
+    private WeatherService weatherService(boolean rejectUnknownCities){
+        return new WeatherService("test-api-key", upstream.weatherUrl(), restTemplate,
+            new WeatherCache(Duration.ofMinutes(10), 100, Clock.systemUTC()), new UpstreamLimiter(10, Duration.ofSeconds(1)),
+            new WeatherMetrics(new SimpleMeterRegistry()), CircuitBreaker.ofDefaults("test"),
+            cityIndex, rejectUnknownCities, "", true, Duration.ofMillis(300), 20, NegativeCache.disabled(),
+            UpstreamBudget.unlimited(), ObservationStore.disabled());
+    }
+
+    @AfterEach
+    void tearDown(){
+        upstream.close();
+    }
+
+    // Correcting or rejecting a name not listed as typed is a scan of the list, done once per name.
+    @Test
+    public void unlistedNames_ShouldBeLookedUpInTheListOnce(){
+        cityIndex = spy(cityIndex);
+        WeatherService service = weatherService(true);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("london", service.cacheKey(i == 0 ? "Londn" : " londn "));
+            assertThrows(CityNotFoundException.class, () -> service.getWeather("Atlantis"));
+        }
+
+        verify(cityIndex, times(2)).canonicalize(anyString());
+        assertEquals(0, upstream.getCalls());
+    }
+
+    @Test
+    public void concurrentMisses_ShouldBeFetchedWithOneGroupCall() throws Exception{
+        List<WeatherResponseDto> results = new ArrayList<>();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<WeatherResponseDto>> futures = new ArrayList<>();
+            for (int id = 1; id <= 10; id++) {
+                String city = "city " + id;
+                futures.add(callers.submit(() -> weatherService.getWeather(city)));
+            }
+            for (Future<WeatherResponseDto> future : futures) {
+                results.add(future.get());
+            }
+        }
+
+        assertEquals(1, upstream.getGroupCalls());
+        assertEquals(1, upstream.getCalls());
+        for (int id = 1; id <= 10; id++) {
+            assertEquals("city-" + id, results.get(id - 1).getName());
+            assertEquals(id, results.get(id - 1).getCityId());
+        }
+        // Answered from the cache from now on.
+        weatherService.getWeather("City 3, XX");
+        weatherService.getWeather("CITY 3");
+        assertEquals(2, upstream.getCalls());
+    }
+
+    @Test
+    public void misspelledCities_ShouldShareTheCacheEntryOfTheCorrectSpelling(){
+        WeatherResponseDto london = weatherService.getWeather("London");
+
+        assertSame(london, weatherService.getWeather("LONDON "));
+        assertSame(london, weatherService.getWeather("Londn"));
+        assertSame(london, weatherService.getWeather("Lnodon"));
+        assertEquals(1, upstream.getCalls());
+    }
+
+    @Test
+    public void unknownCities_ShouldBeRejectedWithoutAnUpstreamCall(){
+        assertThrows(CityNotFoundException.class, () -> weatherService.getWeather("Atlantis"));
+        assertThrows(CityNotFoundException.class, () -> weatherService.getWeather("Lndn"));
+
+        assertEquals(0, upstream.getCalls());
+        assertEquals(List.of("city 1", "city 1,xx", "city 10", "city 10,xx"), weatherService.suggestCities("City 1", 4));
+    }
+
+    @Test
+    public void citiesMissingFromTheList_ShouldStillUseTheSingleCityQuery_WhenNotRejected(){
+        WeatherResponseDto weather = weatherService(false).getWeather("Atlantis");
+
+        assertEquals("Atlantis", weather.getName());
+        assertEquals(0, upstream.getGroupCalls());
+        assertEquals(1, upstream.getCalls());
+    }
+}
@@ -0,0 +1,148 @@
+package com.onlyweather.OnlyWeather.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import com.onlyweather.OnlyWeather.cache.WeatherCache;
+import com.onlyweather.OnlyWeather.config.HttpClientConfig;
+import com.onlyweather.OnlyWeather.config.UpstreamConfig;
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+import com.onlyweather.OnlyWeather.loadtest.FakeOpenWeatherMapServer;
+import com.onlyweather.OnlyWeather.metrics.WeatherMetrics;
+import com.onlyweather.OnlyWeather.upstream.UpstreamLimiter;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Runs the real WeatherService against a local OpenWeatherMap stand-in that is failing or slow,
+// to check that the circuit breaker and the adaptive limiter react to it.
+public class WeatherServiceResilienceTest {
+
+    private final HttpClientConfig httpClientConfig = new HttpClientConfig();
+    private FakeOpenWeatherMapServer upstream;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception{
+        upstream = new FakeOpenWeatherMapServer();
+        connectionManager = httpClientConfig.upstreamConnectionManager(10, 10,
+            Duration.ofSeconds(1), Duration.ofSeconds(2), Duration.ofSeconds(30));
+        restTemplate = new RestTemplate(httpClientConfig.pooledRequestFactory(connectionManager,
+            Duration.ofSeconds(2), Duration.ofSeconds(1), Duration.ofSeconds(30)));
+    }
+
+    @AfterEach
+    void tearDown(){
+        connectionManager.close();
+        upstream.close();
+    }
+
+    private static CircuitBreaker circuitBreaker(Duration slowCallDuration){
+        // Opens after 5 calls if half of them failed or were slow, and stays open for a minute.
+        return new UpstreamConfig().circuitBreakerRegistry(10, 5, 50, 50, slowCallDuration, Duration.ofMinutes(1), 1)
+            .circuitBreaker("test");
+    }
+
+    private WeatherService weatherService(WeatherCache weatherCache, UpstreamLimiter upstreamLimiter, CircuitBreaker circuitBreaker){
+        return new WeatherService("test-api-key", upstream.weatherUrl(), restTemplate, weatherCache, upstreamLimiter,
+            new WeatherMetrics(new SimpleMeterRegistry()), circuitBreaker);
+    }
+
+    @Test
+    public void failingUpstream_ShouldOpenCircuit_AndFailFastWithoutCallingIt(){
+        upstream.withErrorRate(1.0);
+        CircuitBreaker circuitBreaker = circuitBreaker(Duration.ofSeconds(1));
+        WeatherService weatherService = weatherService(new WeatherCache(Duration.ofMinutes(10), 100, Clock.systemUTC()),
+            new UpstreamLimiter(10, Duration.ofSeconds(1)), circuitBreaker);
+
+        for (int i = 0; i < 5; i++) {
+            String city = "city-" + i;
+            assertThrows(WeatherServiceUnavailableException.class, () -> weatherService.getWeather(city));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        long callsWhenOpened = upstream.getCalls();
+        assertThrows(WeatherServiceUnavailableException.class, () -> weatherService.getWeather("London"));
+        assertEquals(callsWhenOpened, upstream.getCalls());
+    }
+
+    @Test
+    public void openCircuit_ShouldStillServeStaleEntries(){
+        CircuitBreaker circuitBreaker = circuitBreaker(Duration.ofSeconds(1));
+        WeatherService weatherService = weatherService(
+            new WeatherCache(Duration.ofNanos(1), 100, true, Duration.ofHours(1), Runnable::run, Clock.systemUTC()),
+            new UpstreamLimiter(10, Duration.ofSeconds(1)), circuitBreaker);
+        weatherService.getWeather("London");
+
+        circuitBreaker.transitionToOpenState();
+
+        assertEquals("London", weatherService.getWeather("London").getName());
+    }
+
+    @Test
+    public void slowUpstream_ShouldOpenCircuit_AndShrinkConcurrencyLimit(){
+        upstream.withLatency(Duration.ofMillis(150));
+        CircuitBreaker circuitBreaker = circuitBreaker(Duration.ofMillis(100));
+        UpstreamLimiter upstreamLimiter = new UpstreamLimiter(16, 2, Duration.ofSeconds(1), Duration.ofMillis(100), 0.5);
+        WeatherService weatherService = weatherService(new WeatherCache(Duration.ofMinutes(10), 100, Clock.systemUTC()),
+            upstreamLimiter, circuitBreaker);
+
+        for (int i = 0; i < 5; i++) {
+            weatherService.getWeather("city-" + i);
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertTrue(upstreamLimiter.getLimit() < 16, "limit should shrink, was " + upstreamLimiter.getLimit());
+        assertThrows(WeatherServiceUnavailableException.class, () -> weatherService.getWeather("London"));
+    }
+
+    // Calls that give up waiting for a limiter slot never reached the upstream, so they must not open the circuit.
+    @Test
+    public void saturatedLimiter_ShouldNotOpenCircuit_WhileUpstreamIsHealthy() throws Exception{
+        upstream.withLatency(Duration.ofMillis(300));
+        CircuitBreaker circuitBreaker = circuitBreaker(Duration.ofSeconds(1));
+        WeatherService weatherService = weatherService(new WeatherCache(Duration.ofMinutes(10), 100, Clock.systemUTC()),
+            new UpstreamLimiter(1, Duration.ofMillis(20)), circuitBreaker);
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<?>> calls = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                String city = "city-" + i;
+                calls.add(executor.submit(() -> weatherService.getWeather(city)));
+            }
+            int rejected = 0;
+            for (Future<?> call : calls) {
+                try {
+                    call.get();
+                } catch (ExecutionException e) {
+                    assertInstanceOf(WeatherServiceUnavailableException.class, e.getCause());
+                    rejected++;
+                }
+            }
+            assertTrue(rejected > 0, "the limiter should have turned calls away");
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+    }
+}
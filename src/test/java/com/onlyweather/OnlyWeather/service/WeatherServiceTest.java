@@ -2,9 +2,13 @@ package com.onlyweather.OnlyWeather.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -17,19 +21,40 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 
+import com.onlyweather.OnlyWeather.cache.NegativeCache;
+import com.onlyweather.OnlyWeather.cache.WeatherCache;
+import com.onlyweather.OnlyWeather.config.UpstreamConfig;
 import com.onlyweather.OnlyWeather.dto.MainInfoDto;
 import com.onlyweather.OnlyWeather.dto.WeatherInfoDto;
 import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
 import com.onlyweather.OnlyWeather.exception.CityNotFoundException;
 import com.onlyweather.OnlyWeather.exception.InvalidApiKeyException;
+import com.onlyweather.OnlyWeather.exception.UpstreamBudgetExceededException;
 import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+import com.onlyweather.OnlyWeather.history.ObservationStore;
+import com.onlyweather.OnlyWeather.metrics.WeatherMetrics;
+import com.onlyweather.OnlyWeather.upstream.CityIndex;
+import com.onlyweather.OnlyWeather.upstream.UpstreamBudget;
+import com.onlyweather.OnlyWeather.upstream.UpstreamLimiter;
+import com.onlyweather.OnlyWeather.upstream.UpstreamPriority;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
 
 // Unit tests for the WeatherService. Let's verify its behavior.
 @ExtendWith(MockitoExtension.class) // This tells JUnit to enable Mockito features.
@@ -43,6 +68,9 @@ public class WeatherServiceTest {
     // This is the service instance we are going to test.
     private WeatherService weatherService;
 
+    // An in-memory registry, so tests can check what the service measured.
+    private SimpleMeterRegistry meterRegistry;
+
     // This method runs before each test method executes.
     @BeforeEach
     void setUp() {
@@ -51,7 +79,11 @@ public class WeatherServiceTest {
         // The actual values for key/URL don't matter here, as the restTemplate is mocked.
         String testApiKey = "dummy-api-key";
         String testApiUrl = "http://dummy-api.url";
-        weatherService = new WeatherService(testApiKey, testApiUrl, restTemplate);
+        // Every test gets a fresh, empty cache so results never leak between tests.
+        meterRegistry = new SimpleMeterRegistry();
+        weatherService = new WeatherService(testApiKey, testApiUrl, restTemplate, new WeatherCache(Duration.ofMinutes(10), 100, Clock.systemUTC()),
+            new UpstreamLimiter(10, Duration.ofSeconds(1)), new WeatherMetrics(meterRegistry),
+            CircuitBreaker.ofDefaults("test"));
     }
 
     // Test the standard scenario: fetching weather for a known city.
@@ -128,6 +160,43 @@ public class WeatherServiceTest {
         });
     }
 
+    // Unknown cities are remembered, so asking again doesn't cost another upstream call.
+    @Test
+    public void getWeather_ShouldCallApiOnce_WhenUnknownCityIsRequestedRepeatedly(){
+        NegativeCache negativeCache = new NegativeCache(true, Duration.ofMinutes(1), 100, true, 1000, 0.01, Clock.systemUTC());
+        WeatherService service = new WeatherService("dummy-api-key", "http://dummy-api.url", restTemplate,
+            new WeatherCache(Duration.ofMinutes(10), 100, Clock.systemUTC()), new UpstreamLimiter(10, Duration.ofSeconds(1)),
+            new WeatherMetrics(meterRegistry), CircuitBreaker.ofDefaults("test"),
+            CityIndex.empty(), true, "", false, Duration.ZERO, 1, negativeCache, UpstreamBudget.unlimited(),
+            ObservationStore.disabled());
+        when(restTemplate.getForEntity(anyString(), eq(WeatherResponseDto.class)))
+        .thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+
+        assertThrows(CityNotFoundException.class, () -> service.getWeather("Atlantis"));
+        assertThrows(CityNotFoundException.class, () -> service.getWeather(" atlantis"));
+
+        verify(restTemplate, times(1)).getForEntity(anyString(), eq(WeatherResponseDto.class));
+    }
+
+    // Forced refreshes (the cache warmer's) go through the same negative cache as lookups.
+    @Test
+    public void refresh_ShouldNotCallApi_ForCitiesKnownToBeMissing(){
+        NegativeCache negativeCache = new NegativeCache(true, Duration.ofMinutes(1), 100, true, 1000, 0.01, Clock.systemUTC());
+        WeatherService service = new WeatherService("dummy-api-key", "http://dummy-api.url", restTemplate,
+            new WeatherCache(Duration.ofMinutes(10), 100, Clock.systemUTC()), new UpstreamLimiter(10, Duration.ofSeconds(1)),
+            new WeatherMetrics(meterRegistry), CircuitBreaker.ofDefaults("test"),
+            CityIndex.empty(), true, "", false, Duration.ZERO, 1, negativeCache, UpstreamBudget.unlimited(),
+            ObservationStore.disabled());
+        when(restTemplate.getForEntity(anyString(), eq(WeatherResponseDto.class)))
+        .thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+
+        assertThrows(CityNotFoundException.class, () -> service.refresh("Atlantis"));
+        assertTrue(service.isKnownMissing("atlantis"));
+        assertThrows(CityNotFoundException.class, () -> service.refresh("Atlantis"));
+
+        verify(restTemplate, times(1)).getForEntity(anyString(), eq(WeatherResponseDto.class));
+    }
+
     // Test the scenario where the API server reports an internal error (HTTP 500).
     @Test
     public void getWeather_ShouldThrowWeatherServiceUnavailableException_WhenOpenWeatherApiIsUnavailable(){
@@ -155,4 +224,182 @@ public class WeatherServiceTest {
 
         assertEquals("Invalid ApiKey, try to change it", exception.getMessage());
     }
+
+    // Repeated lookups for the same city (in any casing) should be answered from the cache.
+    @Test
+    public void getWeather_ShouldCallApiOnce_WhenCityIsRequestedRepeatedly(){
+        WeatherResponseDto simulatedApiResponse = new WeatherResponseDto();
+        simulatedApiResponse.setMain(new MainInfoDto(12.0));
+        simulatedApiResponse.setWeather(Collections.singletonList(new WeatherInfoDto("light rain", "10d")));
+        simulatedApiResponse.setName("London");
+
+        when(restTemplate.getForEntity(anyString(), eq(WeatherResponseDto.class)))
+            .thenReturn(ResponseEntity.ok(simulatedApiResponse));
+
+        weatherService.getWeather("London");
+        weatherService.getWeather("london ");
+        WeatherResponseDto actualResult = weatherService.getWeather("LONDON");
+
+        assertEquals("London", actualResult.getName());
+        verify(restTemplate, times(1)).getForEntity(anyString(), eq(WeatherResponseDto.class));
+    }
+
+    // RestTemplate reports 5xx responses as HttpServerErrorException and timeouts as ResourceAccessException.
+    @Test
+    public void getWeather_ShouldThrowWeatherServiceUnavailableException_WhenApiReturnsServerErrorOrTimesOut(){
+        when(restTemplate.getForEntity(anyString(), eq(WeatherResponseDto.class)))
+        .thenThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY))
+        .thenThrow(new ResourceAccessException("Read timed out"));
+
+        assertThrows(WeatherServiceUnavailableException.class, () -> weatherService.getWeather("London"));
+        assertThrows(WeatherServiceUnavailableException.class, () -> weatherService.getWeather("London"));
+    }
+
+    @Test
+    public void getWeather_ShouldTimeUpstreamCalls_ByOutcome(){
+        WeatherResponseDto london = new WeatherResponseDto();
+        london.setName("London");
+        when(restTemplate.getForEntity(anyString(), eq(WeatherResponseDto.class)))
+        .thenReturn(ResponseEntity.ok(london))
+        .thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+
+        weatherService.getWeather("London");
+        weatherService.getWeather("London"); // served from the cache, not timed
+        assertThrows(CityNotFoundException.class, () -> weatherService.getWeather("Atlantis"));
+
+        assertEquals(1, meterRegistry.get(WeatherMetrics.UPSTREAM_REQUESTS).tag("outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get(WeatherMetrics.UPSTREAM_REQUESTS).tag("outcome", "not_found").timer().count());
+    }
+
+    // With the budget used up, a stale entry keeps being served and its refresh waits for the next token.
+    @Test
+    public void getWeather_ShouldServeStaleData_WhenTheUpstreamBudgetIsUsedUp() throws Exception{
+        UpstreamBudget upstreamBudget = new UpstreamBudget(1, 0, 0, 0, Duration.ZERO, Clock.systemUTC());
+        WeatherCache weatherCache = new WeatherCache(Duration.ofMillis(1), 100, true, Duration.ofHours(1), Runnable::run, Clock.systemUTC());
+        WeatherService service = new WeatherService("dummy-api-key", "http://dummy-api.url", restTemplate,
+            weatherCache, new UpstreamLimiter(10, Duration.ofSeconds(1)),
+            new WeatherMetrics(meterRegistry), CircuitBreaker.ofDefaults("test"),
+            CityIndex.empty(), true, "", false, Duration.ZERO, 1, NegativeCache.disabled(), upstreamBudget,
+            ObservationStore.disabled());
+        WeatherResponseDto london = new WeatherResponseDto();
+        london.setName("London");
+        when(restTemplate.getForEntity(anyString(), eq(WeatherResponseDto.class))).thenReturn(ResponseEntity.ok(london));
+
+        service.getWeather("London");
+        Thread.sleep(5);
+        assertEquals("London", service.getWeather("London").getName());
+
+        verify(restTemplate, times(1)).getForEntity(anyString(), eq(WeatherResponseDto.class));
+        assertEquals(1, upstreamBudget.getRejected(UpstreamPriority.BACKGROUND));
+        assertThrows(UpstreamBudgetExceededException.class, () -> service.getWeather("Paris"));
+    }
+
+    // A 429 means the key is throttled whatever we counted, so nothing more is sent for the rest of the minute.
+    @Test
+    public void getWeather_ShouldStopCallingTheApi_AfterItAnswers429(){
+        UpstreamBudget upstreamBudget = new UpstreamBudget(60, 0, 0, 0, Duration.ZERO, Clock.systemUTC());
+        WeatherService service = new WeatherService("dummy-api-key", "http://dummy-api.url", restTemplate,
+            new WeatherCache(Duration.ofMinutes(10), 100, Clock.systemUTC()), new UpstreamLimiter(10, Duration.ofSeconds(1)),
+            new WeatherMetrics(meterRegistry), CircuitBreaker.ofDefaults("test"),
+            CityIndex.empty(), true, "", false, Duration.ZERO, 1, NegativeCache.disabled(), upstreamBudget,
+            ObservationStore.disabled());
+        when(restTemplate.getForEntity(anyString(), eq(WeatherResponseDto.class)))
+        .thenThrow(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS));
+
+        assertThrows(WeatherServiceUnavailableException.class, () -> service.getWeather("London"));
+        assertThrows(UpstreamBudgetExceededException.class, () -> service.getWeather("Paris"));
+
+        verify(restTemplate, times(1)).getForEntity(anyString(), eq(WeatherResponseDto.class));
+    }
+
+    // A call the limiter turns away never reaches the upstream, so it must not cost a budget token.
+    @Test
+    public void getWeather_ShouldHandBackTheBudgetToken_WhenTheLimiterHasNoSlot(){
+        UpstreamBudget upstreamBudget = new UpstreamBudget(60, 1000, 0, 0, Duration.ZERO, Clock.systemUTC());
+        UpstreamLimiter upstreamLimiter = new UpstreamLimiter(1, Duration.ofMillis(20));
+        WeatherService service = new WeatherService("dummy-api-key", "http://dummy-api.url", restTemplate,
+            new WeatherCache(Duration.ofMinutes(10), 100, Clock.systemUTC()), upstreamLimiter,
+            new WeatherMetrics(meterRegistry), CircuitBreaker.ofDefaults("test"),
+            CityIndex.empty(), true, "", false, Duration.ZERO, 1, NegativeCache.disabled(), upstreamBudget,
+            ObservationStore.disabled());
+        // Someone else holds the only slot.
+        assertTrue(upstreamLimiter.tryAcquire());
+
+        assertThrows(WeatherServiceUnavailableException.class, () -> service.getWeather("London"));
+
+        assertEquals(60, upstreamBudget.getRemainingPerMinute());
+        assertEquals(1000, upstreamBudget.getRemainingPerDay());
+        verify(restTemplate, never()).getForEntity(anyString(), eq(WeatherResponseDto.class));
+    }
+
+    // What comes back from the upstream is also recorded for GET /{city}/history, once per observation.
+    @Test
+    public void getWeather_ShouldRecordEachFetchedObservation_InTheHistory(){
+        ObservationStore observationStore = new ObservationStore(10, 10, 0, Duration.ofHours(1), Clock.systemUTC());
+        WeatherService service = new WeatherService("dummy-api-key", "http://dummy-api.url", restTemplate,
+            new WeatherCache(Duration.ofMillis(1), 100, Clock.systemUTC()), new UpstreamLimiter(10, Duration.ofSeconds(1)),
+            new WeatherMetrics(meterRegistry), CircuitBreaker.ofDefaults("test"),
+            CityIndex.empty(), true, "", false, Duration.ZERO, 1, NegativeCache.disabled(), UpstreamBudget.unlimited(),
+            observationStore);
+        WeatherResponseDto london = new WeatherResponseDto();
+        london.setName("London");
+        london.setMain(new MainInfoDto(10.0));
+        london.setObservedAt(1709300000L);
+        when(restTemplate.getForEntity(anyString(), eq(WeatherResponseDto.class))).thenReturn(ResponseEntity.ok(london));
+
+        service.getWeather("London");
+        service.refresh("London");
+
+        verify(restTemplate, times(2)).getForEntity(anyString(), eq(WeatherResponseDto.class));
+        assertEquals(1, observationStore.history("london", 1709298000L, 1709301600L, 3600).getCount());
+    }
+
+    // A user call waiting for a budget token hasn't reached the upstream yet, so the wait isn't a slow upstream call.
+    @Test
+    public void getWeather_ShouldNotCountTheWaitForABudgetToken_AsUpstreamCallDuration() throws Exception{
+        AtomicReference<Instant> now = new AtomicReference<>(Instant.parse("2024-03-01T12:00:00Z"));
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone(){
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone){
+                return this;
+            }
+
+            @Override
+            public Instant instant(){
+                return now.get();
+            }
+        };
+        UpstreamBudget upstreamBudget = new UpstreamBudget(1, 0, 0, 0, Duration.ofMillis(300), clock);
+        CircuitBreaker circuitBreaker = new UpstreamConfig().circuitBreakerRegistry(10, 1, 50, 50, Duration.ofMillis(100),
+            Duration.ofMinutes(1), 1).circuitBreaker("test");
+        WeatherService service = new WeatherService("dummy-api-key", "http://dummy-api.url", restTemplate,
+            new WeatherCache(Duration.ofMinutes(10), 100, Clock.systemUTC()), new UpstreamLimiter(10, Duration.ofSeconds(1)),
+            new WeatherMetrics(meterRegistry), circuitBreaker,
+            CityIndex.empty(), true, "", false, Duration.ZERO, 1, NegativeCache.disabled(), upstreamBudget,
+            ObservationStore.disabled());
+        when(restTemplate.getForEntity(anyString(), eq(WeatherResponseDto.class))).thenReturn(ResponseEntity.ok(new WeatherResponseDto()));
+        service.getWeather("London");
+
+        // The next minute starts while Paris waits, so it gets a token after waiting about max-wait.
+        Thread minutePasses = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            now.set(now.get().plus(Duration.ofMinutes(2)));
+        });
+        minutePasses.start();
+        service.getWeather("Paris");
+        minutePasses.join();
+
+        verify(restTemplate, times(2)).getForEntity(anyString(), eq(WeatherResponseDto.class));
+        assertEquals(2, circuitBreaker.getMetrics().getNumberOfSuccessfulCalls());
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfSlowCalls());
+    }
 }
@@ -0,0 +1,148 @@
+package com.onlyweather.OnlyWeather.upstream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.OptionalInt;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+public class CityIndexTest {
+
+    private static CityIndex index(String csv) throws IOException{
+        return CityIndex.read(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void resolve_ShouldFindCities_ByNameOrNameAndCountry_InAnySpelling() throws IOException{
+        CityIndex cityIndex = index("""
+            id,name,country
+            2643743,London,GB
+            2988507,Paris,FR
+            5128581,New York,US
+            3054643,Budapest,HU
+            2867714,München,DE
+            """);
+
+        assertEquals(OptionalInt.of(2643743), cityIndex.resolve("London"));
+        assertEquals(OptionalInt.of(5128581), cityIndex.resolve("  new   YORK "));
+        assertEquals(OptionalInt.of(2988507), cityIndex.resolve("paris , fr"));
+        assertEquals(OptionalInt.of(2867714), cityIndex.resolve("MÜNCHEN"));
+        assertEquals(OptionalInt.empty(), cityIndex.resolve("Atlantis"));
+        assertEquals(OptionalInt.empty(), cityIndex.resolve("Paris,US"));
+        assertEquals(10, cityIndex.size());
+    }
+
+    @Test
+    public void resolve_ShouldNotGuess_WhenSeveralCitiesShareAName() throws IOException{
+        CityIndex cityIndex = index("""
+            2643743,London,GB
+            6058560,London,CA
+            2643743,London,GB
+            """);
+
+        assertEquals(OptionalInt.empty(), cityIndex.resolve("London"));
+        assertEquals(OptionalInt.of(2643743), cityIndex.resolve("London,GB"));
+        assertEquals(OptionalInt.of(6058560), cityIndex.resolve("London, CA"));
+    }
+
+    @Test
+    public void canonicalize_ShouldCorrectSmallTypos_OnlyWhenOneNameIsClosest() throws IOException{
+        CityIndex cityIndex = index("""
+            2643743,London,GB
+            2988507,Paris,FR
+            3169070,Rome,IT
+            2995469,Marseille,FR
+            3014728,Grenoble,FR
+            2950159,Berlin,DE
+            2950158,Berlim,XX
+            """);
+
+        assertEquals("london", cityIndex.canonicalize(" LONDON "));
+        assertEquals("london", cityIndex.canonicalize("Londn"));
+        assertEquals("london", cityIndex.canonicalize("Lodnon"));
+        assertEquals("marseille", cityIndex.canonicalize("Marsielle"));
+        assertEquals("marseille", cityIndex.canonicalize("Marseile"));
+        assertEquals("london,gb", cityIndex.canonicalize("Londn, GB"));
+        assertEquals("paris", cityIndex.canonicalize("Pari"));
+        // Too short for a typo, too far off, equally close to two cities, or a different first letter.
+        assertNull(cityIndex.canonicalize("Rom"));
+        assertNull(cityIndex.canonicalize("Lndn"));
+        assertNull(cityIndex.canonicalize("Berlix"));
+        assertNull(cityIndex.canonicalize("Kondon"));
+    }
+
+    @Test
+    public void suggest_ShouldListNamesStartingWithThePrefix() throws IOException{
+        CityIndex cityIndex = index("""
+            2643743,London,GB
+            6058560,London,CA
+            2643734,Londonderry,GB
+            2988507,Paris,FR
+            """);
+
+        assertEquals(List.of("london", "london,ca", "london,gb"), cityIndex.suggest("Lon", 3));
+        assertEquals(List.of("londonderry", "londonderry,gb"), cityIndex.suggest("londonD", 10));
+        assertEquals(List.of(), cityIndex.suggest("Rome", 10));
+    }
+
+    @Test
+    public void map_ShouldServeTheSameLookups_FromTheWrittenIndexFile(@TempDir Path directory) throws IOException{
+        CityIndex built = index("""
+            2643743,London,GB
+            6058560,London,CA
+            2988507,Paris,FR
+            """);
+        Path indexFile = directory.resolve("cities.idx");
+        built.writeTo(indexFile);
+
+        CityIndex mapped = CityIndex.map(indexFile);
+
+        assertEquals(built.size(), mapped.size());
+        assertEquals(OptionalInt.empty(), mapped.resolve("London"));
+        assertEquals(OptionalInt.of(6058560), mapped.resolve("London,CA"));
+        assertEquals("paris", mapped.canonicalize("Parsi"));
+        assertEquals(List.of("london", "london,ca", "london,gb"), mapped.suggest("lo", 10));
+    }
+
+    @Test
+    public void load_ShouldRebuildTheIndexFile_OnlyWhenTheCityListChanged(@TempDir Path directory) throws IOException{
+        Path csv = directory.resolve("cities.csv");
+        Path indexFile = directory.resolve("cities.idx");
+        Files.writeString(csv, "2988507,Paris,FR\n");
+        Files.setLastModifiedTime(csv, FileTime.fromMillis(1_000_000_000_000L));
+        new CityIndex("file:" + csv, indexFile.toString(), new DefaultResourceLoader());
+
+        // Unchanged list: the index file is mapped, not written again.
+        FileTime written = FileTime.fromMillis(1_100_000_000_000L);
+        Files.setLastModifiedTime(indexFile, written);
+        CityIndex unchanged = new CityIndex("file:" + csv, indexFile.toString(), new DefaultResourceLoader());
+        assertEquals(OptionalInt.of(2988507), unchanged.resolve("Paris"));
+        assertEquals(written, Files.getLastModifiedTime(indexFile));
+
+        Files.writeString(csv, "2988507,Paris,FR\n2950159,Berlin,DE\n");
+        Files.setLastModifiedTime(csv, FileTime.fromMillis(1_200_000_000_000L));
+        CityIndex changed = new CityIndex("file:" + csv, indexFile.toString(), new DefaultResourceLoader());
+
+        assertEquals(OptionalInt.of(2950159), changed.resolve("Berlin"));
+        assertEquals(OptionalInt.of(2950159), CityIndex.map(indexFile).resolve("Berlin"));
+    }
+
+    @Test
+    public void read_ShouldRejectLinesWithoutId() throws IOException{
+        assertThrows(IllegalArgumentException.class, () -> index("London,GB\n"));
+        assertThrows(IllegalArgumentException.class, () -> index("x,London,GB\n"));
+        assertEquals(0, CityIndex.empty().size());
+        assertEquals(OptionalInt.empty(), CityIndex.empty().resolve("London"));
+    }
+}
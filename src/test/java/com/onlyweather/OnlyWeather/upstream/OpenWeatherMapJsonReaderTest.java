@@ -0,0 +1,86 @@
+package com.onlyweather.OnlyWeather.upstream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlyweather.OnlyWeather.dto.WeatherResponseDto;
+import com.onlyweather.OnlyWeather.loadtest.FakeOpenWeatherMapServer;
+
+public class OpenWeatherMapJsonReaderTest {
+
+    private final OpenWeatherMapJsonReader reader = new OpenWeatherMapJsonReader();
+
+    private WeatherResponseDto read(String json) throws IOException{
+        return reader.read(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void read_ShouldMatchJacksonDatabind_OnAFullPayload() throws IOException{
+        String json = FakeOpenWeatherMapServer.weatherJson("Rio de Janeiro");
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        WeatherResponseDto expected = objectMapper.readValue(json, WeatherResponseDto.class);
+
+        WeatherResponseDto actual = read(json);
+
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getCityId(), actual.getCityId());
+        assertEquals(expected.getObservedAt(), actual.getObservedAt());
+        assertEquals(expected.getMain().getTemp(), actual.getMain().getTemp());
+        assertEquals(expected.getWeather().get(0).getDescription(), actual.getWeather().get(0).getDescription());
+        assertEquals(expected.getWeather().get(0).getIcon(), actual.getWeather().get(0).getIcon());
+    }
+
+    @Test
+    public void read_ShouldKeepOnlyTheFirstWeatherEntry_AndSkipNestedFields() throws IOException{
+        WeatherResponseDto weather = read("{\"main\":{\"feels_like\":{\"odd\":[1,2]},\"temp\":7},"
+            + "\"weather\":[{\"id\":500,\"description\":\"light rain\",\"icon\":\"10d\",\"extra\":[{}]},{\"description\":\"mist\",\"icon\":\"50d\"}],"
+            + "\"sys\":{\"sunrise\":1},\"dt\":1709300000,\"name\":\"Paris\"}");
+
+        assertEquals("Paris", weather.getName());
+        assertEquals(1709300000L, weather.getObservedAt());
+        assertEquals(7.0, weather.getMain().getTemp());
+        assertEquals(1, weather.getWeather().size());
+        assertEquals("light rain", weather.getWeather().get(0).getDescription());
+        assertEquals("10d", weather.getWeather().get(0).getIcon());
+    }
+
+    @Test
+    public void read_ShouldLeaveMissingSectionsEmpty() throws IOException{
+        WeatherResponseDto weather = read("{\"name\":null,\"weather\":[],\"cod\":200}");
+
+        assertNull(weather.getName());
+        assertNull(weather.getMain());
+        assertTrue(weather.getWeather().isEmpty());
+    }
+
+    @Test
+    public void readGroup_ShouldKeyEntriesByCityId() throws IOException{
+        String json = "{\"cnt\":3,\"list\":[" + FakeOpenWeatherMapServer.weatherJson("Paris", 2988507) + ","
+            + FakeOpenWeatherMapServer.weatherJson("London", 2643743) + ",{\"name\":\"No id\"}]}";
+
+        Map<Integer, WeatherResponseDto> entries = reader.readGroup(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, entries.size());
+        assertEquals("Paris", entries.get(2988507).getName());
+        assertEquals("London", entries.get(2643743).getName());
+        assertEquals(2643743, entries.get(2643743).getCityId());
+    }
+
+    @Test
+    public void read_ShouldRejectMalformedJson(){
+        assertThrows(JacksonException.class, () -> read("[1,2,3]"));
+        assertThrows(JacksonException.class, () -> read("{\"name\":\"Paris\""));
+    }
+}
@@ -0,0 +1,95 @@
+package com.onlyweather.OnlyWeather.upstream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+
+public class RequestBatcherTest {
+
+    private final List<Set<Integer>> batches = new CopyOnWriteArrayList<>();
+
+    // Answers every key with its square, except 13 which it doesn't know.
+    private Map<Integer, Integer> squares(Collection<Integer> keys){
+        batches.add(Set.copyOf(keys));
+        return keys.stream().filter(key -> key != 13).collect(Collectors.toMap(Function.identity(), key -> key * key));
+    }
+
+    private List<Integer> loadConcurrently(RequestBatcher<Integer, Integer> batcher, List<Integer> keys) throws Exception{
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (Integer key : keys) {
+                results.add(callers.submit(() -> batcher.load(key)));
+            }
+            List<Integer> values = new ArrayList<>();
+            for (Future<Integer> result : results) {
+                values.add(result.get());
+            }
+            return values;
+        }
+    }
+
+    @Test
+    public void load_ShouldCombineConcurrentLookups_IntoOneBatch() throws Exception{
+        RequestBatcher<Integer, Integer> batcher = new RequestBatcher<>(Duration.ofMillis(500), 20, this::squares);
+
+        List<Integer> values = loadConcurrently(batcher, List.of(1, 2, 3, 2, 4));
+
+        assertEquals(List.of(1, 4, 9, 4, 16), values);
+        assertEquals(List.of(Set.of(1, 2, 3, 4)), batches);
+    }
+
+    @Test
+    public void load_ShouldLoadAFullBatch_WithoutWaitingForTheWindow() throws Exception{
+        RequestBatcher<Integer, Integer> batcher = new RequestBatcher<>(Duration.ofMinutes(1), 2, this::squares);
+
+        long start = System.nanoTime();
+        List<Integer> values = loadConcurrently(batcher, List.of(5, 6));
+
+        assertEquals(List.of(25, 36), values);
+        assertEquals(1, batches.size());
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(10).toNanos());
+    }
+
+    @Test
+    public void load_ShouldReturnNull_ForKeysTheLoaderLeftOut(){
+        RequestBatcher<Integer, Integer> batcher = new RequestBatcher<>(Duration.ZERO, 20, this::squares);
+
+        assertNull(batcher.load(13));
+        assertEquals(49, batcher.load(7));
+        assertEquals(2, batches.size());
+    }
+
+    @Test
+    public void load_ShouldFailEveryLookupOfTheBatch_WhenTheLoaderFails() throws Exception{
+        RequestBatcher<Integer, Integer> batcher = new RequestBatcher<>(Duration.ofMillis(200), 20, keys -> {
+            throw new WeatherServiceUnavailableException("Service unavailable, try again later");
+        });
+
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Integer> first = callers.submit(() -> batcher.load(1));
+            Future<Integer> second = callers.submit(() -> batcher.load(2));
+            for (Future<Integer> result : List.of(first, second)) {
+                Exception e = assertThrows(Exception.class, result::get);
+                assertTrue(e.getCause() instanceof WeatherServiceUnavailableException);
+            }
+        }
+    }
+}
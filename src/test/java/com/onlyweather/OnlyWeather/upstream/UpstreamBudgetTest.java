@@ -0,0 +1,170 @@
+package com.onlyweather.OnlyWeather.upstream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+public class UpstreamBudgetTest {
+
+    private static class MutableClock extends Clock {
+        private volatile Instant now = Instant.parse("2024-03-01T12:00:00Z");
+
+        void advance(Duration duration){
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone(){
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone){
+            return this;
+        }
+
+        @Override
+        public Instant instant(){
+            return now;
+        }
+    }
+
+    private static int take(UpstreamBudget budget, UpstreamPriority priority){
+        int taken = 0;
+        while (budget.tryAcquire(priority)) {
+            taken++;
+        }
+        return taken;
+    }
+
+    @Test
+    public void tryAcquire_ShouldLeaveEachLaneTheReserveOfTheLanesAboveIt(){
+        UpstreamBudget budget = new UpstreamBudget(10, 0, 0.1, 0.3, Duration.ZERO, new MutableClock());
+
+        assertEquals(7, take(budget, UpstreamPriority.BACKGROUND));
+        assertEquals(2, take(budget, UpstreamPriority.BATCH));
+        assertEquals(1, take(budget, UpstreamPriority.USER));
+
+        assertEquals(0, budget.getRemainingPerMinute());
+        assertEquals(-1, budget.getRemainingPerDay());
+        assertEquals(1, budget.getRejected(UpstreamPriority.BACKGROUND));
+        assertEquals(1, budget.getRejected(UpstreamPriority.USER));
+    }
+
+    @Test
+    public void release_ShouldHandBackATokenToBothWindows(){
+        MutableClock clock = new MutableClock();
+        UpstreamBudget budget = new UpstreamBudget(2, 5, 0, 0, Duration.ZERO, clock);
+
+        assertEquals(2, take(budget, UpstreamPriority.USER));
+        clock.advance(Duration.ofSeconds(3));
+        budget.release();
+
+        assertEquals(1, budget.getRemainingPerMinute());
+        assertEquals(4, budget.getRemainingPerDay());
+        assertEquals(1, take(budget, UpstreamPriority.USER));
+    }
+
+    @Test
+    public void tryAcquire_ShouldFreeCalls_OnceTheyAreAWindowOld(){
+        MutableClock clock = new MutableClock();
+        UpstreamBudget budget = new UpstreamBudget(60, 100, 0, 0, Duration.ZERO, clock);
+
+        assertEquals(60, take(budget, UpstreamPriority.USER));
+        clock.advance(Duration.ofSeconds(30));
+        assertEquals(0, take(budget, UpstreamPriority.USER));
+
+        // The first calls left the minute window, but the day has only 40 calls left.
+        clock.advance(Duration.ofSeconds(31));
+        assertEquals(40, take(budget, UpstreamPriority.USER));
+        clock.advance(Duration.ofMinutes(10));
+        assertFalse(budget.tryAcquire(UpstreamPriority.USER));
+
+        // Counted in 24-minute slots, so a day's calls free up at most one slot late.
+        clock.advance(Duration.ofDays(1).plusMinutes(30));
+        assertEquals(60, take(budget, UpstreamPriority.USER));
+    }
+
+    // Draining the window and then taking whatever frees up must never exceed the limit in any span of a minute.
+    @Test
+    public void tryAcquire_ShouldNeverAllowMoreThanTheLimit_InAnyWindowLengthSpan(){
+        MutableClock clock = new MutableClock();
+        UpstreamBudget budget = new UpstreamBudget(60, 0, 0, 0, Duration.ZERO, clock);
+        int stepsPerMinute = 240;
+        int[] taken = new int[3 * stepsPerMinute];
+
+        for (int step = 0; step < taken.length; step++) {
+            taken[step] = take(budget, UpstreamPriority.USER);
+            clock.advance(Duration.ofMillis(250));
+        }
+
+        int total = 0;
+        for (int start = 0; start + stepsPerMinute <= taken.length; start++) {
+            int inWindow = 0;
+            for (int step = start; step < start + stepsPerMinute; step++) {
+                inWindow += taken[step];
+            }
+            assertTrue(inWindow <= 60, "calls in the minute from step " + start + ": " + inWindow);
+        }
+        for (int count : taken) {
+            total += count;
+        }
+        // Still uses the budget: a full minute's worth in each of the first two windows and more after.
+        assertTrue(total >= 120, "calls in three minutes: " + total);
+    }
+
+    @Test
+    public void throttled_ShouldEmptyTheMinuteWindow(){
+        MutableClock clock = new MutableClock();
+        UpstreamBudget budget = new UpstreamBudget(60, 0, 0, 0, Duration.ZERO, clock);
+
+        budget.throttled();
+
+        assertFalse(budget.tryAcquire(UpstreamPriority.USER));
+        clock.advance(Duration.ofSeconds(61));
+        assertEquals(60, take(budget, UpstreamPriority.USER));
+    }
+
+    @Test
+    public void tryAcquire_ShouldLetUserCallsWaitForACallToAgeOut() throws Exception{
+        MutableClock clock = new MutableClock();
+        UpstreamBudget budget = new UpstreamBudget(600, 0, 0, 0.5, Duration.ofMillis(500), clock);
+        while (budget.tryAcquireNow(UpstreamPriority.USER)) {
+            // Drain the window.
+        }
+        Thread minutePasses = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            clock.advance(Duration.ofSeconds(61));
+        });
+        minutePasses.start();
+
+        long start = System.nanoTime();
+        assertTrue(budget.tryAcquire(UpstreamPriority.USER));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+        minutePasses.join();
+        // Background calls never wait, and the window is still above their reserve.
+        assertEquals(299, take(budget, UpstreamPriority.BACKGROUND));
+        assertFalse(budget.tryAcquireNow(UpstreamPriority.BACKGROUND));
+    }
+
+    @Test
+    public void unlimited_ShouldNeverRefuse(){
+        UpstreamBudget budget = UpstreamBudget.unlimited();
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(budget.tryAcquire(UpstreamPriority.BACKGROUND));
+        }
+    }
+}
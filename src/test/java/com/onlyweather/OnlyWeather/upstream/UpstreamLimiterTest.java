@@ -0,0 +1,92 @@
+package com.onlyweather.OnlyWeather.upstream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.onlyweather.OnlyWeather.exception.CityNotFoundException;
+import com.onlyweather.OnlyWeather.exception.WeatherServiceUnavailableException;
+
+public class UpstreamLimiterTest {
+
+    @Test
+    public void call_ShouldFailFast_WhenAllPermitsAreTaken() throws Exception{
+        UpstreamLimiter limiter = new UpstreamLimiter(1, Duration.ofMillis(50));
+        CountDownLatch callStarted = new CountDownLatch(1);
+        CountDownLatch releaseCall = new CountDownLatch(1);
+
+        Thread slowCall = Thread.ofVirtual().start(() -> limiter.call(() -> {
+            callStarted.countDown();
+            try {
+                releaseCall.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "done";
+        }));
+        callStarted.await(5, TimeUnit.SECONDS);
+
+        assertEquals(1, limiter.getInFlight());
+        assertThrows(WeatherServiceUnavailableException.class, () -> limiter.call(() -> "rejected"));
+
+        releaseCall.countDown();
+        slowCall.join();
+        assertEquals(0, limiter.getInFlight());
+        assertEquals("ok", limiter.call(() -> "ok"));
+    }
+
+    @Test
+    public void tryAcquire_ShouldNotWait_AndShareThePermitsWithCall(){
+        UpstreamLimiter limiter = new UpstreamLimiter(1, Duration.ofMillis(50));
+
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertThrows(WeatherServiceUnavailableException.class, () -> limiter.call(() -> "never"));
+
+        limiter.release(0, false);
+        assertEquals(0, limiter.getInFlight());
+        assertEquals("done", limiter.call(() -> "done"));
+    }
+
+    @Test
+    public void call_ShouldShrinkLimit_WhenUpstreamIsSlowOrFailing_AndGrowItBack(){
+        UpstreamLimiter limiter = new UpstreamLimiter(10, 1, Duration.ofMillis(50), Duration.ofMillis(20), 0.5);
+        assertEquals(10, limiter.getLimit());
+
+        limiter.call(() -> {
+            try {
+                Thread.sleep(40);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "slow";
+        });
+        assertEquals(5, limiter.getLimit());
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(WeatherServiceUnavailableException.class, () -> limiter.call(() -> {
+                throw new WeatherServiceUnavailableException("Service unavailable, try again later");
+            }));
+        }
+        assertEquals(1, limiter.getLimit());
+
+        // Not found is a healthy answer from the upstream, so it grows the limit like any fast call.
+        assertThrows(CityNotFoundException.class, () -> limiter.call(() -> {
+            throw new CityNotFoundException("City not found: Atlantis");
+        }));
+        assertEquals(2, limiter.getLimit());
+
+        // One call at a time never uses more than one permit, so the limit stops growing at about twice that.
+        for (int i = 0; i < 20; i++) {
+            limiter.call(() -> "fast");
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+}
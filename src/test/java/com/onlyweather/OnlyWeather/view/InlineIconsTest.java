@@ -0,0 +1,39 @@
+package com.onlyweather.OnlyWeather.view;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import com.onlyweather.OnlyWeather.enums.WeatherIcons;
+
+public class InlineIconsTest {
+
+    @Test
+    public void dataUri_ShouldEmbedEveryIcon_AsItsPngBytes() throws Exception{
+        InlineIcons inlineIcons = new InlineIcons(true);
+
+        for (WeatherIcons icon : WeatherIcons.values()) {
+            String dataUri = inlineIcons.dataUri(icon.getIconFileName());
+            assertNotNull(dataUri, icon.getIconFileName());
+            assertTrue(dataUri.startsWith("data:image/png;base64,"));
+            try (InputStream inputStream = new ClassPathResource("static/images/" + icon.getIconFileName()).getInputStream()) {
+                assertArrayEquals(inputStream.readAllBytes(),
+                    Base64.getDecoder().decode(dataUri.substring("data:image/png;base64,".length())));
+            }
+        }
+        assertNull(inlineIcons.dataUri("unknown.png"));
+        assertNull(inlineIcons.dataUri(null));
+    }
+
+    @Test
+    public void dataUri_WhenDisabled_ShouldLeaveIconsLinked(){
+        assertNull(new InlineIcons(false).dataUri(WeatherIcons.values()[0].getIconFileName()));
+    }
+}